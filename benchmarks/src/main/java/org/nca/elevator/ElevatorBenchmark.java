@@ -0,0 +1,81 @@
+package org.nca.elevator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a command of the elevator, for each strategy, with a building of the provided number of
+ * floors, a cabin half full and the provided number of waiting users.
+ * <p>
+ * No user enters or exits during the benchmark, so the number of users stays the same.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ElevatorBenchmark {
+
+  @Param({ "ClassicStrategy", "MostUsersStrategy" })
+  String strategy;
+
+  @Param({ "NONE", "POINTS" })
+  String optimization;
+
+  @Param({ "20", "100" })
+  int floors;
+
+  @Param({ "30", "300" })
+  int cabinSize;
+
+  @Param({ "10", "500" })
+  int queueDepth;
+
+  Elevator elevator;
+
+  @Setup
+  public void setUp() throws Exception {
+    disableLogging();
+    ElevatorStrategy elevatorStrategy = (ElevatorStrategy) Class.forName(
+        "org.nca.elevator.strategy." + strategy).newInstance();
+    elevator = new Elevator(elevatorStrategy, Elevator.Optimization.valueOf(optimization));
+    elevator.reset(0, floors - 1, cabinSize);
+
+    Random random = new Random(42);
+    for (int i = 0; i < cabinSize / 2; i++) {
+      elevator.userHasEntered();
+      elevator.go(1 + random.nextInt(floors - 1));
+    }
+    for (int i = 0; i < queueDepth; i++) {
+      elevator.call(random.nextInt(floors), random.nextBoolean() ? "UP" : "DOWN");
+    }
+  }
+
+  @Benchmark
+  public Command nextCommand() {
+    return elevator.nextCommand();
+  }
+
+  /**
+   * Logging is measured apart, only the elevator logic is measured here.
+   */
+  static void disableLogging() {
+    java.util.logging.Logger.getLogger("").setLevel(Level.OFF);
+  }
+}
@@ -0,0 +1,100 @@
+package org.nca.elevator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nca.elevator.Elevator.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the operations on user collections, with the provided number of users already in the
+ * collections.
+ * <p>
+ * Each benchmark adds the user it removes, so the number of users stays the same.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UsersBenchmark {
+
+  @Param({ "20", "100" })
+  int floors;
+
+  @Param({ "10", "500" })
+  int nbUsers;
+
+  Clock clock;
+
+  WaitingUsers waitingUsers;
+
+  ElevatorUsers elevatorUsers;
+
+  int floor;
+
+  @Setup
+  public void setUp() {
+    ElevatorBenchmark.disableLogging();
+    clock = new Clock();
+    waitingUsers = new WaitingUsers(clock, 0, floors - 1);
+    elevatorUsers = new ElevatorUsers(clock, 0, floors - 1);
+    for (int i = 0; i < nbUsers; i++) {
+      waitingUsers.add(nextFloor(), Direction.UP);
+      elevatorUsers.userEntered(0, Direction.UP, 0);
+      elevatorUsers.requestFloor(1 + nextFloor() % (floors - 1), 0);
+      clock.tick();
+    }
+  }
+
+  @Benchmark
+  public WaitingUser popUser() {
+    int userFloor = nextFloor();
+    waitingUsers.add(userFloor, Direction.UP);
+    return waitingUsers.popUser(userFloor);
+  }
+
+  @Benchmark
+  public int userEntered() {
+    int userFloor = nextFloor() % (floors - 1);
+    waitingUsers.add(userFloor, Direction.UP);
+    waitingUsers.moveUserTo(userFloor, elevatorUsers);
+    elevatorUsers.requestFloor(userFloor + 1, userFloor);
+    return elevatorUsers.userExited(userFloor + 1);
+  }
+
+  @Benchmark
+  public int userExited() {
+    int exitFloor = 1 + nextFloor() % (floors - 1);
+    elevatorUsers.userEntered(0, Direction.UP, 0);
+    elevatorUsers.requestFloor(exitFloor, 0);
+    return elevatorUsers.userExited(exitFloor);
+  }
+
+  @Benchmark
+  public int nbUsersToward() {
+    return waitingUsers.nbUsersToward(Direction.UP, nextFloor(), floors - 1, Elevator.Optimization.NONE)
+        + elevatorUsers.nbUsersTowardDirection(Direction.DOWN, floor, Elevator.Optimization.NONE);
+  }
+
+  @Benchmark
+  public int estimatePointsEarned() {
+    int entryFloor = nextFloor();
+    return Score.estimatePointsEarned(entryFloor, floor, 3, 5, (entryFloor + floor) / 2, 1);
+  }
+
+  private int nextFloor() {
+    floor = (floor + 7) % floors;
+    return floor;
+  }
+}
@@ -0,0 +1,158 @@
+package org.nca.elevator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Handler of java.util.logging publishing records asynchronously to other handlers.
+ * <p>
+ * Records are queued in a bounded queue, and written by a single daemon thread. When the queue is
+ * full, records are dropped rather than slowing down the thread logging them, and the number of
+ * dropped records is reported with the next record written.
+ */
+class AsyncLogHandler extends Handler {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final Handler[] handlers;
+
+    private final BlockingQueue<LogRecord> records;
+
+    /** Records dropped since the last report, and since the start. */
+    private final AtomicLong nbDroppedToReport = new AtomicLong(), nbDropped = new AtomicLong();
+
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    AsyncLogHandler(int capacity, Handler... handlers) {
+        this.handlers = handlers;
+        this.records = new ArrayBlockingQueue<LogRecord>(capacity);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "elevator-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Replaces the handlers of the root logger by an asynchronous handler writing to them.
+     */
+    static AsyncLogHandler install() {
+        Logger root = Logger.getLogger("");
+        Handler[] handlers = root.getHandlers();
+        for (Handler handler : handlers) {
+            root.removeHandler(handler);
+        }
+        final AsyncLogHandler async = new AsyncLogHandler(DEFAULT_CAPACITY, handlers);
+        root.addHandler(async);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                async.close();
+            }
+        }, "elevator-log-flush"));
+        return async;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        if (!records.offer(record)) {
+            nbDroppedToReport.incrementAndGet();
+            nbDropped.incrementAndGet();
+        }
+    }
+
+    private void write() {
+        List<LogRecord> batch = new ArrayList<LogRecord>();
+        while (!closed || !records.isEmpty()) {
+            try {
+                LogRecord first = records.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                records.drainTo(batch);
+                reportDropped();
+                for (LogRecord record : batch) {
+                    for (Handler handler : handlers) {
+                        handler.publish(record);
+                    }
+                }
+                batch.clear();
+                for (Handler handler : handlers) {
+                    handler.flush();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                reportError("Unable to write log records", e, 0);
+                batch.clear();
+            }
+        }
+    }
+
+    private void reportDropped() {
+        long dropped = nbDroppedToReport.getAndSet(0);
+        if (dropped > 0) {
+            LogRecord record = new LogRecord(Level.WARNING, "Log queue full, " + dropped
+                    + " records dropped");
+            record.setLoggerName(AsyncLogHandler.class.getName());
+            for (Handler handler : handlers) {
+                handler.publish(record);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of records dropped since the start.
+     */
+    long getNbDropped() {
+        return nbDropped.get();
+    }
+
+    /**
+     * Returns the number of records waiting to be written.
+     */
+    int getQueueSize() {
+        return records.size();
+    }
+
+    @Override
+    public void flush() {
+        // records are flushed by the writer after each batch
+    }
+
+    /**
+     * Writes the records queued, then closes the handlers.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler handler : handlers) {
+            handler.close();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.nca.elevator;
+
+/**
+ * Logical clock counting the ticks of the elevator.
+ * <p>
+ * Users record the clock value when they start waiting or enter the elevator, and derive their
+ * ticks from it, so that a tick is a single increment whatever the number of users.
+ */
+class Clock {
+
+    private long ticks;
+
+    public Clock() {
+        this(0);
+    }
+
+    /**
+     * Creates a clock starting at the provided number of ticks.
+     */
+    public Clock(long ticks) {
+        this.ticks = ticks;
+    }
+
+    /**
+     * Receives a tick.
+     */
+    public void tick() {
+        ticks++;
+    }
+
+    /**
+     * Returns the number of ticks since creation of this clock.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+}
@@ -0,0 +1,334 @@
+package org.nca.elevator;
+
+import static java.lang.Math.abs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Direction;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.nca.elevator.strategy.Strategies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches the users of a building to several cabins, each cabin being an elevator with its own
+ * instance of the strategy.
+ * <p>
+ * Each call is assigned to the cabin with the lowest estimated cost, which is the number of points
+ * the calling user would lose until the cabin reaches it. When a user enters a cabin it was not
+ * assigned to, it is handed from its cabin to the entered one.
+ * <p>
+ * Commands of the cabins are computed in parallel. Each method locks the whole dispatcher, like
+ * {@link LockingElevatorExecutor} does for a single elevator, but the snapshots of the cabins,
+ * published at the end of each operation publishing a snapshot, are read without locking.
+ */
+class Dispatcher {
+
+    static final Logger logger = LoggerFactory.getLogger(Dispatcher.class);
+
+    private Class<? extends ElevatorStrategy> strategyClass;
+
+    private Optimization optimization;
+
+    private final List<Elevator> cabins = new ArrayList<Elevator>();
+
+    private final ExecutorService runner;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Metrics recorded by the cabins, or null. */
+    private final ElevatorMetrics metrics;
+
+    /** Last published snapshot of each cabin, readable from any thread without locking. */
+    private volatile List<ElevatorSnapshot> snapshots;
+
+    /** Number of users handed from their assigned cabin to another one. */
+    private volatile long nbTransfers;
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the strategy can't be instantiated or if there is no cabin
+     */
+    Dispatcher(Class<? extends ElevatorStrategy> strategyClass, Optimization optimization, int nbCabins) {
+        this(strategyClass, optimization, nbCabins, null);
+    }
+
+    /**
+     * @param metrics
+     *            metrics recorded by the cabins, or null
+     */
+    Dispatcher(Class<? extends ElevatorStrategy> strategyClass, Optimization optimization, int nbCabins,
+            ElevatorMetrics metrics) {
+        this.strategyClass = strategyClass;
+        this.metrics = metrics;
+        this.optimization = optimization;
+        this.runner = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+                    private final AtomicInteger nbThreads = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "elevator-cabin-" + nbThreads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        setNbCabins(nbCabins);
+        publishSnapshots();
+    }
+
+    private void setNbCabins(int nbCabins) {
+        if (nbCabins <= 0) {
+            throw new IllegalArgumentException("Number of cabins must be positive: " + nbCabins);
+        }
+        while (cabins.size() > nbCabins) {
+            cabins.remove(cabins.size() - 1).shutdown();
+        }
+        while (cabins.size() < nbCabins) {
+            Elevator cabin = new Elevator(newStrategy(), optimization);
+            cabin.setMetrics(metrics);
+            cabins.add(cabin);
+        }
+    }
+
+    private ElevatorStrategy newStrategy() {
+        try {
+            return Strategies.newStrategy(strategyClass);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unable to instantiate strategy " + strategyClass.getName(), e);
+        }
+    }
+
+    void reset(int lowerFloor, int higherFloor, int cabinSize, int nbCabins) {
+        lock.lock();
+        try {
+            setNbCabins(nbCabins);
+            for (Elevator cabin : cabins) {
+                cabin.reset(lowerFloor, higherFloor, cabinSize);
+            }
+            nbTransfers = 0;
+            publishSnapshots();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getNbCabins() {
+        lock.lock();
+        try {
+            return cabins.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives each cabin a new instance of the provided strategy.
+     *
+     * @throws IllegalArgumentException
+     *             if the strategy can't be instantiated
+     */
+    void setStrategy(Class<? extends ElevatorStrategy> strategyClass) {
+        lock.lock();
+        try {
+            Class<? extends ElevatorStrategy> previous = this.strategyClass;
+            this.strategyClass = strategyClass;
+            List<ElevatorStrategy> strategies = new ArrayList<ElevatorStrategy>(cabins.size());
+            try {
+                for (int i = 0; i < cabins.size(); i++) {
+                    strategies.add(newStrategy());
+                }
+            } catch (IllegalArgumentException e) {
+                this.strategyClass = previous;
+                throw e;
+            }
+            for (int i = 0; i < cabins.size(); i++) {
+                cabins.get(i).setStrategy(strategies.get(i));
+            }
+            publishSnapshots();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setOptimization(Optimization optimization) {
+        lock.lock();
+        try {
+            this.optimization = optimization;
+            for (Elevator cabin : cabins) {
+                cabin.setOptimization(optimization);
+            }
+            publishSnapshots();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Assigns the call to the cabin with the lowest cost.
+     *
+     * @return the index of the cabin
+     */
+    int call(int atFloor, String to) {
+        lock.lock();
+        try {
+            int selected = 0;
+            int lowestCost = Integer.MAX_VALUE;
+            for (int i = 0; i < cabins.size(); i++) {
+                int cost = cost(cabins.get(i), atFloor);
+                if (cost < lowestCost) {
+                    selected = i;
+                    lowestCost = cost;
+                }
+            }
+            cabins.get(selected).call(atFloor, to);
+            logger.debug("Call at floor {} assigned to cabin {} with cost {}", atFloor, selected, lowestCost);
+            return selected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the estimated number of points lost by a user calling at the provided floor until the
+     * cabin reaches it.
+     * <p>
+     * The cabin is expected to go on in its current direction while it has users in this direction,
+     * and to stop for each of its users.
+     */
+    static int cost(Elevator cabin, int floor) {
+        int currentFloor = cabin.getCurrentFloor();
+        boolean goingUp = cabin.getCurrentDirection() != Direction.DOWN;
+        int stopTicks = 2 * (cabin.nbUsersWaiting() + cabin.nbUsersInElevator());
+        int points;
+        if ((goingUp ? floor >= currentFloor : floor <= currentFloor) || !cabin.hasUsersInCurrentDirection()) {
+            points = Score.estimatePointsWhenWaiting(floor, stopTicks, currentFloor);
+        }
+        else {
+            // reaches the last floor in its direction before coming back
+            int lastFloor = goingUp ? cabin.getHigherFloor() : cabin.getLowerFloor();
+            points = Score.estimatePointsWhenWaiting(floor, stopTicks + abs(lastFloor - currentFloor), lastFloor);
+        }
+        int cost = Score.maxPointsToEarnWhenWaiting(0) - points;
+        if (cabin.isCabinFull()) {
+            cost += Score.maxPointsToEarnWhenWaiting(0);
+        }
+        return cost;
+    }
+
+    void go(int cabin, int floor) {
+        lock.lock();
+        try {
+            getCabin(cabin).go(floor);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void userHasEntered(int cabin) {
+        lock.lock();
+        try {
+            Elevator entered = getCabin(cabin);
+            int floor = entered.getCurrentFloor();
+            if (!entered.hasWaitingUserForFloor(floor)) {
+                for (Elevator other : cabins) {
+                    if (other != entered && other.hasWaitingUserForFloor(floor)) {
+                        entered.addWaitingUser(other.popWaitingUser(floor));
+                        nbTransfers++;
+                        break;
+                    }
+                }
+            }
+            entered.userHasEntered();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void userHasExited(int cabin) {
+        lock.lock();
+        try {
+            getCabin(cabin).userHasExited();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the next command of each cabin, computed in parallel.
+     */
+    List<Command> nextCommands() throws InterruptedException, ExecutionException {
+        lock.lock();
+        try {
+            List<Callable<Command>> tasks = new ArrayList<Callable<Command>>(cabins.size());
+            for (final Elevator cabin : cabins) {
+                tasks.add(new Callable<Command>() {
+                    @Override
+                    public Command call() {
+                        return cabin.nextCommand();
+                    }
+                });
+            }
+            List<Command> commands = new ArrayList<Command>(cabins.size());
+            for (Future<Command> command : runner.invokeAll(tasks)) {
+                commands.add(command.get());
+            }
+            publishSnapshots();
+            return commands;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Elevator getCabin(int cabin) {
+        if (cabin < 0 || cabin >= cabins.size()) {
+            throw new IllegalArgumentException("No cabin " + cabin + ", number of cabins: " + cabins.size());
+        }
+        return cabins.get(cabin);
+    }
+
+    /**
+     * Publishes the last snapshot of each cabin, to be called while locked.
+     */
+    private void publishSnapshots() {
+        List<ElevatorSnapshot> published = new ArrayList<ElevatorSnapshot>(cabins.size());
+        for (Elevator cabin : cabins) {
+            published.add(cabin.getSnapshot());
+        }
+        snapshots = Collections.unmodifiableList(published);
+    }
+
+    /**
+     * Returns the last published snapshot of each cabin, without waiting for the cabins.
+     */
+    List<ElevatorSnapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Returns the cabins, for tests.
+     */
+    List<Elevator> getCabins() {
+        return Collections.unmodifiableList(cabins);
+    }
+
+    long getNbTransfers() {
+        return nbTransfers;
+    }
+
+    void shutdown() {
+        runner.shutdown();
+    }
+}
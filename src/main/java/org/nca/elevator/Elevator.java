@@ -1,8 +1,13 @@
 package org.nca.elevator;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.nca.elevator.strategy.CachingStrategy;
 import org.nca.elevator.strategy.ElevatorStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,12 +16,24 @@ public class Elevator implements ElevatorState, ElevatorController {
 
   static final Logger logger = LoggerFactory.getLogger(Elevator.class);
 
-  /** Total of ticks since beginning or last reset */
-  private long clockTicks;
+  /** Building of an elevator not reset yet */
+  static final int DEFAULT_LOWER_FLOOR = 0, DEFAULT_HIGHER_FLOOR = 19, DEFAULT_CABIN_SIZE = 30;
+
+  /** Version of the format written by checkpoint() */
+  static final int CHECKPOINT_VERSION = 1;
+
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private static final Door[] DOORS = Door.values();
+
+  /** Total of ticks since beginning or last reset, shared with users to derive their ticks */
+  private Clock clockTicks;
 
   /** Total of user exits since beginning or last reset */
   private long totalExits;
 
+  /** Score since beginning or last reset */
+  private ScoreLedger ledger;
+
   private int lowerFloor, higherFloor;
   private int currentFloor;
   private int cabinSize;
@@ -25,33 +42,95 @@ public class Elevator implements ElevatorState, ElevatorController {
   private WaitingUsers waitingUsers;
   private ElevatorUsers elevatorUsers;
   private StateHistory stateHistory;
+  private final int historyCapacity;
+
+  /** Buffer reused to render the state */
+  private final StringBuilder stateBuffer = new StringBuilder(256);
+
+  /** Last published snapshot, readable from any thread without locking */
+  private volatile ElevatorSnapshot snapshot;
+
+  /** Number of changes, events included, only written by the thread owning the elevator */
+  private volatile long nbChanges;
 
   private ElevatorStrategy strategy;
   private Optimization optimization;
 
+  /** Deadline for the strategy to provide a command, null if the strategy has no deadline */
+  private StrategyDeadline deadline;
+
+  /** Speculation of the next command, null if commands are only computed when requested */
+  private StrategySpeculation speculation;
+
+  /** Metrics recorded by the elevator, null if not recorded */
+  private ElevatorMetrics metrics;
+
+  /** Journal of the events and commands, null if not recorded */
+  private EventJournal journal;
+
   public Elevator(ElevatorStrategy strategy) {
     this(strategy, Optimization.NONE);
   }
 
   public Elevator(ElevatorStrategy strategy, Optimization optimization) {
+    this(strategy, optimization, StateHistory.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param historyCapacity
+   *          number of last states kept in history
+   */
+  public Elevator(ElevatorStrategy strategy, Optimization optimization, int historyCapacity) {
     logger.info("Initialising elevator with strategy {} and optimization {}", strategy.getClass(), optimization);
     this.strategy = strategy;
     this.optimization = optimization;
-    resetState(0, 19, 30);
+    this.historyCapacity = historyCapacity;
+    resetState(DEFAULT_LOWER_FLOOR, DEFAULT_HIGHER_FLOOR, DEFAULT_CABIN_SIZE);
+  }
+
+  /**
+   * Creates a copy of the provided elevator, its users and its last state, sharing nothing with it
+   * but the strategy.
+   */
+  private Elevator(Elevator elevator) {
+    this.strategy = elevator.strategy;
+    this.optimization = elevator.optimization;
+    this.historyCapacity = 1;
+    this.lowerFloor = elevator.lowerFloor;
+    this.higherFloor = elevator.higherFloor;
+    this.cabinSize = elevator.cabinSize;
+    this.clockTicks = new Clock(elevator.clockTicks.getTicks());
+    this.totalExits = elevator.totalExits;
+    this.ledger = new ScoreLedger();
+    this.currentFloor = elevator.currentFloor;
+    this.doorState = elevator.doorState;
+    this.currentDirection = elevator.currentDirection;
+    this.stateHistory = elevator.stateHistory.copy(elevator.stateHistory.size(), 1);
+    this.waitingUsers = elevator.waitingUsers.copy(clockTicks);
+    this.elevatorUsers = elevator.elevatorUsers.copy(clockTicks);
+    // as done before any command, the copy may be taken before the next command is requested
+    ajustDirection();
+  }
+
+  Elevator copy() {
+    return new Elevator(this);
   }
 
   private void resetState(int lowerFloor, int higherFloor, int cabinSize) {
     this.lowerFloor = lowerFloor;
     this.higherFloor = higherFloor;
     this.cabinSize = cabinSize;
-    clockTicks = 0;
+    clockTicks = new Clock();
     totalExits = 0;
+    ledger = new ScoreLedger();
     currentFloor = 0;
     doorState = Door.CLOSED;
     currentDirection = Direction.UP;
-    stateHistory = new StateHistory();
-    waitingUsers = new WaitingUsers();
-    elevatorUsers = new ElevatorUsers();
+    invalidateSpeculation();
+    stateHistory = new StateHistory(historyCapacity);
+    waitingUsers = new WaitingUsers(clockTicks, lowerFloor, higherFloor);
+    elevatorUsers = new ElevatorUsers(clockTicks, lowerFloor, higherFloor);
+    publishSnapshot();
   }
 
   public static enum Optimization {
@@ -95,107 +174,6 @@ public class Elevator implements ElevatorState, ElevatorController {
     OPEN, CLOSED;
   }
 
-  static class State {
-    Command command;
-    int floor;
-    Direction dir;
-    Door door;
-    Stats stats;
-    String htmlState;
-
-    State(Command command, int floor, Direction dir, Door door, Stats stats, String htmlState) {
-      this.command = command;
-      this.floor = floor;
-      this.dir = dir;
-      this.door = door;
-      this.stats = stats;
-      this.htmlState = htmlState;
-    }
-  }
-
-  static class Stats {
-    long ticksClock;
-    long totalExits;
-    int nbWait;
-    int nbIn;
-    int waitingTicks;
-    int inboardTicks;
-    int nbFloorsAsEntry;
-    int nbFloorsAsExit;
-
-    public Stats(long ticksClock, long totalExits, int nbWait, int nbIn, int waitingTicks,
-        int inboardTicks, int nbFloorsAsEntry, int nbFloorsAsExit) {
-      this.ticksClock = ticksClock;
-      this.totalExits = totalExits;
-      this.nbWait = nbWait;
-      this.nbIn = nbIn;
-      this.waitingTicks = waitingTicks;
-      this.inboardTicks = inboardTicks;
-      this.nbFloorsAsEntry = nbFloorsAsEntry;
-      this.nbFloorsAsExit = nbFloorsAsExit;
-    }
-  }
-
-  static class StateHistory {
-    private LinkedList<State> states = new LinkedList<State>();
-    int counter = 0;
-
-    public void add(State state) {
-      // keep only N last items
-      states.addFirst(state);
-      counter++;
-      if (counter >= 100) {
-        states.removeLast();
-      }
-    }
-
-    public Command getLastCommand() {
-      return states.isEmpty() ? null : states.getFirst().command;
-    }
-
-    public String getDetailedHistoryAsHtml(int numberOfEntries) {
-      StringBuilder history = new StringBuilder();
-      history
-          .append("<table cellpadding='5' cellmargin='2'>")
-          .append(
-              "<th>Command</th><th>Ticks</th><th>Floor</th><th>Direction</th><th>Door</th><th>Waiting</th><th>In Elevator</th>");
-      Iterator<State> stateIt = states.iterator();
-      for (int i = 0; i < Math.min(numberOfEntries, states.size()); i++) {
-        State state = stateIt.next();
-        history.append("<tr>").append("<td>").append(state.command).append("</td>").append(
-            state.htmlState).append("</tr>");
-      }
-      history.append("</table>");
-      return history.toString();
-    }
-
-    public String getHistoryAsHtml(int numberOfEntries) {
-      StringBuilder history = new StringBuilder();
-      history
-        .append("<table cellpadding='5' cellmargin='2'>")
-        .append("<th>Clock</th><th>Exits</th><th>Command</th><th>Floor</th>")
-        .append("<th>Direction</th><th>Door</th><th>Users</th><th>Ticks</th><th>Floors</th>");
-      Iterator<State> stateIt = states.iterator();
-      for (int i = 0; i < Math.min(numberOfEntries, states.size()); i++) {
-        State state = stateIt.next();
-        history.append("<tr>")
-          .append("<td>").append(state.stats.ticksClock).append("</td>")
-          .append("<td>").append(state.stats.totalExits).append("</td>")
-          .append("<td>").append(state.command).append("</td>")
-          .append("<td>").append(state.floor).append("</td>")
-          .append("<td>").append(state.dir).append("</td>")
-          .append("<td>").append(state.door).append("</td>")
-          .append("<td>").append(state.stats.nbWait).append(" | ").append(state.stats.nbIn).append("</td>")
-          .append("<td>").append(state.stats.waitingTicks).append(" | ").append(state.stats.inboardTicks).append("</td>")
-          .append("<td>").append(state.stats.nbFloorsAsEntry).append(" | ").append(state.stats.nbFloorsAsExit).append("</td>")
-          .append("</tr>");
-      }
-      history.append("</table>");
-      return history.toString();
-    }
-
-  }
-
   public int getLowerFloor() {
     return lowerFloor;
   }
@@ -212,69 +190,364 @@ public class Elevator implements ElevatorState, ElevatorController {
     return stateHistory.getHistoryAsHtml(numberOfEntries);
   }
 
+  /**
+   * Returns the last published snapshot of the configuration and history of this elevator.
+   * <p>
+   * Snapshots are published on each command, reset or configuration change, and can be read from
+   * any thread without synchronization.
+   */
+  ElevatorSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Returns the current score, to be read by the thread owning the elevator, unlike the copy in the
+   * snapshot.
+   */
+  ScoreLedger getLedger() {
+    return ledger;
+  }
+
+  /**
+   * Returns the number of changes of this elevator : events, commands, resets and configuration
+   * changes, unlike snapshots which are not published on events.
+   */
+  long getNbChanges() {
+    return nbChanges;
+  }
+
+  /**
+   * Records an event changing the elevator.
+   */
+  private void eventReceived() {
+    nbChanges++;
+    invalidateSpeculation();
+  }
+
+  private void publishSnapshot() {
+    nbChanges++;
+    snapshot = new ElevatorSnapshot(lowerFloor, higherFloor, cabinSize, strategy.getClass(), optimization,
+        stateHistory, stateHistory.size(), deadline, speculation,
+        strategy instanceof CachingStrategy ? (CachingStrategy) strategy : null, waitingUsers.nbUsers(),
+        elevatorUsers.nbUsers(), ledger, clockTicks.getTicks());
+  }
+
   void setStrategy(ElevatorStrategy newStrategy) {
     logger.info("--- Changing strategy to {} ---", newStrategy);
     this.strategy = newStrategy;
+    invalidateSpeculation();
+    publishSnapshot();
   }
 
   void setOptimization(Optimization optim) {
     logger.info("--- Changing optimization to {} ---", optim);
     this.optimization = optim;
+    invalidateSpeculation();
+    publishSnapshot();
+  }
+
+  /**
+   * Gives the strategy a time budget to provide each command, the fallback strategy providing the
+   * command when the budget is exceeded.
+   *
+   * @param budget
+   *          time budget, 0 to remove the deadline
+   */
+  public void setDeadline(long budget, TimeUnit unit, ElevatorStrategy fallback) {
+    logger.info("--- Changing deadline to {} {} with fallback {} ---", budget, unit, fallback);
+    if (deadline != null) {
+      deadline.shutdown();
+    }
+    deadline = budget > 0 ? new StrategyDeadline(budget, unit, fallback) : null;
+    if (deadline != null) {
+      deadline.setMetrics(metrics);
+    }
+    publishSnapshot();
+  }
+
+  /**
+   * Enables or disables the speculation of the next command right after each command, in a
+   * separate thread. The speculated command is dropped if any event occurs before the next command.
+   */
+  public void setSpeculative(boolean speculative) {
+    logger.info("--- Changing speculation to {} ---", speculative);
+    if (speculation != null) {
+      speculation.shutdown();
+    }
+    speculation = speculative ? new StrategySpeculation() : null;
+    if (speculation != null) {
+      speculation.setMetrics(metrics);
+    }
+    publishSnapshot();
+  }
+
+  /**
+   * Records the metrics of the elevator, or stops recording them if null.
+   */
+  void setMetrics(ElevatorMetrics newMetrics) {
+    if (metrics != null) {
+      metrics.unregister(this);
+    }
+    metrics = newMetrics;
+    if (metrics != null) {
+      metrics.register(this);
+    }
+    if (deadline != null) {
+      deadline.setMetrics(metrics);
+    }
+    if (speculation != null) {
+      speculation.setMetrics(metrics);
+    }
+  }
+
+  /**
+   * Records the events and commands of the elevator in the provided journal, or stops recording
+   * them if null. The previous journal, if any, is closed.
+   */
+  void setJournal(EventJournal newJournal) {
+    if (journal != null) {
+      journal.close();
+    }
+    journal = newJournal;
+  }
+
+  /**
+   * Stops the threads used by the deadline and the speculation, if any, stops recording metrics
+   * and closes the journal.
+   */
+  void shutdown() {
+    setMetrics(null);
+    setJournal(null);
+    if (deadline != null) {
+      deadline.shutdown();
+      deadline = null;
+    }
+    if (speculation != null) {
+      speculation.shutdown();
+      speculation = null;
+    }
+  }
+
+  private void invalidateSpeculation() {
+    if (speculation != null) {
+      speculation.invalidate();
+    }
   }
 
   Class<? extends ElevatorStrategy> getStrategy() {
     return this.strategy.getClass();
   }
 
+  int getCurrentFloor() {
+    return currentFloor;
+  }
+
+  Direction getCurrentDirection() {
+    return currentDirection;
+  }
+
+  boolean hasWaitingUserForFloor(int floor) {
+    return waitingUsers.hasUserForFloor(floor);
+  }
+
+  /**
+   * Removes and returns the first user waiting at the provided floor, to be handed to another cabin.
+   */
+  WaitingUser popWaitingUser(int floor) {
+    invalidateSpeculation();
+    return waitingUsers.popUser(floor);
+  }
+
+  /**
+   * Adds a user handed by another cabin, keeping its waiting time.
+   */
+  void addWaitingUser(WaitingUser user) {
+    invalidateSpeculation();
+    waitingUsers.add(user.copy(clockTicks));
+  }
+
   Optimization getOptimization() {
       return this.optimization;
   }
 
+  /**
+   * Returns the state of the elevator, its users, score and history, to be restored by
+   * {@link #restore(byte[])}. Strategy and settings are not part of the state.
+   */
+  byte[] checkpoint() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(CHECKPOINT_VERSION);
+    out.writeInt(lowerFloor);
+    out.writeInt(higherFloor);
+    out.writeInt(cabinSize);
+    out.writeLong(clockTicks.getTicks());
+    out.writeLong(totalExits);
+    out.writeInt(currentFloor);
+    out.writeByte(currentDirection.ordinal());
+    out.writeByte(doorState.ordinal());
+    ledger.writeTo(out);
+    waitingUsers.writeTo(out);
+    elevatorUsers.writeTo(out);
+    stateHistory.writeTo(out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Restores the state returned by {@link #checkpoint()}, keeping the strategy and settings of this
+   * elevator.
+   *
+   * @throws IOException
+   *           if the checkpoint is invalid, the elevator being then unchanged
+   */
+  void restore(byte[] checkpoint) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(checkpoint));
+    int version = in.readInt();
+    if (version != CHECKPOINT_VERSION) {
+      throw new IOException("Unsupported checkpoint version: " + version);
+    }
+    int restoredLowerFloor, restoredHigherFloor, restoredCabinSize, restoredFloor;
+    long restoredExits;
+    Clock restoredClock;
+    Direction restoredDirection;
+    Door restoredDoor;
+    ScoreLedger restoredLedger;
+    WaitingUsers restoredWaitingUsers;
+    ElevatorUsers restoredElevatorUsers;
+    StateHistory restoredHistory;
+    try {
+      restoredLowerFloor = in.readInt();
+      restoredHigherFloor = in.readInt();
+      restoredCabinSize = in.readInt();
+      restoredClock = new Clock(in.readLong());
+      restoredExits = in.readLong();
+      restoredFloor = in.readInt();
+      restoredDirection = DIRECTIONS[in.readByte()];
+      restoredDoor = DOORS[in.readByte()];
+      restoredLedger = ScoreLedger.readFrom(in);
+      restoredWaitingUsers = WaitingUsers.readFrom(in, restoredClock, restoredLowerFloor, restoredHigherFloor);
+      restoredElevatorUsers = ElevatorUsers.readFrom(in, restoredClock, restoredLowerFloor, restoredHigherFloor);
+      restoredHistory = StateHistory.readFrom(in, historyCapacity);
+    } catch (RuntimeException e) {
+      throw new IOException("Invalid checkpoint", e);
+    }
+    if (journal != null) {
+      journal.restore(checkpoint);
+    }
+    invalidateSpeculation();
+    lowerFloor = restoredLowerFloor;
+    higherFloor = restoredHigherFloor;
+    cabinSize = restoredCabinSize;
+    clockTicks = restoredClock;
+    totalExits = restoredExits;
+    ledger = restoredLedger;
+    currentFloor = restoredFloor;
+    currentDirection = restoredDirection;
+    doorState = restoredDoor;
+    waitingUsers = restoredWaitingUsers;
+    elevatorUsers = restoredElevatorUsers;
+    stateHistory = restoredHistory;
+    publishSnapshot();
+    logger.info("--- Elevator restored at tick {} ---", clockTicks.getTicks());
+  }
+
   public Elevator reset(int lowerFloor, int higherFloor, int cabinSize) {
+    if (journal != null) {
+      journal.reset(lowerFloor, higherFloor, cabinSize);
+    }
     resetState(lowerFloor, higherFloor, cabinSize);
     return this;
   }
 
+  /**
+   * Rejects a floor outside of the building, as users are indexed by floor.
+   */
+  private void checkFloor(int floor) {
+    if (floor < lowerFloor || floor > higherFloor) {
+      throw new IllegalArgumentException("Floor " + floor + " is outside of [" + lowerFloor + ", " + higherFloor
+          + "]");
+    }
+  }
+
   // floor: 0-5, to : UP/DOWN
   public Elevator call(int atFloor, String to) {
-    waitingUsers.add(new WaitingUser(atFloor, Direction.valueOf(to)));
+    checkFloor(atFloor);
+    eventReceived();
+    Direction direction = Direction.valueOf(to);
+    if (journal != null) {
+      journal.call(atFloor, direction);
+    }
+    waitingUsers.add(atFloor, direction);
     return this;
   }
 
   public Elevator go(int floor) {
-    elevatorUsers.userRequestedFloor(floor, currentFloor);
+    checkFloor(floor);
+    eventReceived();
+    if (journal != null) {
+      journal.go(floor);
+    }
+    elevatorUsers.requestFloor(floor, currentFloor);
     return this;
   }
 
   public Elevator userHasEntered() {
+    eventReceived();
+    if (journal != null) {
+      journal.userHasEntered();
+    }
     if (isCabinFull()) {
       logger.error("The cabin is full : no user should enter"); // TODO : use an Exception
     }
-    WaitingUser user = waitingUsers.popUser(currentFloor);
-    elevatorUsers.userEntered(user);
-    logger.info("User has entered, added " + user);
+    waitingUsers.moveUserTo(currentFloor, elevatorUsers);
     return this;
   }
 
   public Elevator userHasExited() {
-    elevatorUsers.userExited(currentFloor);
+    eventReceived();
+    if (journal != null) {
+      journal.userHasExited();
+    }
+    int slot = elevatorUsers.removeExitingUser(currentFloor);
     totalExits++;
+    if (slot != ElevatorUsers.NO_SLOT) {
+      int finalPoints = elevatorUsers.getFinalPointsEarned(slot);
+      int waitingTicks = elevatorUsers.getWaitingTicks(slot);
+      int points = ledger.userExited(finalPoints, waitingTicks);
+      if (metrics != null) {
+        metrics.recordExit(points, ScoreLedger.lostWaiting(waitingTicks),
+            ScoreLedger.lostRiding(finalPoints, waitingTicks));
+      }
+    }
     return this;
   }
 
   public Command nextCommand() {
     ajustDirection();
-    Command command = strategy.nextCommand(this, this);
+    long start = metrics == null ? 0 : System.nanoTime();
+    Command command = speculation == null ? null : speculation.nextCommand(this, deadline);
+    if (command == null) {
+      command = deadline == null ? strategy.nextCommand(this, this) : deadline.nextCommand(this, strategy);
+    }
+    if (metrics != null) {
+      metrics.recordStrategy(strategy.getClass(), System.nanoTime() - start);
+    }
+    if (journal != null) {
+      journal.command(command, currentDirection);
+    }
     recordState(command);
     increaseTick();
+    if (speculation != null) {
+      speculation.start(this, strategy);
+    }
+    publishSnapshot();
     logger.info("Command returned: {}", command);
     return command;
   }
 
   private void increaseTick() {
-    clockTicks++;
-    waitingUsers.tick();
-    elevatorUsers.tick();
+    clockTicks.tick();
   }
 
   private void ajustDirection() {
@@ -287,10 +560,8 @@ public class Elevator implements ElevatorState, ElevatorController {
   }
 
   private void recordState(Command command) {
-    Stats stats = new Stats(clockTicks, totalExits, waitingUsers.nbUsers(), elevatorUsers.nbUsers(),
-        waitingUsers.getTotalTicks(), elevatorUsers.getTotalTicks(), 0, 0);
-    State state = new State(command, currentFloor, currentDirection, doorState, stats, getStateAsHtmlString());
-    stateHistory.add(state);
+    stateHistory.add(command, currentFloor, currentDirection, doorState, clockTicks.getTicks(), totalExits,
+        waitingUsers.nbUsers(), elevatorUsers.nbUsers(), waitingUsers.getTotalTicks(), elevatorUsers.getTotalTicks(), 0, 0);
   }
 
   /* (non-Javadoc)
@@ -449,6 +720,35 @@ public class Elevator implements ElevatorState, ElevatorController {
     }
   }
 
+  /**
+   * Performs the command provided by a strategy on the provided copy of this elevator, keeping the
+   * direction of the copy.
+   */
+  Command perform(Command command, Elevator copy) {
+    return perform(command, copy.currentDirection);
+  }
+
+  /**
+   * Performs the provided command, leaving the elevator in the provided direction, as when
+   * replaying a journal.
+   */
+  Command perform(Command command, Direction direction) {
+    currentDirection = direction;
+    switch (command) {
+    case OPEN:
+      return openDoor();
+    case CLOSE:
+      return closeDoor();
+    case UP:
+      return goUp();
+    case DOWN:
+      return goDown();
+    case NOTHING:
+    default:
+      return doNothing();
+    }
+  }
+
   public Command goDown() {
     currentFloor--;
     return Command.DOWN;
@@ -464,17 +764,23 @@ public class Elevator implements ElevatorState, ElevatorController {
     return toString();
   }
 
-  private String getStateAsHtmlString() {
-    return "<td>" + getTotalTicks() + "/" + waitingUsers.getAverageTicksPerUser() + "/" + elevatorUsers.getAverageTicksPerUser() +
-            "</td><td>" + currentFloor + "</td><td>" + currentDirection + "</td><td>" + doorState +
-            "</td><td>" + waitingUsers.toHTMLString() + "</td><td>" + elevatorUsers.toHTMLString() + "</td>";
+  /**
+   * Appends the description of the current state to the provided builder.
+   */
+  public StringBuilder appendStateTo(StringBuilder builder) {
+    builder.append("Ticks: ").append(getTotalTicks()).append('/').append(waitingUsers.getAverageTicksPerUser())
+        .append('/').append(elevatorUsers.getAverageTicksPerUser())
+        .append(", Floor=").append(currentFloor).append(", Dir=").append(currentDirection)
+        .append(", Door=").append(doorState).append(", WAIT ");
+    waitingUsers.appendTo(builder, " | ", "[", "]").append(", ELEV ");
+    return elevatorUsers.appendTo(builder, " | ", "[", "]");
   }
 
   @Override
   public String toString() {
-    return "Ticks: " + getTotalTicks() + "/" + waitingUsers.getAverageTicksPerUser() + "/" + elevatorUsers.getAverageTicksPerUser() +
-            ", Floor=" + currentFloor + ", Dir=" + currentDirection + ", Door=" + doorState +
-            ", WAIT " + waitingUsers + ", ELEV " + elevatorUsers;
+    // called by the thread accessing the elevator, like any other method
+    stateBuffer.setLength(0);
+    return appendStateTo(stateBuffer).toString();
   }
 
   @Override
@@ -482,4 +788,13 @@ public class Elevator implements ElevatorState, ElevatorController {
     return nbUsersInElevator() >= getCabinSize();
   }
 
+  @Override
+  public PlanningState getPlanningState() {
+    PlanningState state = new PlanningState(lowerFloor, higherFloor, cabinSize, currentFloor, doorState == Door.OPEN,
+        currentDirection != Direction.DOWN, waitingUsers.nbUsers(), elevatorUsers.nbUsers());
+    waitingUsers.copyTo(state);
+    elevatorUsers.copyTo(state);
+    return state;
+  }
+
 }
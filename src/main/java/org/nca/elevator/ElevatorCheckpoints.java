@@ -0,0 +1,225 @@
+package org.nca.elevator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodic checkpoints of the elevators of sessions, restored when a session is created again, so
+ * that a restarted server resumes without asking the game server for a reset.
+ * <p>
+ * The state is only captured while accessing the elevator, as returned by
+ * {@link Elevator#checkpoint()}. It is written by the thread of the checkpoints, to a temporary file
+ * then moved over the previous checkpoint, so that a crash leaves either checkpoint complete. A
+ * session is only checkpointed when its elevator changed since its last checkpoint, events
+ * included.
+ * <p>
+ * A checkpoint older than the maximum age is not restored : the game server has moved on since, so
+ * that the session rather asks for a reset.
+ */
+class ElevatorCheckpoints {
+
+    static final Logger logger = LoggerFactory.getLogger(ElevatorCheckpoints.class);
+
+    static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    static final long DEFAULT_MAX_AGE_MILLIS = 60000;
+
+    private final File directory;
+
+    private final long intervalNanos;
+
+    private final long maxAgeMillis;
+
+    private final ScheduledExecutorService writer;
+
+    private final Map<String, ScheduledFuture<?>> tasks = new ConcurrentHashMap<String, ScheduledFuture<?>>();
+
+    private final Map<String, ElevatorExecutor> executors = new ConcurrentHashMap<String, ElevatorExecutor>();
+
+    /** Number of changes of the elevator of each session at its last checkpoint. */
+    private final Map<String, Long> checkpointed = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * @throws IOException
+     *             if the directory can't be created
+     */
+    ElevatorCheckpoints(File directory, long interval, TimeUnit unit) throws IOException {
+        this(directory, interval, unit.convert(DEFAULT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS), unit);
+    }
+
+    /**
+     * @param maxAge
+     *            maximum age of a checkpoint to restore, based on the last modification of its file
+     * @throws IOException
+     *             if the directory can't be created
+     */
+    ElevatorCheckpoints(File directory, long interval, long maxAge, TimeUnit unit) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create checkpoint directory " + directory);
+        }
+        this.directory = directory;
+        this.intervalNanos = unit.toNanos(interval);
+        this.maxAgeMillis = unit.toMillis(maxAge);
+        this.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "elevator-checkpoints");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    File getFile(String id) {
+        return new File(directory, ElevatorSessions.toFileName(id) + ".checkpoint");
+    }
+
+    /**
+     * Restores the elevator of the provided session from its checkpoint, if any and not too old.
+     *
+     * @return true if the elevator was restored
+     */
+    boolean restore(String id, ElevatorExecutor executor) throws Exception {
+        File file = getFile(id);
+        if (!file.isFile()) {
+            return false;
+        }
+        long age = System.currentTimeMillis() - file.lastModified();
+        if (age > maxAgeMillis) {
+            logger.warn("Checkpoint {} of session {} is {} ms old, not restored", file, id, age);
+            return false;
+        }
+        final byte[] checkpoint = Files.readAllBytes(file.toPath());
+        try {
+            executor.execute(new ElevatorExecutor.Task<Void>() {
+                @Override
+                public Void run(Elevator elevator) throws IOException {
+                    elevator.restore(checkpoint);
+                    return null;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Unable to restore session {} from {}: {}", id, file, e.toString());
+            return false;
+        }
+        checkpointed.put(id, executor.getNbChanges());
+        logger.info("Session {} restored from {}", id, file);
+        return true;
+    }
+
+    /**
+     * Starts to checkpoint the elevator of the provided session periodically.
+     */
+    void start(final String id, final ElevatorExecutor executor) {
+        executors.put(id, executor);
+        tasks.put(id, writer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkpoint(id, executor);
+                } catch (Exception e) {
+                    logger.error("Unable to checkpoint session " + id, e);
+                }
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Writes the checkpoint of the provided session, if its elevator changed since the last one.
+     */
+    void checkpoint(String id, ElevatorExecutor executor) throws Exception {
+        // read before the checkpoint, so that a change in between is checkpointed next time
+        long nbChanges = executor.getNbChanges();
+        Long checkpointedChanges = checkpointed.get(id);
+        if (checkpointedChanges != null && checkpointedChanges == nbChanges) {
+            return;
+        }
+        byte[] checkpoint = executor.execute(new ElevatorExecutor.Task<byte[]>() {
+            @Override
+            public byte[] run(Elevator elevator) throws IOException {
+                return elevator.checkpoint();
+            }
+        });
+        write(getFile(id), checkpoint);
+        checkpointed.put(id, nbChanges);
+    }
+
+    private static void write(File file, byte[] checkpoint) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stops to checkpoint the provided session.
+     *
+     * @param delete
+     *            true to delete its checkpoint, when the session is over
+     */
+    void stop(String id, boolean delete) {
+        ScheduledFuture<?> task = tasks.remove(id);
+        if (task != null) {
+            task.cancel(false);
+        }
+        executors.remove(id);
+        checkpointed.remove(id);
+        if (delete) {
+            final File file = getFile(id);
+            // after the checkpoint being written, if any
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (file.exists() && !file.delete()) {
+                        logger.warn("Unable to delete checkpoint {}", file);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes a last checkpoint of each session, after the checkpoints being written, and stops.
+     */
+    void shutdown() throws InterruptedException {
+        for (ScheduledFuture<?> task : tasks.values()) {
+            task.cancel(false);
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, ElevatorExecutor> entry : executors.entrySet()) {
+                    try {
+                        checkpoint(entry.getKey(), entry.getValue());
+                    } catch (Exception e) {
+                        logger.error("Unable to checkpoint session " + entry.getKey(), e);
+                    }
+                }
+            }
+        });
+        writer.shutdown();
+        writer.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,125 @@
+package org.nca.elevator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch of events of the game server, parsed from a line-oriented body and applied in order to the
+ * elevator.
+ * <p>
+ * Each line holds an event named after its route, followed by its parameters separated by spaces :
+ *
+ * <pre>
+ * call 3 UP
+ * userHasEntered
+ * go 5
+ * userHasExited
+ * </pre>
+ *
+ * Blank lines are ignored. The whole batch is parsed before any event is applied, so that an
+ * invalid batch leaves the elevator unchanged.
+ */
+class ElevatorEvents {
+
+    static enum Type {
+        CALL("call", 2), GO("go", 1), USER_HAS_ENTERED("userHasEntered", 0), USER_HAS_EXITED("userHasExited", 0);
+
+        private final String name;
+        private final int nbParameters;
+
+        private Type(String name, int nbParameters) {
+            this.name = name;
+            this.nbParameters = nbParameters;
+        }
+
+        static Type fromName(String name) {
+            for (Type type : values()) {
+                if (type.name.equals(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    static class Event {
+        final Type type;
+        final int floor;
+        final String direction;
+
+        Event(Type type, int floor, String direction) {
+            this.type = type;
+            this.floor = floor;
+            this.direction = direction;
+        }
+
+        void apply(Elevator elevator) {
+            switch (type) {
+            case CALL:
+                elevator.call(floor, direction);
+                break;
+            case GO:
+                elevator.go(floor);
+                break;
+            case USER_HAS_ENTERED:
+                elevator.userHasEntered();
+                break;
+            case USER_HAS_EXITED:
+                elevator.userHasExited();
+                break;
+            }
+        }
+    }
+
+    private final List<Event> events;
+
+    private ElevatorEvents(List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * Parses the provided body.
+     *
+     * @throws IllegalArgumentException
+     *             if a line is not a valid event
+     */
+    static ElevatorEvents parse(String body) {
+        List<Event> events = new ArrayList<Event>();
+        String[] lines = body == null ? new String[0] : body.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            Type type = Type.fromName(tokens[0]);
+            if (type == null || tokens.length != type.nbParameters + 1) {
+                throw new IllegalArgumentException("Invalid event at line " + (i + 1) + ": " + line);
+            }
+            try {
+                int floor = type.nbParameters > 0 ? Integer.parseInt(tokens[1]) : 0;
+                String direction = null;
+                if (type == Type.CALL) {
+                    direction = Elevator.Direction.valueOf(tokens[2]).toString();
+                }
+                events.add(new Event(type, floor, direction));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid event at line " + (i + 1) + ": " + line, e);
+            }
+        }
+        return new ElevatorEvents(events);
+    }
+
+    /**
+     * Applies the events in order to the provided elevator.
+     */
+    void applyTo(Elevator elevator) {
+        for (Event event : events) {
+            event.apply(elevator);
+        }
+    }
+
+    int size() {
+        return events.size();
+    }
+}
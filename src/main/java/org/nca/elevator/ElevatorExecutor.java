@@ -0,0 +1,43 @@
+package org.nca.elevator;
+
+/**
+ * Executes tasks on the elevator on behalf of the server, ensuring that a single task at a time
+ * accesses the elevator.
+ * <p>
+ * Read-only requests are served from the snapshot published by the elevator, without waiting for
+ * it.
+ */
+interface ElevatorExecutor {
+
+    /**
+     * A task performed on the elevator.
+     */
+    interface Task<T> {
+
+        T run(Elevator elevator) throws Exception;
+    }
+
+    /**
+     * Executes the provided task and returns its result, once the task is done.
+     *
+     * @throws Exception
+     *             if the task failed
+     */
+    <T> T execute(Task<T> task) throws Exception;
+
+    /**
+     * Returns the last published snapshot of the elevator.
+     */
+    ElevatorSnapshot getSnapshot();
+
+    /**
+     * Returns the number of changes of the elevator, events included.
+     */
+    long getNbChanges();
+
+    /**
+     * Stops the executor, tasks can't be executed anymore.
+     */
+    void shutdown();
+
+}
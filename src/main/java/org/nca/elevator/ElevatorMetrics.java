@@ -0,0 +1,230 @@
+package org.nca.elevator;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.nca.elevator.strategy.ElevatorStrategy;
+
+/**
+ * Metrics of the server and of its elevators, exposed in the text format of Prometheus.
+ * <p>
+ * Recording only updates counters and histograms, without locking, so that metrics can stay
+ * enabled. Gauges, and the counters of the caches of strategies, are read from the last snapshot
+ * of each elevator registered.
+ */
+class ElevatorMetrics {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final ConcurrentMap<String, LatencyHistogram> routes = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private final ConcurrentMap<String, LatencyHistogram> strategies = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+
+    private final AtomicLong ticks = new AtomicLong(), points = new AtomicLong(), exits = new AtomicLong(),
+            lostWaiting = new AtomicLong(), lostRiding = new AtomicLong();
+
+    private final AtomicLong commandsWithDeadline = new AtomicLong(), overruns = new AtomicLong(),
+            speculationHits = new AtomicLong(), speculationMisses = new AtomicLong();
+
+    /** Number of users per points earned. */
+    private final AtomicLongArray pointsPerUser = new AtomicLongArray(ScoreLedger.MAX_POINTS + 1);
+
+    private final Set<Elevator> elevators = Collections.newSetFromMap(new ConcurrentHashMap<Elevator, Boolean>());
+
+    void recordRoute(String path, long nanos) {
+        histogram(routes, path).record(nanos);
+    }
+
+    void recordStrategy(Class<? extends ElevatorStrategy> strategy, long nanos) {
+        histogram(strategies, strategy.getSimpleName()).record(nanos);
+        ticks.incrementAndGet();
+    }
+
+    /**
+     * Records the time waited by a task before accessing the elevator, for the lock or in the
+     * queue of the event loop.
+     */
+    void recordLockWait(long nanos) {
+        lockWait.record(nanos);
+    }
+
+    /**
+     * Records a command requested with a deadline, provided by the fallback strategy if overrun.
+     */
+    void recordDeadlineCommand(boolean overrun) {
+        commandsWithDeadline.incrementAndGet();
+        if (overrun) {
+            overruns.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a speculated command, used if hit, or invalidated or failed if missed.
+     */
+    void recordSpeculation(boolean hit) {
+        (hit ? speculationHits : speculationMisses).incrementAndGet();
+    }
+
+    /**
+     * Records the exit of a user, with the points earned and lost, as computed by {@link ScoreLedger}.
+     */
+    void recordExit(int earned, int lostWhileWaiting, int lostWhileRiding) {
+        points.addAndGet(earned);
+        exits.incrementAndGet();
+        lostWaiting.addAndGet(lostWhileWaiting);
+        lostRiding.addAndGet(lostWhileRiding);
+        pointsPerUser.incrementAndGet(earned);
+    }
+
+    private static LatencyHistogram histogram(ConcurrentMap<String, LatencyHistogram> histograms, String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Adds the elevator to the elevators whose users are counted.
+     */
+    void register(Elevator elevator) {
+        elevators.add(elevator);
+    }
+
+    void unregister(Elevator elevator) {
+        elevators.remove(elevator);
+    }
+
+    long getTicks() {
+        return ticks.get();
+    }
+
+    long getPoints() {
+        return points.get();
+    }
+
+    /**
+     * Returns the metrics in the text format of Prometheus.
+     */
+    String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        summary(out, "elevator_route_latency_seconds", "Time to handle a request, per route", "route", routes);
+        summary(out, "elevator_strategy_decision_seconds", "Time to compute a command, per strategy", "strategy",
+                strategies);
+        summary(out, "elevator_lock_wait_seconds", "Time waited by a request before accessing the elevator", null,
+                Collections.singletonMap("", lockWait));
+
+        int nbUsersWaiting = 0, nbUsersInElevator = 0;
+        long cacheHits = 0, cacheMisses = 0, cacheEvictions = 0;
+        for (Elevator elevator : elevators) {
+            ElevatorSnapshot snapshot = elevator.getSnapshot();
+            nbUsersWaiting += snapshot.getNbUsersWaiting();
+            nbUsersInElevator += snapshot.getNbUsersInElevator();
+            cacheHits += snapshot.getNbCacheHits();
+            cacheMisses += snapshot.getNbCacheMisses();
+            cacheEvictions += snapshot.getNbCacheEvictions();
+        }
+        gauge(out, "elevator_elevators", "Number of elevators", elevators.size());
+        gauge(out, "elevator_users_waiting", "Users waiting for an elevator, at the last command", nbUsersWaiting);
+        gauge(out, "elevator_users_in_cabin", "Users in a cabin, at the last command", nbUsersInElevator);
+        counter(out, "elevator_points_total", "Points earned by users exiting a cabin", points.get());
+        counter(out, "elevator_users_exited_total", "Users who exited a cabin", exits.get());
+        counter(out, "elevator_points_lost_waiting_total", "Points lost by users to the decay while waiting",
+                lostWaiting.get());
+        counter(out, "elevator_points_lost_riding_total", "Points lost by users in a cabin beyond the shortest ride",
+                lostRiding.get());
+        pointsHistogram(out);
+        counter(out, "elevator_deadline_commands_total", "Commands requested with a deadline",
+                commandsWithDeadline.get());
+        counter(out, "elevator_deadline_overruns_total", "Commands provided by the fallback strategy after the deadline",
+                overruns.get());
+        counter(out, "elevator_speculation_hits_total", "Commands provided by speculation", speculationHits.get());
+        counter(out, "elevator_speculation_misses_total", "Speculated commands invalidated by an event or failed",
+                speculationMisses.get());
+        counter(out, "elevator_cache_hits_total", "Decisions found in the caches of strategies, at the last command",
+                cacheHits);
+        counter(out, "elevator_cache_misses_total", "Decisions computed by cached strategies, at the last command",
+                cacheMisses);
+        counter(out, "elevator_cache_evictions_total", "Decisions evicted from the caches of strategies, at the last command",
+                cacheEvictions);
+        // the rate is left to the scraper, so that several scrapers don't interfere
+        counter(out, "elevator_ticks_total", "Commands returned", ticks.get());
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String name, String help, String label,
+            Map<String, LatencyHistogram> histograms) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" summary\n");
+        // sorted for a stable output
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(histograms).entrySet()) {
+            String labels = label == null ? "" : label + "=\"" + escape(entry.getKey()) + "\"";
+            LatencyHistogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                out.append(name).append('{').append(labels).append(labels.isEmpty() ? "" : ",").append("quantile=\"")
+                        .append(quantile).append("\"} ").append(seconds(histogram.getValueAtQuantile(quantile)))
+                        .append('\n');
+            }
+            String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+            out.append(name).append("_sum").append(suffix).append(seconds(histogram.getSum())).append('\n');
+            out.append(name).append("_count").append(suffix).append(histogram.getCount()).append('\n');
+            out.append(name).append("_max").append(suffix).append(seconds(histogram.getMax())).append('\n');
+        }
+    }
+
+    private void pointsHistogram(StringBuilder out) {
+        String name = "elevator_points_per_user";
+        out.append("# HELP ").append(name).append(" Points earned by each user exiting a cabin\n");
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulated = 0, sum = 0;
+        for (int earned = 0; earned <= ScoreLedger.MAX_POINTS; earned++) {
+            long count = pointsPerUser.get(earned);
+            cumulated += count;
+            sum += count * earned;
+            if (earned % 5 == 0) {
+                out.append(name).append("_bucket{le=\"").append(earned).append("\"} ").append(cumulated).append('\n');
+            }
+        }
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulated).append('\n');
+        out.append(name).append("_sum ").append(sum).append('\n');
+        out.append(name).append("_count ").append(cumulated).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return format(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : String.format(Locale.ROOT, "%.9f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
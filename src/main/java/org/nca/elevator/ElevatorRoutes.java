@@ -0,0 +1,652 @@
+package org.nca.elevator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.ClassicStrategy;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.nca.elevator.strategy.Strategies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routes of the elevator server, independent of the HTTP transport.
+ * <p>
+ * Each transport adapts its requests and responses to {@link Request} and {@link Response}, and
+ * dispatches them to the route matching their method and path.
+ */
+class ElevatorRoutes {
+
+    static final Logger logger = LoggerFactory.getLogger(ElevatorRoutes.class);
+
+    /** Request received by a route. */
+    interface Request {
+        String queryParams(String name);
+
+        String body();
+
+        String pathInfo();
+
+        String queryString();
+
+        String headers(String name);
+    }
+
+    /** Response of a route, its body being the value returned by the route. */
+    interface Response {
+        void status(int statusCode);
+
+        void type(String contentType);
+    }
+
+    /** Route matching a method and a path. */
+    abstract static class Route {
+        private final String path;
+        private String method;
+
+        protected Route(String path) {
+            this.path = path;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        public abstract Object handle(Request request, Response response);
+    }
+
+    private final List<Route> routes = new ArrayList<Route>();
+
+    volatile boolean isServerInitialized = false;
+
+    /** Metrics recording the latency of routes, null if not recorded. */
+    private ElevatorMetrics metrics;
+
+    ElevatorRoutes(ElevatorExecutor executor) {
+        defineRoutes(executor);
+        defineFeedbackRoutes(executor);
+    }
+
+    /**
+     * Routes of a building with several cabins : events concerning a cabin have a <code>cabin</code>
+     * parameter, and <code>/nextCommands</code> returns the command of each cabin, one per line.
+     */
+    ElevatorRoutes(Dispatcher dispatcher) {
+        defineCabinRoutes(dispatcher);
+    }
+
+    /**
+     * Routes of independent sessions : each request is handled by the routes of the session given
+     * by its <code>session</code> parameter or its <code>X-Elevator-Session</code> header, or by the
+     * default session when it has none.
+     */
+    ElevatorRoutes(ElevatorSessions sessions) throws Exception {
+        for (Route route : sessions.get(null).getRoutes()) {
+            Route sessionRoute = sessionRoute(sessions, route.getMethod(), route.getPath());
+            sessionRoute.method = route.getMethod();
+            routes.add(sessionRoute);
+        }
+        defineSessionsRoutes(sessions);
+    }
+
+    /**
+     * Records the latency of each route in the provided metrics, and exposes the metrics at
+     * <code>/metrics</code>.
+     */
+    ElevatorRoutes withMetrics(final ElevatorMetrics metrics) {
+        this.metrics = metrics;
+        get(new Route("/metrics") {
+            @Override
+            public Object handle(Request request, Response response) {
+                response.type("text/plain; version=0.0.4; charset=utf-8");
+                return metrics.scrape();
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Handles the request with the provided route of these routes, recording its latency.
+     */
+    Object handle(Route route, Request request, Response response) {
+        if (metrics == null) {
+            return route.handle(request, response);
+        }
+        long start = System.nanoTime();
+        try {
+            return route.handle(request, response);
+        } finally {
+            metrics.recordRoute(route.getPath(), System.nanoTime() - start);
+        }
+    }
+
+    List<Route> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * Returns the route matching the provided method and path, or null if there is none.
+     */
+    Route find(String method, String path) {
+        for (Route route : routes) {
+            if (route.method.equals(method) && route.path.equals(path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void get(Route route) {
+        route.method = "GET";
+        routes.add(route);
+    }
+
+    private void post(Route route) {
+        route.method = "POST";
+        routes.add(route);
+    }
+
+    private void defineFeedbackRoutes(final ElevatorExecutor executor) {
+        get(new Route("/status") {
+            @Override
+            public Object handle(Request request, Response response) {
+                String result = "";
+                try {
+                    String entries = request.queryParams("entries");
+                    int numberOfEntries = entries == null ? 1 : Integer.valueOf(entries);
+                    response.type("text/html");
+                    // served from the last snapshot, without waiting for the elevator
+                    ElevatorSnapshot elevator = executor.getSnapshot();
+                    result = "<p>GRElevator v. " + Server.VERSION + "</p>" 
+                            + "<p> lowerFloor :" + elevator.getLowerFloor() + " higherFloor :" + elevator.getHigherFloor() + " cabinSize :" + elevator.getCabinSize() + "</p>"
+                            + "<p>Using strategy: " + elevator.getStrategy().getName()
+                            + " and optimization: " + elevator.getOptimization() + ".</p>"
+                            + (elevator.hasDeadline() ? "<p>Deadline: " + elevator.getDeadlineMillis() + " ms, fallback: "
+                                    + elevator.getFallback().getName() + ", overruns: " + elevator.getNbOverruns() + "/"
+                                    + elevator.getNbCommandsWithDeadline() + "</p>" : "")
+                            + (elevator.isSpeculative() ? "<p>Speculation hits: " + elevator.getNbSpeculationHits()
+                                    + ", misses: " + elevator.getNbSpeculationMisses() + "</p>" : "")
+                            + (elevator.hasCache() ? "<p>Cache of " + elevator.getCachedStrategy().getName()
+                                    + ": " + elevator.getCacheSize() + " decisions, hits: " + elevator.getNbCacheHits()
+                                    + ", misses: " + elevator.getNbCacheMisses() + ", evictions: "
+                                    + elevator.getNbCacheEvictions() + "</p>" : "")
+                            + "<p>Score: " + elevator.getLedger().appendTo(new StringBuilder(), elevator.getTicks()) + "</p>"
+                            + "<p><b>State</b> :"
+                            + elevator.getHistoryAsHtml(numberOfEntries) + "</p>";
+                } catch (Exception e) {
+                    result = e.getMessage();
+                }
+                return result;
+            }
+        });
+
+        get(new Route("/strategy") {
+            @Override
+            public Object handle(Request request, Response response) {
+                try {
+                    String klass = Strategies.PACKAGE + "." + request.queryParams("klass");
+                    final ElevatorStrategy strategy = Strategies.newStrategy(klass);
+                    executor.execute(new ElevatorExecutor.Task<Void>() {
+                        @Override
+                        public Void run(Elevator elevator) {
+                            elevator.setStrategy(strategy);
+                            return null;
+                        }
+                    });
+                    return "Strategy successfully changed to " + klass;
+                } catch (Exception e) {
+                    response.status(500);
+                    logger.error("Unable to change the strategy : {}", e.toString());
+                    return "Strategy change failed: " + e.getMessage();
+                }
+            }
+        });
+
+        get(new Route("/optimization") {
+            @Override
+            public Object handle(Request request, Response response) {
+                String name = request.queryParams("name");
+                final Optimization optimization = Optimization.valueOf(name);
+                if (optimization == null) {
+                    response.status(404);
+                    return "No optimization found for " + name;
+                }
+                try {
+                    executor.execute(new ElevatorExecutor.Task<Void>() {
+                        @Override
+                        public Void run(Elevator elevator) {
+                            elevator.setOptimization(optimization);
+                            return null;
+                        }
+                    });
+                    return "Optimization successfully changed to " + optimization;
+                } catch (Exception e) {
+                    response.status(500);
+                    logger.error("Unable to change the optimization: {}", e.toString());
+                    return "Optimization change failed: " + e.getMessage();
+                }
+            }
+        });
+
+        get(new Route("/deadline") {
+            @Override
+            public Object handle(Request request, Response response) {
+                try {
+                    final long millis = Long.valueOf(request.queryParams("millis"));
+                    executor.execute(new ElevatorExecutor.Task<Void>() {
+                        @Override
+                        public Void run(Elevator elevator) {
+                            elevator.setDeadline(millis, TimeUnit.MILLISECONDS, new ClassicStrategy());
+                            return null;
+                        }
+                    });
+                    return "Deadline successfully changed to " + millis + " ms";
+                } catch (Exception e) {
+                    response.status(500);
+                    logger.error("Unable to change the deadline: {}", e.toString());
+                    return "Deadline change failed: " + e.getMessage();
+                }
+            }
+        });
+
+        get(new Route("/speculation") {
+            @Override
+            public Object handle(Request request, Response response) {
+                try {
+                    final boolean enabled = Boolean.valueOf(request.queryParams("enabled"));
+                    executor.execute(new ElevatorExecutor.Task<Void>() {
+                        @Override
+                        public Void run(Elevator elevator) {
+                            elevator.setSpeculative(enabled);
+                            return null;
+                        }
+                    });
+                    return "Speculation successfully " + (enabled ? "enabled" : "disabled");
+                } catch (Exception e) {
+                    response.status(500);
+                    logger.error("Unable to change the speculation: {}", e.toString());
+                    return "Speculation change failed: " + e.getMessage();
+                }
+            }
+        });
+
+        get(new Route("/forceReset") {
+            @Override
+            public Object handle(Request request, Response response) {
+                // So the next Command will be a RESET
+                isServerInitialized = false;
+                return "";
+            }
+        });
+    }
+
+    private void defineRoutes(final ElevatorExecutor executor) {
+        get(new Route("/call") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String atFloor = request.queryParams("atFloor");
+                final String to = request.queryParams("to");
+                return execute(executor, response, new ElevatorExecutor.Task<Object>() {
+                    @Override
+                    public Object run(Elevator elevator) {
+                        elevator.call(Integer.valueOf(atFloor), to);
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/go") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String floor = request.queryParams("floorToGo");
+                return execute(executor, response, new ElevatorExecutor.Task<Object>() {
+                    @Override
+                    public Object run(Elevator elevator) {
+                        elevator.go(Integer.valueOf(floor));
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/userHasEntered") {
+            @Override
+            public Object handle(Request request, Response response) {
+                // TODO find a more accurate status code than 500 on error
+                return execute(executor, response, new ElevatorExecutor.Task<Object>() {
+                    @Override
+                    public Object run(Elevator elevator) {
+                        elevator.userHasEntered();
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/userHasExited") {
+            @Override
+            public Object handle(Request request, Response response) {
+                return execute(executor, response, new ElevatorExecutor.Task<Object>() {
+                    @Override
+                    public Object run(Elevator elevator) {
+                        elevator.userHasExited();
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/reset") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String lowerFloor = request.queryParams("lowerFloor");
+                final String higherFloor = request.queryParams("higherFloor");
+                String cause = request.queryParams("cause");
+                final String cabinSize = request.queryParams("cabinSize");
+
+                logger.info("Resetting elevator from {} to {} with max of {} users in the cabin because of : {}",
+                        lowerFloor, higherFloor, cabinSize, cause);
+                return execute(executor, response, new ElevatorExecutor.Task<Object>() {
+                    @Override
+                    public Object run(Elevator elevator) {
+                        if (lowerFloor != null && higherFloor != null) {
+                            elevator.reset(Integer.valueOf(lowerFloor), Integer.valueOf(higherFloor), Integer.valueOf(cabinSize));
+                        }
+                        else {
+                            elevator.reset(0, 19, 30); // allow to use the not up-to-date elevator server
+                        }
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/nextCommand") {
+            @Override
+            public Object handle(Request request, Response response) {
+                try {
+                    return executor.execute(new ElevatorExecutor.Task<Object>() {
+                        @Override
+                        public Object run(Elevator elevator) {
+                            return nextCommand(elevator);
+                        }
+                    });
+                } catch (Exception e) {
+                    logger.error("Unexpected error in next command: {}", e.getMessage());
+                    return Command.NOTHING;
+                }
+            }
+        });
+
+        post(new Route("/events") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final ElevatorEvents events;
+                try {
+                    events = ElevatorEvents.parse(request.body());
+                } catch (IllegalArgumentException e) {
+                    response.status(400);
+                    return e.getMessage();
+                }
+                final boolean withNextCommand = Boolean.valueOf(request.queryParams("nextCommand"));
+                // all events, and the next command if requested, in a single execution
+                return execute(executor, response, new ElevatorExecutor.Task<Object>() {
+                    @Override
+                    public Object run(Elevator elevator) {
+                        events.applyTo(elevator);
+                        return withNextCommand ? nextCommand(elevator) : "";
+                    }
+                });
+            }
+        });
+    }
+
+    private void defineCabinRoutes(final Dispatcher dispatcher) {
+        get(new Route("/status") {
+            @Override
+            public Object handle(Request request, Response response) {
+                response.type("text/html");
+                List<ElevatorSnapshot> cabins = dispatcher.getSnapshots();
+                ElevatorSnapshot first = cabins.get(0);
+                StringBuilder result = new StringBuilder();
+                result.append("<p>GRElevator v. ").append(Server.VERSION).append("</p>")
+                        .append("<p> lowerFloor :").append(first.getLowerFloor()).append(" higherFloor :")
+                        .append(first.getHigherFloor()).append(" cabinSize :").append(first.getCabinSize())
+                        .append(" cabins :").append(cabins.size()).append("</p>")
+                        .append("<p>Using strategy: ").append(first.getStrategy().getName())
+                        .append(" and optimization: ").append(first.getOptimization()).append(".</p>")
+                        .append("<p>Users handed to another cabin: ").append(dispatcher.getNbTransfers()).append("</p>");
+                for (int i = 0; i < cabins.size(); i++) {
+                    ElevatorSnapshot cabin = cabins.get(i);
+                    result.append("<p><b>Cabin ").append(i).append("</b> :").append(cabin.getHistoryAsHtml(1))
+                            .append("</p><p>Score: ");
+                    cabin.getLedger().appendTo(result, cabin.getTicks()).append("</p>");
+                }
+                return result.toString();
+            }
+        });
+
+        get(new Route("/forceReset") {
+            @Override
+            public Object handle(Request request, Response response) {
+                isServerInitialized = false;
+                return "";
+            }
+        });
+
+        get(new Route("/reset") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String lowerFloor = request.queryParams("lowerFloor");
+                final String higherFloor = request.queryParams("higherFloor");
+                final String cabinSize = request.queryParams("cabinSize");
+                final String cabinCount = request.queryParams("cabinCount");
+                logger.info("Resetting {} cabins from {} to {} with max of {} users in each cabin because of : {}",
+                        cabinCount, lowerFloor, higherFloor, cabinSize, request.queryParams("cause"));
+                return execute(response, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        int nbCabins = cabinCount != null ? Integer.valueOf(cabinCount) : dispatcher.getNbCabins();
+                        if (lowerFloor != null && higherFloor != null) {
+                            dispatcher.reset(Integer.valueOf(lowerFloor), Integer.valueOf(higherFloor),
+                                    Integer.valueOf(cabinSize), nbCabins);
+                        }
+                        else {
+                            dispatcher.reset(0, 19, 30, nbCabins); // allow to use the not up-to-date elevator server
+                        }
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/strategy") {
+            @Override
+            public Object handle(Request request, Response response) {
+                try {
+                    String klass = "org.nca.elevator.strategy." + request.queryParams("klass");
+                    dispatcher.setStrategy(Class.forName(klass).asSubclass(ElevatorStrategy.class));
+                    return "Strategy successfully changed to " + klass;
+                } catch (Exception e) {
+                    response.status(500);
+                    logger.error("Unable to change the strategy : {}", e.toString());
+                    return "Strategy change failed: " + e.getMessage();
+                }
+            }
+        });
+
+        get(new Route("/optimization") {
+            @Override
+            public Object handle(Request request, Response response) {
+                try {
+                    Optimization optimization = Optimization.valueOf(request.queryParams("name"));
+                    dispatcher.setOptimization(optimization);
+                    return "Optimization successfully changed to " + optimization;
+                } catch (Exception e) {
+                    response.status(500);
+                    logger.error("Unable to change the optimization: {}", e.toString());
+                    return "Optimization change failed: " + e.getMessage();
+                }
+            }
+        });
+
+        get(new Route("/call") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String atFloor = request.queryParams("atFloor");
+                final String to = request.queryParams("to");
+                return execute(response, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        dispatcher.call(Integer.valueOf(atFloor), to);
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/go") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String cabin = request.queryParams("cabin");
+                final String floor = request.queryParams("floorToGo");
+                return execute(response, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        dispatcher.go(Integer.valueOf(cabin), Integer.valueOf(floor));
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/userHasEntered") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String cabin = request.queryParams("cabin");
+                return execute(response, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        dispatcher.userHasEntered(Integer.valueOf(cabin));
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/userHasExited") {
+            @Override
+            public Object handle(Request request, Response response) {
+                final String cabin = request.queryParams("cabin");
+                return execute(response, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        dispatcher.userHasExited(Integer.valueOf(cabin));
+                        return "";
+                    }
+                });
+            }
+        });
+
+        get(new Route("/nextCommands") {
+            @Override
+            public Object handle(Request request, Response response) {
+                return execute(response, new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        if (!isServerInitialized) {
+                            isServerInitialized = true;
+                            return "NEED RESET";
+                        }
+                        StringBuilder commands = new StringBuilder();
+                        for (Command command : dispatcher.nextCommands()) {
+                            commands.append(command).append('\n');
+                        }
+                        return commands.toString();
+                    }
+                });
+            }
+        });
+    }
+
+    private static Route sessionRoute(final ElevatorSessions sessions, final String method, String path) {
+        return new Route(path) {
+            @Override
+            public Object handle(Request request, Response response) {
+                String id = request.queryParams(ElevatorSessions.SESSION_PARAMETER);
+                if (id == null) {
+                    id = request.headers(ElevatorSessions.SESSION_HEADER);
+                }
+                ElevatorRoutes session;
+                try {
+                    session = sessions.get(id);
+                } catch (IllegalStateException e) {
+                    response.status(503);
+                    logger.warn("Unable to create session {}: {}", id, e.getMessage());
+                    return e.getMessage();
+                } catch (Exception e) {
+                    response.status(500);
+                    logger.error("Unable to create session {}: {}", id, e.toString());
+                    return e.getMessage();
+                }
+                return session.find(method, getPath()).handle(request, response);
+            }
+        };
+    }
+
+    private void defineSessionsRoutes(final ElevatorSessions sessions) {
+        get(new Route("/sessions") {
+            @Override
+            public Object handle(Request request, Response response) {
+                return "<p>Sessions: " + sessions.size() + ", evicted: " + sessions.getNbEvictions() + "</p>";
+            }
+        });
+    }
+
+    private String nextCommand(Elevator elevator) {
+        if (isServerInitialized) {
+            return elevator.nextCommand().toString();
+        }
+        else {
+            // need to force reset by server by sending unknown command to it
+            isServerInitialized = true;
+            return "NEED RESET";
+        }
+    }
+
+    /**
+     * Executes the provided task, answering with a 500 status if it fails.
+     */
+    private Object execute(ElevatorExecutor executor, Response response, ElevatorExecutor.Task<Object> task) {
+        try {
+            return executor.execute(task);
+        } catch (Exception e) {
+            response.status(500);
+            logger.error("Unexpected error while handling request: {}", e.toString());
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Executes the provided task on the dispatcher, answering with a 500 status if it fails.
+     */
+    private Object execute(Response response, Callable<Object> task) {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            response.status(500);
+            logger.error("Unexpected error while handling request: {}", e.toString());
+            return e.getMessage();
+        }
+    }
+}
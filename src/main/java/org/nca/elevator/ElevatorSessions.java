@@ -0,0 +1,252 @@
+package org.nca.elevator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Independent elevator sessions hosted by a single server, each one keyed by an id and having its
+ * own elevator, strategy, executor and routes.
+ * <p>
+ * A session is created on its first request. Sessions idle for longer than the idle timeout are
+ * evicted and their elevator released, except the default session used by requests without id.
+ */
+class ElevatorSessions {
+
+    static final Logger logger = LoggerFactory.getLogger(ElevatorSessions.class);
+
+    /** Session of the requests without id. */
+    static final String DEFAULT_SESSION = "default";
+
+    static final int DEFAULT_MAX_SESSIONS = 1000;
+
+    static final long DEFAULT_IDLE_TIMEOUT_MINUTES = 10;
+
+    /** Query parameter providing the session id. */
+    static final String SESSION_PARAMETER = "session";
+
+    /** Header providing the session id, when there is no query parameter. */
+    static final String SESSION_HEADER = "X-Elevator-Session";
+
+    /**
+     * Creates the executor of the elevator of a new session.
+     */
+    interface Factory {
+
+        ElevatorExecutor create(String id) throws Exception;
+    }
+
+    private static class Session {
+        final ElevatorExecutor executor;
+        final ElevatorRoutes routes;
+        /** Last access, written by any request thread of the session. */
+        volatile long lastAccessNanos;
+
+        /**
+         * @param restored
+         *            true if the elevator was restored, so that it needs no reset
+         */
+        Session(ElevatorExecutor executor, boolean restored) {
+            this.executor = executor;
+            this.routes = new ElevatorRoutes(executor);
+            this.routes.isServerInitialized = restored;
+            this.lastAccessNanos = System.nanoTime();
+        }
+    }
+
+    private final Factory factory;
+
+    private final int maxSessions;
+
+    private final long idleTimeoutNanos;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+
+    private final ScheduledExecutorService evictor;
+
+    private volatile long nbEvictions;
+
+    /** Checkpoints of the sessions, null if not checkpointed. */
+    private ElevatorCheckpoints checkpoints;
+
+    /**
+     * @param maxSessions
+     *            maximum number of sessions, including the default one
+     * @param idleTimeout
+     *            time after which an idle session is evicted
+     */
+    ElevatorSessions(Factory factory, int maxSessions, long idleTimeout, TimeUnit unit) {
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("Maximum number of sessions must be positive: " + maxSessions);
+        }
+        this.factory = factory;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "elevator-sessions-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Restores each session from its checkpoint when it is created, and checkpoints it periodically.
+     * To be called before the first session is created.
+     */
+    ElevatorSessions withCheckpoints(ElevatorCheckpoints checkpoints) {
+        this.checkpoints = checkpoints;
+        return this;
+    }
+
+    /**
+     * Returns a file name for the provided session id, distinct for distinct ids : letters, digits
+     * and '-' are kept, other characters are replaced by '_' followed by the hexadecimal value of
+     * each of their UTF-8 bytes.
+     */
+    static String toFileName(String id) {
+        StringBuilder fileName = new StringBuilder(id.length());
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-') {
+                fileName.append(c);
+            }
+            else {
+                fileName.append('_').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return fileName.toString();
+    }
+
+    /**
+     * Starts to evict idle sessions periodically.
+     */
+    void start() {
+        long periodNanos = Math.max(idleTimeoutNanos / 2, TimeUnit.SECONDS.toNanos(1));
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evictIdleSessions();
+                } catch (RuntimeException e) {
+                    logger.error("Unable to evict idle sessions", e);
+                }
+            }
+        }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the routes of the session with the provided id, creating the session if needed.
+     *
+     * @param id
+     *            id of the session, null for the default session
+     * @throws IllegalStateException
+     *             if the maximum number of sessions is reached
+     */
+    ElevatorRoutes get(String id) throws Exception {
+        String key = id == null || id.isEmpty() ? DEFAULT_SESSION : id;
+        Session session = sessions.get(key);
+        if (session == null) {
+            session = create(key);
+        }
+        session.lastAccessNanos = System.nanoTime();
+        return session.routes;
+    }
+
+    private synchronized Session create(String id) throws Exception {
+        Session session = sessions.get(id);
+        if (session != null) {
+            return session;
+        }
+        if (sessions.size() >= maxSessions) {
+            evictIdleSessions();
+            if (sessions.size() >= maxSessions) {
+                throw new IllegalStateException("Maximum number of sessions reached: " + maxSessions);
+            }
+        }
+        ElevatorExecutor executor = factory.create(id);
+        boolean restored = false;
+        if (checkpoints != null) {
+            restored = checkpoints.restore(id, executor);
+            checkpoints.start(id, executor);
+        }
+        session = new Session(executor, restored);
+        sessions.put(id, session);
+        logger.info("Session {} created, {} sessions", id, sessions.size());
+        return session;
+    }
+
+    /**
+     * Evicts the sessions idle for longer than the idle timeout.
+     *
+     * @return the number of sessions evicted
+     */
+    synchronized int evictIdleSessions() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        Iterator<Map.Entry<String, Session>> entries = sessions.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Session> entry = entries.next();
+            if (!entry.getKey().equals(DEFAULT_SESSION)
+                    && now - entry.getValue().lastAccessNanos > idleTimeoutNanos) {
+                entries.remove();
+                if (checkpoints != null) {
+                    checkpoints.stop(entry.getKey(), true);
+                }
+                release(entry.getValue());
+                evicted++;
+                logger.info("Session {} evicted after being idle", entry.getKey());
+            }
+        }
+        nbEvictions += evicted;
+        return evicted;
+    }
+
+    private void release(Session session) {
+        try {
+            session.executor.execute(new ElevatorExecutor.Task<Void>() {
+                @Override
+                public Void run(Elevator elevator) {
+                    elevator.shutdown();
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            logger.warn("Unable to release elevator of evicted session: {}", e.toString());
+        }
+        session.executor.shutdown();
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    long getNbEvictions() {
+        return nbEvictions;
+    }
+
+    /**
+     * Releases all sessions, after a last checkpoint of each one if sessions are checkpointed.
+     */
+    void shutdown() throws InterruptedException {
+        evictor.shutdown();
+        if (checkpoints != null) {
+            checkpoints.shutdown();
+        }
+        for (Session session : sessions.values()) {
+            release(session);
+        }
+        sessions.clear();
+    }
+}
@@ -0,0 +1,197 @@
+package org.nca.elevator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.CachingStrategy;
+import org.nca.elevator.strategy.ElevatorStrategy;
+
+/**
+ * Immutable snapshot of the configuration and history of an elevator, which can be read without
+ * any synchronization with the elevator.
+ * <p>
+ * Counters and score are copied when the snapshot is taken. The history is not copied : it is only
+ * read up to {@code historyPosition}, so that the snapshot renders the states recorded before it
+ * was taken, as long as they are kept in the history.
+ */
+class ElevatorSnapshot {
+
+    private final int lowerFloor;
+    private final int higherFloor;
+    private final int cabinSize;
+    private final Class<? extends ElevatorStrategy> strategy;
+    private final Optimization optimization;
+    /** History of the elevator, shared with it and only read up to historyPosition. */
+    private final StateHistory history;
+    /** Number of states recorded in history when the snapshot was taken. */
+    private final long historyPosition;
+    private final long deadlineMillis;
+    private final Class<? extends ElevatorStrategy> fallback;
+    private final long nbCommandsWithDeadline, nbOverruns;
+    private final boolean speculative;
+    private final long nbSpeculationHits, nbSpeculationMisses;
+    /** Strategy whose decisions are cached, null if decisions are not cached. */
+    private final Class<? extends ElevatorStrategy> cachedStrategy;
+    private final int cacheSize;
+    private final long nbCacheHits, nbCacheMisses, nbCacheEvictions;
+    private final int nbUsersWaiting, nbUsersInElevator;
+    /** Copy of the score of the elevator. */
+    private final ScoreLedger ledger;
+    private final long ticks;
+
+    ElevatorSnapshot(int lowerFloor, int higherFloor, int cabinSize,
+            Class<? extends ElevatorStrategy> strategy, Optimization optimization,
+            StateHistory history, long historyPosition, StrategyDeadline deadline,
+            StrategySpeculation speculation, CachingStrategy cache, int nbUsersWaiting, int nbUsersInElevator,
+            ScoreLedger ledger, long ticks) {
+        this.lowerFloor = lowerFloor;
+        this.higherFloor = higherFloor;
+        this.cabinSize = cabinSize;
+        this.strategy = strategy;
+        this.optimization = optimization;
+        this.history = history;
+        this.historyPosition = historyPosition;
+        this.deadlineMillis = deadline == null ? 0 : deadline.getBudget(TimeUnit.MILLISECONDS);
+        this.fallback = deadline == null ? null : deadline.getFallback();
+        this.nbCommandsWithDeadline = deadline == null ? 0 : deadline.getNbCommands();
+        this.nbOverruns = deadline == null ? 0 : deadline.getNbOverruns();
+        this.speculative = speculation != null;
+        this.nbSpeculationHits = speculation == null ? 0 : speculation.getNbHits();
+        this.nbSpeculationMisses = speculation == null ? 0 : speculation.getNbMisses();
+        this.cachedStrategy = cache == null ? null : cache.getCachedStrategy();
+        this.cacheSize = cache == null ? 0 : cache.size();
+        this.nbCacheHits = cache == null ? 0 : cache.getNbHits();
+        this.nbCacheMisses = cache == null ? 0 : cache.getNbMisses();
+        this.nbCacheEvictions = cache == null ? 0 : cache.getNbEvictions();
+        this.nbUsersWaiting = nbUsersWaiting;
+        this.nbUsersInElevator = nbUsersInElevator;
+        this.ledger = new ScoreLedger(ledger);
+        this.ticks = ticks;
+    }
+
+    public int getLowerFloor() {
+        return lowerFloor;
+    }
+
+    public int getHigherFloor() {
+        return higherFloor;
+    }
+
+    public int getCabinSize() {
+        return cabinSize;
+    }
+
+    public Class<? extends ElevatorStrategy> getStrategy() {
+        return strategy;
+    }
+
+    public Optimization getOptimization() {
+        return optimization;
+    }
+
+    /**
+     * Returns true if the strategy has a time budget to provide each command.
+     */
+    public boolean hasDeadline() {
+        return fallback != null;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public Class<? extends ElevatorStrategy> getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Returns the number of commands requested since the deadline was set.
+     */
+    public long getNbCommandsWithDeadline() {
+        return nbCommandsWithDeadline;
+    }
+
+    /**
+     * Returns the number of commands provided by the fallback strategy because the deadline passed.
+     */
+    public long getNbOverruns() {
+        return nbOverruns;
+    }
+
+    /**
+     * Returns true if the next command is speculated right after each command.
+     */
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    /**
+     * Returns the number of commands provided by speculation.
+     */
+    public long getNbSpeculationHits() {
+        return nbSpeculationHits;
+    }
+
+    /**
+     * Returns the number of speculated commands invalidated by an event or failed.
+     */
+    public long getNbSpeculationMisses() {
+        return nbSpeculationMisses;
+    }
+
+    /**
+     * Returns true if the decisions of the strategy are cached.
+     */
+    public boolean hasCache() {
+        return cachedStrategy != null;
+    }
+
+    public Class<? extends ElevatorStrategy> getCachedStrategy() {
+        return cachedStrategy;
+    }
+
+    /**
+     * Returns the number of decisions in the cache.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public long getNbCacheHits() {
+        return nbCacheHits;
+    }
+
+    public long getNbCacheMisses() {
+        return nbCacheMisses;
+    }
+
+    public long getNbCacheEvictions() {
+        return nbCacheEvictions;
+    }
+
+    public int getNbUsersWaiting() {
+        return nbUsersWaiting;
+    }
+
+    public int getNbUsersInElevator() {
+        return nbUsersInElevator;
+    }
+
+    /**
+     * Returns the score since the last reset, when the snapshot was taken.
+     */
+    public ScoreLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Returns the number of ticks since the last reset, at the last command.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    public String getHistoryAsHtml(int numberOfEntries) {
+        return history.getHistoryAsHtml(historyPosition, numberOfEntries);
+    }
+}
@@ -40,4 +40,9 @@ public interface ElevatorState {
 
   boolean isCabinFull();
 
+  /**
+   * Returns a compact copy of the elevator and its users, to evaluate sequences of commands.
+   */
+  PlanningState getPlanningState();
+
 }
\ No newline at end of file
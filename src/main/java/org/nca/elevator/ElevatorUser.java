@@ -8,19 +8,39 @@ class ElevatorUser implements Comparable<ElevatorUser> {
 
     static final Logger logger = LoggerFactory.getLogger(ElevatorUser.class);
 
-    private static final int UNSET_EXIT_FLOOR = -1;
+    static final int UNSET_EXIT_FLOOR = -1;
 
     private final int entryFloor;
     private Direction direction;
     private int exitFloor;
     private final int waitingTicks;
-    private int ticks;
+    private final Clock clock;
+    /** Clock value when this user entered the elevator. */
+    private final long entryTick;
 
     public ElevatorUser(WaitingUser user) {
-        this.entryFloor = user.getFloor();
-        this.direction = user.getDirection();
-        this.waitingTicks = user.getTicks();
-        this.exitFloor = UNSET_EXIT_FLOOR;
+        this(user, new Clock());
+    }
+
+    public ElevatorUser(WaitingUser user, Clock clock) {
+        this(user.getFloor(), user.getDirection(), UNSET_EXIT_FLOOR, user.getTicks(), clock, clock.getTicks());
+    }
+
+    ElevatorUser(int entryFloor, Direction direction, int exitFloor, int waitingTicks, Clock clock,
+            long entryTick) {
+        this.entryFloor = entryFloor;
+        this.direction = direction;
+        this.exitFloor = exitFloor;
+        this.waitingTicks = waitingTicks;
+        this.clock = clock;
+        this.entryTick = entryTick;
+    }
+
+    /**
+     * Returns a copy of this user, following the provided clock.
+     */
+    ElevatorUser copy(Clock clock) {
+        return new ElevatorUser(entryFloor, direction, exitFloor, waitingTicks, clock, entryTick);
     }
 
     /**
@@ -78,21 +98,21 @@ class ElevatorUser implements Comparable<ElevatorUser> {
      * Returns the total number of ticks this user has passed (waiting + in elevator).
      */
     public int getTotalTicks() {
-        return waitingTicks + ticks;
+        return waitingTicks + getTicks();
     }
 
     /**
-     * Returns the number of ticks this user has passed in the elevator.
+     * Returns the number of ticks this user has waited before entering the elevator.
      */
-    public int getTicks() {
-        return ticks;
+    public int getWaitingTicks() {
+        return waitingTicks;
     }
 
     /**
-     * Receives a tick.
+     * Returns the number of ticks this user has passed in the elevator.
      */
-    public void tick() {
-        ticks++;
+    public int getTicks() {
+        return (int) (clock.getTicks() - entryTick);
     }
 
     /**
@@ -101,7 +121,7 @@ class ElevatorUser implements Comparable<ElevatorUser> {
      * of stops between.
      */
     public int estimatePointsEarned(int currentFloor, int numberOfStops) {
-        return Score.estimatePointsEarned(entryFloor, exitFloor, waitingTicks, ticks, currentFloor, numberOfStops);
+        return Score.estimatePointsEarned(entryFloor, exitFloor, waitingTicks, getTicks(), currentFloor, numberOfStops);
     }
 
     /**
@@ -109,13 +129,26 @@ class ElevatorUser implements Comparable<ElevatorUser> {
      * exits.
      */
     public int getFinalPointsEarned() {
-        return Score.maxPointsToEarnInElevator(entryFloor, exitFloor, waitingTicks, ticks);
+        return Score.maxPointsToEarnInElevator(entryFloor, exitFloor, waitingTicks, getTicks());
+    }
+
+    /**
+     * Appends the description of this user to the provided builder.
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        builder.append(entryFloor).append('/').append(direction.toShortString()).append('/');
+        if (hasExitFloor()) {
+            builder.append(exitFloor);
+        } else {
+            builder.append('_');
+        }
+        return builder.append(" T=").append(getTotalTicks()).append('/').append(waitingTicks).append('+')
+                .append(getTicks());
     }
 
     @Override
     public String toString() {
-        return entryFloor + "/" + direction.toShortString() + "/" + (hasExitFloor() ? exitFloor : "_") + " T="
-                + getTotalTicks() + "/" + waitingTicks + "+" + ticks;
+        return appendTo(new StringBuilder()).toString();
     }
 
     @Override
@@ -136,7 +169,7 @@ class ElevatorUser implements Comparable<ElevatorUser> {
         result = prime * result + ((direction == null) ? 0 : direction.hashCode());
         result = prime * result + entryFloor;
         result = prime * result + exitFloor;
-        result = prime * result + ticks;
+        result = prime * result + getTicks();
         result = prime * result + waitingTicks;
         return result;
     }
@@ -156,7 +189,7 @@ class ElevatorUser implements Comparable<ElevatorUser> {
             return false;
         if (exitFloor != other.exitFloor)
             return false;
-        if (ticks != other.ticks)
+        if (getTicks() != other.getTicks())
             return false;
         if (waitingTicks != other.waitingTicks)
             return false;
@@ -1,27 +1,104 @@
 package org.nca.elevator;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 import org.nca.elevator.Elevator.Direction;
 import org.nca.elevator.Elevator.Optimization;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-class ElevatorUsers {
+/**
+ * Users in the elevator.
+ * <p>
+ * Users are kept in per-exit-floor lists of {@link UserSlots}, users which have not requested a
+ * floor yet being in the list of slots without floor. Counts per exit floor and
+ * total of ticks are maintained incrementally, so that most queries do not need to scan all users,
+ * and entering or exiting allocates nothing.
+ */
+class ElevatorUsers extends UserSlots {
 
-    static final int NULL_SCORE = -1;
+    /** Returned when no user exits, as final scores can be negative */
+    static final int NULL_SCORE = Integer.MIN_VALUE;
 
     static final Logger logger = LoggerFactory.getLogger(ElevatorUsers.class);
 
-    private List<ElevatorUser> users = new ArrayList<ElevatorUser>();
+    /** Diagnostics of the evaluation of users, called for each floor on each command. */
+    static final SampledLogger sampled = new SampledLogger(logger);
+
+    private static final int UNSET_EXIT_FLOOR = ElevatorUser.UNSET_EXIT_FLOOR;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private int[] entryFloors;
+
+    private byte[] directions;
+
+    private int[] exitFloors;
+
+    private int[] waitingTicks;
+
+    /** Clock value when each user entered the elevator. */
+    private long[] entryTicks;
+
+    /** Number of users per requested exit floor. */
+    private final FloorCounter exitFloorsCounter;
+
+    private int nbUsers;
+
+    private int nbUsersWithoutExitFloor;
+
+    /** Total of ticks (waiting + in elevator) of users, minus the current clock value for each user. */
+    private long ticksOffset;
+
+    private final Clock clock;
 
     private static enum ExitReason {
         WANT, CAN, COULD;
     }
 
+    public ElevatorUsers() {
+        this(new Clock(), 0, 19);
+    }
+
+    public ElevatorUsers(Clock clock, int lowerFloor, int higherFloor) {
+        super(lowerFloor, higherFloor);
+        this.clock = clock;
+        int capacity = nextSlots.length;
+        entryFloors = new int[capacity];
+        directions = new byte[capacity];
+        exitFloors = new int[capacity];
+        waitingTicks = new int[capacity];
+        entryTicks = new long[capacity];
+        exitFloorsCounter = new FloorCounter(lowerFloor, higherFloor);
+    }
+
+    private ElevatorUsers(ElevatorUsers users, Clock clock) {
+        super(users);
+        this.clock = clock;
+        entryFloors = users.entryFloors.clone();
+        directions = users.directions.clone();
+        exitFloors = users.exitFloors.clone();
+        waitingTicks = users.waitingTicks.clone();
+        entryTicks = users.entryTicks.clone();
+        exitFloorsCounter = new FloorCounter(users.exitFloorsCounter);
+        nbUsers = users.nbUsers;
+        nbUsersWithoutExitFloor = users.nbUsersWithoutExitFloor;
+        ticksOffset = users.ticksOffset;
+    }
+
+    @Override
+    void resize(int capacity) {
+        super.resize(capacity);
+        entryFloors = Arrays.copyOf(entryFloors, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        exitFloors = Arrays.copyOf(exitFloors, capacity);
+        waitingTicks = Arrays.copyOf(waitingTicks, capacity);
+        entryTicks = Arrays.copyOf(entryTicks, capacity);
+    }
+
     /**
      * Acknowledge a request for the provided floor.
      *
@@ -32,31 +109,79 @@ class ElevatorUsers {
      * @return the user updated with this floor
      */
     public ElevatorUser userRequestedFloor(int requestedFloor, int currentFloor) {
-        // known users
-        for (ElevatorUser user : users) {
-            if (user.getEntryFloor() == currentFloor && user.getTicks() == 0
-                    && user.canExitAt(requestedFloor)) {
-                user.setExitAt(requestedFloor);
-                return user;
-            }
-        }
-        // possible users
-        for (ElevatorUser user : users) {
-            if (user.getEntryFloor() == currentFloor && user.getTicks() == 0
-                    && user.couldExitAt(requestedFloor)) {
-                user.setExitAt(requestedFloor);
-                return user;
-            }
+        int slot = requestFloor(requestedFloor, currentFloor);
+        if (slot != NO_SLOT) {
+            return getUser(slot);
         }
-        logger.warn(
-                "Can't find an elevator user to go to requested floor {}. Creating a dummy one.",
-                requestedFloor);
         ElevatorUser user = new ElevatorUser(new WaitingUser(currentFloor,
-                requestedFloor > currentFloor ? Direction.UP : Direction.DOWN));
+                requestedFloor > currentFloor ? Direction.UP : Direction.DOWN, clock), clock);
         user.setExitAt(requestedFloor);
         return user;
     }
 
+    /**
+     * Acknowledge a request for the provided floor, without creating any object.
+     *
+     * @return the slot of the user updated with this floor, or {@code NO_SLOT} if no user matches
+     */
+    int requestFloor(int requestedFloor, int currentFloor) {
+        // known users
+        int slot = removeUserWithoutExitFloor(currentFloor, requestedFloor, ExitReason.CAN, true);
+        // possible users
+        slot = (slot == NO_SLOT) ? removeUserWithoutExitFloor(currentFloor, requestedFloor, ExitReason.COULD, true)
+                : slot;
+        if (slot == NO_SLOT) {
+            logger.warn("Can't find an elevator user to go to requested floor {}.", requestedFloor);
+            return NO_SLOT;
+        }
+        exitFloors[slot] = requestedFloor;
+        if (directions[slot] == Direction.NONE.ordinal()) {
+            directions[slot] = (byte) (requestedFloor > entryFloors[slot] ? Direction.UP : Direction.DOWN).ordinal();
+        }
+        addLast(requestedFloor, slot);
+        exitFloorsCounter.add(requestedFloor, 1);
+        return slot;
+    }
+
+    /**
+     * Removes the first user without exit floor matching the provided exit floor and reason.
+     *
+     * @param justEntered
+     *            true to only consider users that have entered at the current floor and tick
+     * @return the slot of the removed user, or {@code NO_SLOT}
+     */
+    private int removeUserWithoutExitFloor(int currentFloor, int exitFloor, ExitReason reason, boolean justEntered) {
+        int previousSlot = NO_SLOT;
+        for (int slot = firstSlotWithoutFloor(); slot != NO_SLOT; slot = nextSlots[slot]) {
+            boolean candidate = !justEntered
+                    || (entryFloors[slot] == currentFloor && entryTicks[slot] == clock.getTicks());
+            if (candidate && (reason == ExitReason.CAN ? canExitAt(slot, exitFloor) : couldExitAt(slot, exitFloor))) {
+                removeWithoutFloor(previousSlot, slot);
+                nbUsersWithoutExitFloor--;
+                return slot;
+            }
+            previousSlot = slot;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Same as {@link ElevatorUser#canExitAt(int)}, for a user without exit floor.
+     */
+    private boolean canExitAt(int slot, int exitFloor) {
+        int entryFloor = entryFloors[slot];
+        return (entryFloor < exitFloor && directions[slot] == Direction.UP.ordinal())
+                || (entryFloor > exitFloor && directions[slot] == Direction.DOWN.ordinal());
+    }
+
+    /**
+     * Same as {@link ElevatorUser#couldExitAt(int)}, for a user without exit floor.
+     */
+    private boolean couldExitAt(int slot, int exitFloor) {
+        return canExitAt(slot, exitFloor)
+                || (entryFloors[slot] != exitFloor && directions[slot] == Direction.NONE.ordinal());
+    }
+
     public void floorServiced(int currentFloor) {
         // nothing to do
     }
@@ -65,7 +190,26 @@ class ElevatorUsers {
      * Acknowledge a user has entered into the elevator.
      */
     public void userEntered(WaitingUser user) {
-        users.add(new ElevatorUser(user));
+        userEntered(user.getFloor(), user.getDirection(), user.getTicks());
+    }
+
+    /**
+     * Acknowledge a user has entered into the elevator, without creating any object.
+     */
+    void userEntered(int entryFloor, Direction direction, int userWaitingTicks) {
+        int slot = allocate();
+        entryFloors[slot] = entryFloor;
+        directions[slot] = (byte) direction.ordinal();
+        exitFloors[slot] = UNSET_EXIT_FLOOR;
+        waitingTicks[slot] = userWaitingTicks;
+        entryTicks[slot] = clock.getTicks();
+        addLastWithoutFloor(slot);
+        nbUsersWithoutExitFloor++;
+        nbUsers++;
+        ticksOffset += userWaitingTicks - clock.getTicks();
+        if (logger.isDebugEnabled()) {
+            logger.debug("User has entered, added {}", getUser(slot));
+        }
     }
 
     /**
@@ -75,25 +219,53 @@ class ElevatorUsers {
      *         to be removed
      */
     public int userExited(int exitFloor) {
-        int score = removeUserAtFloor(exitFloor, ExitReason.WANT);
-        score = (score == NULL_SCORE) ? removeUserAtFloor(exitFloor, ExitReason.CAN) : score;
-        score = (score == NULL_SCORE) ? removeUserAtFloor(exitFloor, ExitReason.COULD) : score;
+        int slot = removeExitingUser(exitFloor);
+        return slot == NO_SLOT ? NULL_SCORE : getFinalPointsEarned(slot);
+    }
+
+    /**
+     * Remove any user that matches, always using best match first.
+     * <p>
+     * The slot of the removed user is free, its fields can be read until the next user enters.
+     *
+     * @return the slot of the removed user, or {@code NO_SLOT} if no user could be find to be
+     *         removed
+     */
+    int removeExitingUser(int exitFloor) {
+        int slot = removeUserAtFloor(exitFloor, ExitReason.WANT);
+        slot = (slot == NO_SLOT) ? removeUserAtFloor(exitFloor, ExitReason.CAN) : slot;
+        slot = (slot == NO_SLOT) ? removeUserAtFloor(exitFloor, ExitReason.COULD) : slot;
 
-        if (score == NULL_SCORE) {
+        if (slot == NO_SLOT) {
             logger.error(
                     "Unable to select any user to remove on user exit event, at exit floor {}",
                     exitFloor);
         }
-        return score;
+        return slot;
     }
 
     /**
-     * Receives a tick.
+     * Returns the number of ticks the user of the provided slot has waited before entering.
      */
-    public void tick() {
-        for (ElevatorUser user : users) {
-            user.tick();
-        }
+    int getWaitingTicks(int slot) {
+        return waitingTicks[slot];
+    }
+
+    /**
+     * Returns the final score of the user of the provided slot, only valid when the user exits.
+     */
+    int getFinalPointsEarned(int slot) {
+        return Score.maxPointsToEarnInElevator(entryFloors[slot], exitFloors[slot], waitingTicks[slot],
+                getTicks(slot));
+    }
+
+    private int getTicks(int slot) {
+        return (int) (clock.getTicks() - entryTicks[slot]);
+    }
+
+    private ElevatorUser getUser(int slot) {
+        return new ElevatorUser(entryFloors[slot], DIRECTIONS[directions[slot]], exitFloors[slot], waitingTicks[slot],
+                clock, entryTicks[slot]);
     }
 
     public boolean hasUserForFloor(int floor, Optimization optimization) {
@@ -101,7 +273,7 @@ class ElevatorUsers {
         case POINTS:
             int points = nbPointsEarnedForFloor(floor);
             if (points <= 0) {
-                logger.info("Ignoring elevator user at floor {} because no positive points {}", floor, points);
+                sampled.debug("Ignoring elevator user at floor {} because no positive points {}", floor, points);
             }
             return points > 0;
         case NONE:
@@ -112,131 +284,235 @@ class ElevatorUsers {
 
     public int nbUsersTowardDirection(Direction direction, int currentFloor,
             Optimization optimization) {
+        int min = direction == Direction.UP ? currentFloor + 1 : Integer.MIN_VALUE;
+        int max = direction == Direction.UP ? Integer.MAX_VALUE : currentFloor - 1;
+        boolean withoutExitFloorInRange = UNSET_EXIT_FLOOR >= min && UNSET_EXIT_FLOOR <= max;
+        int count = exitFloorsCounter.count(min, max)
+                + (withoutExitFloorInRange ? nbUsersWithoutExitFloor : 0);
+        if (optimization == Optimization.POINTS) {
+            // points depend on the current floor, users in range must be evaluated one by one
+            // TODO : it's possible to be more agressive by playing on these two zeros
+            int nbUsersWithPoints = 0;
+            int highestFloor = Math.min(max, getHighestFloor());
+            for (int floor = Math.max(min, getLowestFloor()); floor <= highestFloor; floor++) {
+                nbUsersWithPoints += nbUsersWithPositivePoints(firstSlot(floor), currentFloor);
+            }
+            if (withoutExitFloorInRange) {
+                nbUsersWithPoints += nbUsersWithPositivePoints(firstSlotWithoutFloor(), currentFloor);
+            }
+            if (nbUsersWithPoints < count) {
+                sampled.debug("Ignoring {} elevator users toward direction because no positive points",
+                        count - nbUsersWithPoints);
+            }
+            count += nbUsersWithPoints;
+        }
+        return count;
+    }
+
+    private int nbUsersWithPositivePoints(int firstSlot, int currentFloor) {
         int count = 0;
-        for (ElevatorUser user : users) {
-            int exitFloor = user.getExitFloor();
-            if ((direction == Direction.UP && exitFloor > currentFloor)
-                    || (direction == Direction.DOWN && exitFloor < currentFloor)) {
-                switch (optimization) {
-                case POINTS:
-                    // TODO : it's possible to be more agressive by playing on these two zeros
-                    int points = user.estimatePointsEarned(currentFloor, 0);
-                    if (points > 0) {
-                        count++;
-                    } else {
-                        logger.info("Ignoring elevator user toward direction because no positive points {}", points);
-                    }
-                case NONE:
-                default:
-                    count++;
-                }
+        for (int slot = firstSlot; slot != NO_SLOT; slot = nextSlots[slot]) {
+            if (Score.estimatePointsEarned(entryFloors[slot], exitFloors[slot], waitingTicks[slot], getTicks(slot),
+                    currentFloor, 0) > 0) {
+                count++;
             }
         }
         return count;
     }
 
     public int scoreTowardDirection(Direction direction, int currentFloor, int higherFloor) {
-        int score = 0;
-        for (ElevatorUser user : users) {
-            if (user.hasExitFloor()) {
-                int exitFloor = user.getExitFloor();
-                if ((direction == Direction.UP && exitFloor > currentFloor)
-                        || (direction == Direction.DOWN && exitFloor < currentFloor)) {
-                    score += (2 * higherFloor) - Math.abs(exitFloor - currentFloor);
-                }
-            }
+        // sum of (2 * higherFloor - |exitFloor - currentFloor|) over users in the range
+        long score;
+        if (direction == Direction.UP) {
+            long count = exitFloorsCounter.count(currentFloor + 1, Integer.MAX_VALUE);
+            long floorsSum = exitFloorsCounter.weightedCount(currentFloor + 1, Integer.MAX_VALUE);
+            score = (2L * higherFloor + currentFloor) * count - floorsSum;
+        } else if (direction == Direction.DOWN) {
+            long count = exitFloorsCounter.count(Integer.MIN_VALUE, currentFloor - 1);
+            long floorsSum = exitFloorsCounter.weightedCount(Integer.MIN_VALUE, currentFloor - 1);
+            score = (2L * higherFloor - currentFloor) * count + floorsSum;
+        } else {
+            score = 0;
         }
-        return score;
+        return (int) score;
     }
 
     public int nbUsers() {
-        return users.size();
+        return nbUsers;
     }
 
     /**
-     * Remove an elevator user matching the provided exit floor and exit reason, and return its
-     * final score.
+     * Remove an elevator user matching the provided exit floor and exit reason.
      *
-     * @return the final score of the removed user, or {@code NULL_SCORE} if no user could be find
-     *         to be removed
+     * @return the slot of the removed user, or {@code NO_SLOT} if no user could be find to be
+     *         removed
      */
     private int removeUserAtFloor(int exitFloor, ExitReason reason) {
-        Iterator<ElevatorUser> iterator = users.iterator();
-        while (iterator.hasNext()) {
-            ElevatorUser user = iterator.next();
-            if (shouldRemoveUserAtFloor(user, exitFloor, reason)) {
-                iterator.remove();
-                int finalScore = user.getFinalPointsEarned();
-                logger.info(
-                        "User has exited at floor {}, score {}, exit reason {}, removed user: {}",
-                        exitFloor, finalScore, reason, user);
-                return finalScore;
+        int slot;
+        if (reason == ExitReason.WANT) {
+            slot = pollFirst(exitFloor);
+            if (slot != NO_SLOT) {
+                exitFloorsCounter.add(exitFloor, -1);
             }
+        } else {
+            slot = removeUserWithoutExitFloor(exitFloor, exitFloor, reason, false);
         }
-        return NULL_SCORE;
-    }
-
-    private boolean shouldRemoveUserAtFloor(ElevatorUser user, int exitFloor, ExitReason reason) {
-        return (user.wantsToExitAt(exitFloor) && reason.equals(ExitReason.WANT))
-                || (user.canExitAt(exitFloor) && reason.equals(ExitReason.CAN))
-                || (user.couldExitAt(exitFloor) && reason.equals(ExitReason.COULD));
+        if (slot == NO_SLOT) {
+            return NO_SLOT;
+        }
+        release(slot);
+        nbUsers--;
+        ticksOffset -= waitingTicks[slot] - entryTicks[slot];
+        if (logger.isDebugEnabled()) {
+            logger.debug("User has exited at floor {}, score {}, exit reason {}, removed user: {}", exitFloor,
+                    getFinalPointsEarned(slot), reason, getUser(slot));
+        }
+        return slot;
     }
 
     private int nbPointsEarnedForFloor(int floor) {
-        int userCount = 0;
         int points = 0;
-        for (ElevatorUser user : users) {
-            if (user.wantsToExitAt(floor)) {
-                userCount++;
-                points += Math.max(0, user.getFinalPointsEarned());
-            }
+        for (int slot = firstSlot(floor); slot != NO_SLOT; slot = nextSlots[slot]) {
+            points += Math.max(0, getFinalPointsEarned(slot));
         }
-        logger.info("Points earned if elevator users exit at this floor {}, for {} users", points,
-                userCount);
+        sampled.debug("Points earned if elevator users exit at this floor {}, for {} users", points,
+                nbUsersForFloor(floor));
         return points;
     }
 
     int nbUsersForFloor(int floor) {
-        int count = 0;
-        for (ElevatorUser user : users) {
-            if (user.wantsToExitAt(floor)) {
-                count++;
-            }
-        }
-        return count;
+        return exitFloorsCounter.count(floor);
     }
 
     public int getTotalTicks() {
-        int total = 0;
-        for (ElevatorUser user : users) {
-            total += user.getTotalTicks();
-        }
-        return total;
+        return (int) (nbUsers * clock.getTicks() + ticksOffset);
     }
 
     public int getAverageTicksPerUser() {
-        return getTotalTicks() / (users.isEmpty() ? 1 : users.size());
+        return getTotalTicks() / (nbUsers == 0 ? 1 : nbUsers);
     }
 
-    public String toString(String separator, String boundaries[]) {
-        StringBuilder builder = new StringBuilder();
-        Collections.sort(users);
-        for (ElevatorUser user : users) {
-            if (builder.length() > 0)
-                builder.append(separator);
-            builder.append(user);
+    /**
+     * Returns a copy of these users, following the provided clock.
+     */
+    ElevatorUsers copy(Clock clock) {
+        return new ElevatorUsers(this, clock);
+    }
+
+    /**
+     * Writes these users, to be read by {@link #readFrom(DataInput, Clock, int, int)}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(nbUsers);
+        out.writeLong(ticksOffset);
+        out.writeInt(nbUsersWithoutExitFloor);
+        writeUsers(out, firstSlotWithoutFloor());
+        out.writeInt(nbUsers - nbUsersWithoutExitFloor);
+        for (int floor = getLowestFloor(); floor <= getHighestFloor(); floor++) {
+            writeUsers(out, firstSlot(floor));
         }
-        builder.insert(0, "Nb=" + users.size() + " " + boundaries[0]);
-        builder.append(boundaries[1]);
-        return builder.toString();
     }
 
-    public String toHTMLString() {
-        return toString("<br/>", new String[] { "<br/>", "" });
+    private void writeUsers(DataOutput out, int firstSlot) throws IOException {
+        for (int slot = firstSlot; slot != NO_SLOT; slot = nextSlots[slot]) {
+            out.writeInt(entryFloors[slot]);
+            out.writeByte(directions[slot]);
+            out.writeInt(exitFloors[slot]);
+            out.writeInt(waitingTicks[slot]);
+            out.writeLong(entryTicks[slot]);
+        }
+    }
+
+    /**
+     * Reads users written by {@link #writeTo(DataOutput)}, following the provided clock.
+     */
+    static ElevatorUsers readFrom(DataInput in, Clock clock, int lowerFloor, int higherFloor) throws IOException {
+        ElevatorUsers users = new ElevatorUsers(clock, lowerFloor, higherFloor);
+        users.nbUsers = in.readInt();
+        users.ticksOffset = in.readLong();
+        users.nbUsersWithoutExitFloor = in.readInt();
+        for (int i = users.nbUsersWithoutExitFloor; i > 0; i--) {
+            users.addLastWithoutFloor(users.readUser(in));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            int slot = users.readUser(in);
+            users.addLast(users.exitFloors[slot], slot);
+            users.exitFloorsCounter.add(users.exitFloors[slot], 1);
+        }
+        return users;
+    }
+
+    /**
+     * Reads a user in a new slot.
+     *
+     * @return the slot of the user
+     */
+    private int readUser(DataInput in) throws IOException {
+        int slot = allocate();
+        entryFloors[slot] = in.readInt();
+        directions[slot] = (byte) DIRECTIONS[in.readByte()].ordinal();
+        exitFloors[slot] = in.readInt();
+        waitingTicks[slot] = in.readInt();
+        entryTicks[slot] = in.readLong();
+        return slot;
+    }
+
+    /**
+     * Adds all users to the provided planning state.
+     */
+    void copyTo(PlanningState state) {
+        copyTo(state, firstSlotWithoutFloor(), PlanningState.UNKNOWN_EXIT_FLOOR);
+        for (int floor = getLowestFloor(); floor <= getHighestFloor(); floor++) {
+            copyTo(state, firstSlot(floor), floor);
+        }
+    }
+
+    private void copyTo(PlanningState state, int firstSlot, int exitFloor) {
+        for (int slot = firstSlot; slot != NO_SLOT; slot = nextSlots[slot]) {
+            state.addElevatorUser(entryFloors[slot], exitFloor, waitingTicks[slot], getTicks(slot));
+        }
+    }
+
+    /**
+     * Appends the description of users to the provided builder, users without requested floor
+     * first, then ordered by exit floor.
+     */
+    public StringBuilder appendTo(StringBuilder builder, String separator, String prefix, String suffix) {
+        builder.append("Nb=").append(nbUsers).append(' ').append(prefix);
+        boolean first = appendTo(builder, separator, firstSlotWithoutFloor(), false, true);
+        for (int floor = getLowestFloor(); floor <= getHighestFloor(); floor++) {
+            first = appendTo(builder, separator, firstSlot(floor), true, first);
+        }
+        return builder.append(suffix);
+    }
+
+    /**
+     * Appends the users of a list as {@link ElevatorUser#appendTo(StringBuilder)} does, read from
+     * the slots.
+     */
+    private boolean appendTo(StringBuilder builder, String separator, int firstSlot, boolean withExitFloor,
+            boolean first) {
+        for (int slot = firstSlot; slot != NO_SLOT; slot = nextSlots[slot]) {
+            if (!first) {
+                builder.append(separator);
+            }
+            builder.append(entryFloors[slot]).append('/').append(DIRECTIONS[directions[slot]].toShortString())
+                    .append('/');
+            if (withExitFloor) {
+                builder.append(exitFloors[slot]);
+            } else {
+                builder.append('_');
+            }
+            int ticks = getTicks(slot);
+            builder.append(" T=").append(waitingTicks[slot] + ticks).append('/').append(waitingTicks[slot])
+                    .append('+').append(ticks);
+            first = false;
+        }
+        return first;
     }
 
     @Override
     public String toString() {
-        return toString(" | ", new String[] { "[", "]" });
+        return appendTo(new StringBuilder(), " | ", "[", "]").toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,215 @@
+package org.nca.elevator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Direction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only binary journal of the events received by an elevator and of the commands it
+ * returned, to be replayed by {@link JournalReplay}.
+ * <p>
+ * Each record is a type byte followed by its fields :
+ *
+ * <pre>
+ * START            time in ms (long), written each time the journal is opened
+ * RESET            lower floor, higher floor, cabin size (int)
+ * CALL             floor (int), direction (byte)
+ * GO               floor (int)
+ * USER_HAS_ENTERED
+ * USER_HAS_EXITED
+ * COMMAND          command returned (byte), direction after the command (byte)
+ * RESTORE          length (int) and bytes of the checkpoint the elevator was restored from
+ * </pre>
+ *
+ * Records are appended to a buffer by the thread accessing the elevator. The buffer is written to
+ * the file when full, and periodically by the flusher, which then forces the file to disk for all
+ * the records written since the previous force. An error while writing disables the journal,
+ * without failing the requests.
+ */
+class EventJournal {
+
+    static final Logger logger = LoggerFactory.getLogger(EventJournal.class);
+
+    static final byte START = 0, RESET = 1, CALL = 2, GO = 3, USER_HAS_ENTERED = 4, USER_HAS_EXITED = 5, COMMAND = 6,
+            RESTORE = 7;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+    /** Largest record of fixed size, RESET. */
+    private static final int MAX_RECORD_SIZE = 13;
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final ScheduledFuture<?> flushing;
+
+    /** True once an error occurred, records are then ignored. */
+    private boolean failed;
+
+    private boolean closed;
+
+    /**
+     * Opens the journal, appending to the provided file if it exists.
+     *
+     * @param flusher
+     *            executor writing and forcing the records periodically, may be shared by journals
+     * @param flushInterval
+     *            maximum time a record stays in memory before being forced to disk
+     */
+    EventJournal(File file, ScheduledExecutorService flusher, long flushInterval, TimeUnit unit) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        buffer.put(START).putLong(System.currentTimeMillis());
+        this.flushing = flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushInterval, flushInterval, unit);
+    }
+
+    synchronized void reset(int lowerFloor, int higherFloor, int cabinSize) {
+        if (reserve()) {
+            buffer.put(RESET).putInt(lowerFloor).putInt(higherFloor).putInt(cabinSize);
+        }
+    }
+
+    synchronized void call(int floor, Direction direction) {
+        if (reserve()) {
+            buffer.put(CALL).putInt(floor).put((byte) direction.ordinal());
+        }
+    }
+
+    synchronized void go(int floor) {
+        if (reserve()) {
+            buffer.put(GO).putInt(floor);
+        }
+    }
+
+    synchronized void userHasEntered() {
+        if (reserve()) {
+            buffer.put(USER_HAS_ENTERED);
+        }
+    }
+
+    synchronized void userHasExited() {
+        if (reserve()) {
+            buffer.put(USER_HAS_EXITED);
+        }
+    }
+
+    synchronized void command(Command command, Direction direction) {
+        if (reserve()) {
+            buffer.put(COMMAND).put((byte) command.ordinal()).put((byte) direction.ordinal());
+        }
+    }
+
+    /**
+     * Records the checkpoint the elevator was restored from, written directly to the file after the
+     * buffered records.
+     */
+    synchronized void restore(byte[] checkpoint) {
+        if (failed || closed) {
+            return;
+        }
+        write();
+        ByteBuffer record = ByteBuffer.allocate(5 + checkpoint.length);
+        record.put(RESTORE).putInt(checkpoint.length).put(checkpoint).flip();
+        write(record);
+    }
+
+    /**
+     * Makes room for a record, writing the buffer if needed.
+     *
+     * @return false if the record must be ignored
+     */
+    private boolean reserve() {
+        if (failed || closed) {
+            return false;
+        }
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            write();
+        }
+        return !failed;
+    }
+
+    private void write() {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer records) {
+        try {
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Unable to write journal " + file + ", journal disabled", e);
+        }
+    }
+
+    /**
+     * Writes the buffered records and forces them to disk. The force is done without holding the
+     * lock, so that the elevator is not blocked while the disk syncs.
+     */
+    void flush() {
+        synchronized (this) {
+            if (failed || closed) {
+                return;
+            }
+            if (buffer.position() > 0) {
+                write();
+            }
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // closed meanwhile, after forcing the records itself
+        } catch (IOException e) {
+            logger.error("Unable to force journal " + file, e);
+        }
+    }
+
+    /**
+     * Writes the remaining records, forces them to disk and closes the file.
+     */
+    void close() {
+        flushing.cancel(false);
+        flush();
+        synchronized (this) {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error("Unable to close journal " + file, e);
+            }
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized boolean hasFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,89 @@
+package org.nca.elevator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes tasks in a single thread which owns the elevator, tasks being queued in submission
+ * order.
+ * <p>
+ * Request threads never contend on a lock : they only post tasks to the queue and wait for their
+ * result.
+ */
+class EventLoopElevatorExecutor implements ElevatorExecutor {
+
+    static final Logger logger = LoggerFactory.getLogger(EventLoopElevatorExecutor.class);
+
+    private final Elevator elevator;
+
+    private final ExecutorService loop;
+
+    private final ElevatorMetrics metrics;
+
+    EventLoopElevatorExecutor(Elevator elevator) {
+        this(elevator, null);
+    }
+
+    /**
+     * @param metrics
+     *            metrics recording the time waited by tasks in the queue, or null
+     */
+    EventLoopElevatorExecutor(Elevator elevator, ElevatorMetrics metrics) {
+        this.elevator = elevator;
+        this.metrics = metrics;
+        this.loop = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "elevator-loop");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public <T> T execute(final Task<T> task) throws Exception {
+        final long submitted = metrics == null ? 0 : System.nanoTime();
+        try {
+            return loop.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    if (metrics != null) {
+                        metrics.recordLockWait(System.nanoTime() - submitted);
+                    }
+                    T result = task.run(elevator);
+                    // state is only rendered when debug is enabled
+                    logger.debug("Elevator state: {}", elevator);
+                    return result;
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public ElevatorSnapshot getSnapshot() {
+        return elevator.getSnapshot();
+    }
+
+    @Override
+    public long getNbChanges() {
+        return elevator.getNbChanges();
+    }
+
+    @Override
+    public void shutdown() {
+        loop.shutdown();
+    }
+}
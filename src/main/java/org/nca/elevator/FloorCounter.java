@@ -0,0 +1,128 @@
+package org.nca.elevator;
+
+/**
+ * Counts values per floor and provides sums over a range of floors in O(log floors), using a
+ * Fenwick tree.
+ * <p>
+ * Along with plain counts, the sum of {@code floor * count} is maintained so that distance-based
+ * scores can be computed for a range without iterating on floors. The range of known floors grows
+ * on demand when a value is added outside of it.
+ */
+class FloorCounter {
+
+    private int lowerFloor;
+
+    /** Raw count per floor, indexed by {@code floor - lowerFloor}. */
+    private long[] values;
+
+    private long[] counts;
+
+    private long[] weightedCounts;
+
+    public FloorCounter() {
+        this(0, 19);
+    }
+
+    public FloorCounter(int lowerFloor, int higherFloor) {
+        this.lowerFloor = lowerFloor;
+        int size = Math.max(1, higherFloor - lowerFloor + 1);
+        values = new long[size];
+        counts = new long[size + 1];
+        weightedCounts = new long[size + 1];
+    }
+
+    /**
+     * Creates a copy of the provided counter.
+     */
+    public FloorCounter(FloorCounter counter) {
+        lowerFloor = counter.lowerFloor;
+        values = counter.values.clone();
+        counts = counter.counts.clone();
+        weightedCounts = counter.weightedCounts.clone();
+    }
+
+    /**
+     * Adds the provided delta to the count of the provided floor.
+     */
+    public void add(int floor, int delta) {
+        ensureFloor(floor);
+        int index = floor - lowerFloor;
+        values[index] += delta;
+        update(index, delta, (long) floor * delta);
+    }
+
+    /**
+     * Returns the count for the provided floor.
+     */
+    public int count(int floor) {
+        int index = floor - lowerFloor;
+        return (index < 0 || index >= values.length) ? 0 : (int) values[index];
+    }
+
+    /**
+     * Returns the sum of counts for floors between {@code fromFloor} and {@code toFloor}, both
+     * included.
+     */
+    public int count(int fromFloor, int toFloor) {
+        return (int) rangeSum(counts, fromFloor, toFloor);
+    }
+
+    /**
+     * Returns the sum of {@code floor * count} for floors between {@code fromFloor} and
+     * {@code toFloor}, both included.
+     */
+    public long weightedCount(int fromFloor, int toFloor) {
+        return rangeSum(weightedCounts, fromFloor, toFloor);
+    }
+
+    private long rangeSum(long[] tree, int fromFloor, int toFloor) {
+        // use long arithmetic so that unbounded ranges can be expressed with Integer.MIN_VALUE/MAX_VALUE
+        long from = Math.max(0L, (long) fromFloor - lowerFloor);
+        long to = Math.min(values.length - 1L, (long) toFloor - lowerFloor);
+        if (from > to) {
+            return 0;
+        }
+        return prefixSum(tree, (int) to) - prefixSum(tree, (int) from - 1);
+    }
+
+    private long prefixSum(long[] tree, int index) {
+        long sum = 0;
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void update(int index, long delta, long weightedDelta) {
+        for (int i = index + 1; i < counts.length; i += i & -i) {
+            counts[i] += delta;
+            weightedCounts[i] += weightedDelta;
+        }
+    }
+
+    /**
+     * Extends the range of known floors to include the provided one, rebuilding the trees.
+     */
+    private void ensureFloor(int floor) {
+        int higherFloor = lowerFloor + values.length - 1;
+        if (floor >= lowerFloor && floor <= higherFloor) {
+            return;
+        }
+        int newLowerFloor = Math.min(floor, lowerFloor);
+        int newHigherFloor = Math.max(floor, higherFloor);
+        long[] oldValues = values;
+        int oldLowerFloor = lowerFloor;
+
+        lowerFloor = newLowerFloor;
+        values = new long[newHigherFloor - newLowerFloor + 1];
+        counts = new long[values.length + 1];
+        weightedCounts = new long[values.length + 1];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                int index = oldLowerFloor + i - lowerFloor;
+                values[index] = oldValues[i];
+                update(index, oldValues[i], (oldLowerFloor + i) * oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package org.nca.elevator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the routes of the elevator with the HTTP server of the JDK.
+ * <p>
+ * Connections are kept alive between requests, and requests pipelined on a connection are handled
+ * in order. Requests are handled either by a small pool of threads, as the elevator is accessed by
+ * one request at a time anyway, or by one virtual thread per request when the runtime provides them,
+ * so that bursts of requests wait for the elevator without holding a platform thread each.
+ */
+class HttpServerTransport {
+
+    static final Logger logger = LoggerFactory.getLogger(HttpServerTransport.class);
+
+    static final int DEFAULT_NB_THREADS = 4;
+
+    private static final String DEFAULT_TYPE = "text/html; charset=utf-8";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final HttpServer server;
+
+    private final ExecutorService handlers;
+
+    HttpServerTransport(String ipAddress, int port, ElevatorRoutes routes) throws IOException {
+        this(ipAddress, port, routes, DEFAULT_NB_THREADS);
+    }
+
+    HttpServerTransport(String ipAddress, int port, ElevatorRoutes routes, int nbThreads) throws IOException {
+        this(ipAddress, port, routes, Executors.newFixedThreadPool(nbThreads, new HandlerThreadFactory()));
+    }
+
+    /**
+     * @param handlers
+     *            executor running the requests, shut down when the server is stopped
+     */
+    HttpServerTransport(String ipAddress, int port, final ElevatorRoutes routes, ExecutorService handlers)
+            throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(ipAddress, port), 0);
+        this.handlers = handlers;
+        server.setExecutor(handlers);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(routes, exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a transport handling each request in its own virtual thread, or in the bounded pool of
+     * threads of the default transport if the runtime doesn't provide virtual threads, so that a
+     * burst of requests is queued without starting a platform thread per request.
+     */
+    static HttpServerTransport withVirtualThreads(String ipAddress, int port, ElevatorRoutes routes)
+            throws IOException {
+        ExecutorService handlers = newVirtualThreadPerTaskExecutor();
+        if (handlers == null) {
+            logger.warn("Virtual threads are not available, using a pool of {} threads", DEFAULT_NB_THREADS);
+            return new HttpServerTransport(ipAddress, port, routes);
+        }
+        return new HttpServerTransport(ipAddress, port, routes, handlers);
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task, or null if the runtime doesn't provide
+     * virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            // looked up at runtime, as virtual threads are not available at the compiled Java level
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            // preview feature not enabled
+            logger.debug("Unable to create virtual threads", e);
+            return null;
+        }
+    }
+
+    private static class HandlerThreadFactory implements ThreadFactory {
+        private final AtomicInteger nbThreads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "elevator-http-" + nbThreads.incrementAndGet());
+        }
+    }
+
+    void start() {
+        server.start();
+        logger.info("HTTP server listening on {}", server.getAddress());
+    }
+
+    /**
+     * Returns the port the server listens on, useful when started on port 0.
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        handlers.shutdown();
+    }
+
+    private static void dispatch(ElevatorRoutes routes, HttpExchange exchange) throws IOException {
+        ExchangeResponse response = new ExchangeResponse();
+        ExchangeRequest request;
+        try {
+            request = new ExchangeRequest(exchange);
+        } catch (IllegalArgumentException e) {
+            // bad escape in the query
+            response.status(400);
+            send(exchange, response, "Bad request: " + e.getMessage());
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Request {}{}", request.pathInfo(), request.queryString() == null ? "" : "?" + request.queryString());
+        }
+        ElevatorRoutes.Route route = routes.find(exchange.getRequestMethod(), request.pathInfo());
+        Object result;
+        if (route == null) {
+            response.status(404);
+            result = "Not found: " + request.pathInfo();
+        }
+        else {
+            try {
+                result = routes.handle(route, request, response);
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error on " + request.pathInfo(), e);
+                response.status(500);
+                result = "Internal error: " + e;
+            }
+        }
+        send(exchange, response, result);
+        if (logger.isInfoEnabled()) {
+            logger.info("Done {}{}", request.pathInfo(), request.queryString() == null ? "" : "?" + request.queryString());
+        }
+    }
+
+    private static void send(HttpExchange exchange, ExchangeResponse response, Object result) throws IOException {
+        byte[] body = result == null ? new byte[0] : result.toString().getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.type);
+        exchange.sendResponseHeaders(response.status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+
+    private static class ExchangeRequest implements ElevatorRoutes.Request {
+        private final HttpExchange exchange;
+        private final Map<String, String> parameters = new HashMap<String, String>();
+
+        ExchangeRequest(HttpExchange exchange) throws IOException {
+            this.exchange = exchange;
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    int index = parameter.indexOf('=');
+                    String name = index < 0 ? parameter : parameter.substring(0, index);
+                    String value = index < 0 ? "" : parameter.substring(index + 1);
+                    parameters.put(decode(name), decode(value));
+                }
+            }
+        }
+
+        private static String decode(String value) throws UnsupportedEncodingException {
+            return URLDecoder.decode(value, UTF_8);
+        }
+
+        @Override
+        public String queryParams(String name) {
+            return parameters.get(name);
+        }
+
+        @Override
+        public String body() {
+            try {
+                InputStream in = exchange.getRequestBody();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+                return bytes.toString(UTF_8);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read request body", e);
+            }
+        }
+
+        @Override
+        public String pathInfo() {
+            return exchange.getRequestURI().getPath();
+        }
+
+        @Override
+        public String queryString() {
+            return exchange.getRequestURI().getRawQuery();
+        }
+
+        @Override
+        public String headers(String name) {
+            return exchange.getRequestHeaders().getFirst(name);
+        }
+    }
+
+    private static class ExchangeResponse implements ElevatorRoutes.Response {
+        int status = 200;
+        String type = DEFAULT_TYPE;
+
+        @Override
+        public void status(int statusCode) {
+            this.status = statusCode;
+        }
+
+        @Override
+        public void type(String contentType) {
+            this.type = contentType;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package org.nca.elevator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Direction;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.nca.elevator.strategy.Strategies;
+
+/**
+ * Rebuilds an elevator from a journal written by {@link EventJournal}.
+ * <p>
+ * Events are applied in order and the recorded commands are performed as they were returned, so
+ * that the elevator ends in the state of the recorded one, whatever its strategy. A candidate
+ * strategy can be provided to compare its commands with the recorded ones : it is asked for a
+ * command on a copy of the elevator before each recorded command, without changing the replay.
+ * <p>
+ * The journal is mapped in memory. A truncated last record, as left by a crash, ends the replay.
+ */
+public class JournalReplay {
+
+    private static final Command[] COMMANDS = Command.values();
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Strategy performing the recorded command.
+     */
+    private static class RecordedStrategy implements ElevatorStrategy {
+        Elevator elevator;
+        Command command;
+        Direction direction;
+
+        @Override
+        public Command nextCommand(ElevatorState state, ElevatorController controller) {
+            return elevator.perform(command, direction);
+        }
+    }
+
+    /**
+     * Result of a replay.
+     */
+    public static class Result {
+        private final Elevator elevator;
+        private final long nbEvents, nbCommands, nbCandidateDifferences, candidateNanos, durationNanos;
+        private final boolean truncated;
+
+        Result(Elevator elevator, long nbEvents, long nbCommands, long nbCandidateDifferences, long candidateNanos,
+                long durationNanos, boolean truncated) {
+            this.elevator = elevator;
+            this.nbEvents = nbEvents;
+            this.nbCommands = nbCommands;
+            this.nbCandidateDifferences = nbCandidateDifferences;
+            this.candidateNanos = candidateNanos;
+            this.durationNanos = durationNanos;
+            this.truncated = truncated;
+        }
+
+        /** Returns the elevator rebuilt from the journal. */
+        Elevator getElevator() {
+            return elevator;
+        }
+
+        /** Returns the number of records replayed, commands included. */
+        public long getNbEvents() {
+            return nbEvents;
+        }
+
+        public long getNbCommands() {
+            return nbCommands;
+        }
+
+        /** Returns the number of commands of the candidate strategy different from the recorded ones. */
+        public long getNbCandidateDifferences() {
+            return nbCandidateDifferences;
+        }
+
+        /** Returns the time taken by the candidate strategy to compute its commands. */
+        public long getCandidateNanos() {
+            return candidateNanos;
+        }
+
+        /** Returns true if the journal ends with an incomplete record. */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public double getEventsPerSecond() {
+            return durationNanos == 0 ? 0 : nbEvents * 1e9 / durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            ScoreLedger ledger = elevator.getLedger();
+            return String.format("%d events, %d commands, %d points for %d users, %.0f events/s%s%s", nbEvents,
+                    nbCommands, ledger.getTotalPoints(), ledger.getNbUsers(), getEventsPerSecond(),
+                    truncated ? ", truncated" : "", nbCommands == 0 || candidateNanos == 0 ? "" : String.format(
+                            ", candidate: %d different commands, %.0f ns per command", nbCandidateDifferences,
+                            (double) candidateNanos / nbCommands));
+        }
+    }
+
+    /**
+     * Replays the provided journal.
+     *
+     * @param candidate
+     *            strategy whose commands are compared with the recorded ones, or null
+     * @throws IOException
+     *             if the journal can't be read or holds an unknown record
+     */
+    public static Result replay(File journal, Optimization optimization, ElevatorStrategy candidate)
+            throws IOException {
+        RecordedStrategy recorded = new RecordedStrategy();
+        Elevator elevator = new Elevator(recorded, optimization, 1);
+        recorded.elevator = elevator;
+        long nbEvents = 0, nbCommands = 0, nbCandidateDifferences = 0, candidateNanos = 0;
+        boolean truncated = false;
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.hasRemaining()) {
+                int position = buffer.position();
+                byte type = buffer.get();
+                if (buffer.remaining() < recordSize(type, position)) {
+                    truncated = true;
+                    break;
+                }
+                switch (type) {
+                case EventJournal.START:
+                    buffer.getLong();
+                    // the recorded elevator was created again
+                    elevator.reset(Elevator.DEFAULT_LOWER_FLOOR, Elevator.DEFAULT_HIGHER_FLOOR,
+                            Elevator.DEFAULT_CABIN_SIZE);
+                    break;
+                case EventJournal.RESET:
+                    elevator.reset(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                    break;
+                case EventJournal.CALL:
+                    elevator.call(buffer.getInt(), DIRECTIONS[buffer.get()].toString());
+                    break;
+                case EventJournal.GO:
+                    elevator.go(buffer.getInt());
+                    break;
+                case EventJournal.USER_HAS_ENTERED:
+                    elevator.userHasEntered();
+                    break;
+                case EventJournal.USER_HAS_EXITED:
+                    elevator.userHasExited();
+                    break;
+                case EventJournal.RESTORE:
+                    int length = buffer.getInt();
+                    if (length < 0 || buffer.remaining() < length) {
+                        truncated = true;
+                        break;
+                    }
+                    byte[] checkpoint = new byte[length];
+                    buffer.get(checkpoint);
+                    elevator.restore(checkpoint);
+                    break;
+                case EventJournal.COMMAND:
+                    recorded.command = COMMANDS[buffer.get()];
+                    recorded.direction = DIRECTIONS[buffer.get()];
+                    if (candidate != null) {
+                        long candidateStart = System.nanoTime();
+                        Elevator copy = elevator.copy();
+                        if (candidate.nextCommand(copy, copy) != recorded.command) {
+                            nbCandidateDifferences++;
+                        }
+                        candidateNanos += System.nanoTime() - candidateStart;
+                    }
+                    elevator.nextCommand();
+                    nbCommands++;
+                    break;
+                }
+                if (truncated) {
+                    break;
+                }
+                nbEvents++;
+            }
+        }
+        return new Result(elevator, nbEvents, nbCommands, nbCandidateDifferences, candidateNanos, System.nanoTime()
+                - start, truncated);
+    }
+
+    /**
+     * Returns the size of the fields of a record of the provided type.
+     */
+    private static int recordSize(byte type, int position) throws IOException {
+        switch (type) {
+        case EventJournal.START:
+            return 8;
+        case EventJournal.RESET:
+            return 12;
+        case EventJournal.CALL:
+            return 5;
+        case EventJournal.GO:
+            return 4;
+        case EventJournal.USER_HAS_ENTERED:
+        case EventJournal.USER_HAS_EXITED:
+            return 0;
+        case EventJournal.COMMAND:
+            return 2;
+        case EventJournal.RESTORE:
+            // followed by the checkpoint
+            return 4;
+        default:
+            throw new IOException("Unknown record " + type + " at position " + position);
+        }
+    }
+
+    /**
+     * Replays a journal, with args : journal [optimization] [candidate strategy].
+     */
+    public static void main(String[] args) throws Exception {
+        // logging of each event would dominate the replay
+        java.util.logging.Logger.getLogger("").setLevel(Level.WARNING);
+
+        File journal = new File(args[0]);
+        Optimization optimization = Optimization.valueOf(args.length > 1 ? args[1] : "NONE");
+        ElevatorStrategy candidate = args.length > 2 ? Strategies.newStrategy(Strategies.PACKAGE + "." + args[2])
+                : null;
+        System.out.println(journal + ": " + replay(journal, optimization, candidate));
+    }
+}
@@ -0,0 +1,68 @@
+package org.nca.elevator;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes tasks in the request thread, while holding a lock on the elevator.
+ */
+class LockingElevatorExecutor implements ElevatorExecutor {
+
+    static final Logger logger = LoggerFactory.getLogger(LockingElevatorExecutor.class);
+
+    private final Elevator elevator;
+
+    // performance is not important, just lock each task to avoid fine-tuned locking
+    // a ReentrantLock rather than synchronized, so that a virtual thread waiting for the elevator
+    // is parked without pinning its carrier thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final ElevatorMetrics metrics;
+
+    LockingElevatorExecutor(Elevator elevator) {
+        this(elevator, null);
+    }
+
+    /**
+     * @param metrics
+     *            metrics recording the time waited for the lock, or null
+     */
+    LockingElevatorExecutor(Elevator elevator, ElevatorMetrics metrics) {
+        this.elevator = elevator;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <T> T execute(Task<T> task) throws Exception {
+        long start = metrics == null ? 0 : System.nanoTime();
+        lock.lock();
+        try {
+            if (metrics != null) {
+                metrics.recordLockWait(System.nanoTime() - start);
+            }
+            T result = task.run(elevator);
+            // state is only rendered when debug is enabled
+            logger.debug("Elevator state: {}", elevator);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ElevatorSnapshot getSnapshot() {
+        return elevator.getSnapshot();
+    }
+
+    @Override
+    public long getNbChanges() {
+        return elevator.getNbChanges();
+    }
+
+    @Override
+    public void shutdown() {
+        // nothing to do
+    }
+}
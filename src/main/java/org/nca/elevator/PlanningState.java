@@ -0,0 +1,278 @@
+package org.nca.elevator;
+
+import java.util.Arrays;
+
+import org.nca.elevator.Elevator.Command;
+
+/**
+ * Compact copy of the state of an elevator and its users, on which sequences of commands can be
+ * played to evaluate them, without changing the elevator.
+ * <p>
+ * Users are kept in primitive arrays, and ticks of users are derived from the number of commands
+ * played since the copy. Copies share the arrays of users until a command changes them, so that
+ * copying a state and playing a move costs a few fields.
+ * <p>
+ * Commands are played as the game server does : on {@code OPEN}, users in the cabin going to the
+ * current floor exit and earn their points, then users waiting at the current floor enter as long
+ * as the cabin is not full. The floor requested by a user entering is unknown.
+ */
+public final class PlanningState implements Cloneable {
+
+    /** Exit floor of users which have not requested a floor. */
+    static final int UNKNOWN_EXIT_FLOOR = Integer.MIN_VALUE;
+
+    private static final int MAX_POINTS = 20;
+
+    private final int lowerFloor, higherFloor, cabinSize;
+
+    private int floor;
+    private boolean doorOpen;
+    private boolean goingUp;
+    /** Number of commands played since the copy of the elevator. */
+    private int elapsedTicks;
+    /** Points earned by users which have exited while playing commands. */
+    private int points;
+
+    private int nbWaiting;
+    private int[] waitingFloors;
+    /** Ticks waited at the time of the copy. */
+    private int[] waitingTicks;
+
+    private int nbIn;
+    private int[] entryFloors;
+    private int[] exitFloors;
+    private int[] inWaitingTicks;
+    /** Ticks in the cabin at the time of the copy, minus the elapsed ticks on entry for later users. */
+    private int[] inTicks;
+
+    /** True if users arrays are shared with another state, and must be copied before a change. */
+    private boolean sharedWaiting, sharedIn;
+
+    PlanningState(int lowerFloor, int higherFloor, int cabinSize, int floor, boolean doorOpen, boolean goingUp,
+            int nbWaiting, int nbIn) {
+        this.lowerFloor = lowerFloor;
+        this.higherFloor = higherFloor;
+        this.cabinSize = cabinSize;
+        this.floor = floor;
+        this.doorOpen = doorOpen;
+        this.goingUp = goingUp;
+        waitingFloors = new int[Math.max(1, nbWaiting)];
+        waitingTicks = new int[waitingFloors.length];
+        // users entering while playing commands are added to the cabin
+        int inCapacity = Math.max(1, Math.max(nbIn, cabinSize));
+        entryFloors = new int[inCapacity];
+        exitFloors = new int[inCapacity];
+        inWaitingTicks = new int[inCapacity];
+        inTicks = new int[inCapacity];
+    }
+
+    void addWaitingUser(int floor, int ticks) {
+        if (nbWaiting == waitingFloors.length) {
+            waitingFloors = Arrays.copyOf(waitingFloors, nbWaiting * 2);
+            waitingTicks = Arrays.copyOf(waitingTicks, nbWaiting * 2);
+        }
+        waitingFloors[nbWaiting] = floor;
+        waitingTicks[nbWaiting] = ticks;
+        nbWaiting++;
+    }
+
+    void addElevatorUser(int entryFloor, int exitFloor, int waitingTicks, int ticks) {
+        if (nbIn == entryFloors.length) {
+            growIn(nbIn * 2);
+        }
+        entryFloors[nbIn] = entryFloor;
+        exitFloors[nbIn] = exitFloor;
+        inWaitingTicks[nbIn] = waitingTicks;
+        inTicks[nbIn] = ticks;
+        nbIn++;
+    }
+
+    private void growIn(int capacity) {
+        entryFloors = Arrays.copyOf(entryFloors, capacity);
+        exitFloors = Arrays.copyOf(exitFloors, capacity);
+        inWaitingTicks = Arrays.copyOf(inWaitingTicks, capacity);
+        inTicks = Arrays.copyOf(inTicks, capacity);
+    }
+
+    /**
+     * Returns a copy of this state, sharing users until one of the states changes them.
+     */
+    @Override
+    public PlanningState clone() {
+        try {
+            PlanningState copy = (PlanningState) super.clone();
+            sharedWaiting = copy.sharedWaiting = true;
+            sharedIn = copy.sharedIn = true;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public boolean isDoorOpen() {
+        return doorOpen;
+    }
+
+    /**
+     * Returns true if the current direction of the elevator is up.
+     */
+    public boolean isGoingUp() {
+        return goingUp;
+    }
+
+    public int nbUsersWaiting() {
+        return nbWaiting;
+    }
+
+    public int nbUsersInElevator() {
+        return nbIn;
+    }
+
+    /**
+     * Returns the points earned by users which have exited since the copy of the elevator.
+     */
+    public int getPoints() {
+        return points;
+    }
+
+    public boolean isValid(Command command) {
+        switch (command) {
+        case UP:
+            return !doorOpen && floor < higherFloor;
+        case DOWN:
+            return !doorOpen && floor > lowerFloor;
+        case OPEN:
+            return !doorOpen;
+        case CLOSE:
+            return doorOpen;
+        case NOTHING:
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Plays a valid command, for one tick.
+     */
+    public void play(Command command) {
+        switch (command) {
+        case UP:
+            floor++;
+            goingUp = true;
+            break;
+        case DOWN:
+            floor--;
+            goingUp = false;
+            break;
+        case OPEN:
+            doorOpen = true;
+            exitUsers();
+            enterUsers();
+            break;
+        case CLOSE:
+            doorOpen = false;
+            break;
+        case NOTHING:
+        default:
+            break;
+        }
+        elapsedTicks++;
+    }
+
+    private void exitUsers() {
+        for (int i = nbIn - 1; i >= 0; i--) {
+            if (exitFloors[i] == floor) {
+                int earned = Score.maxPointsToEarnInElevator(entryFloors[i], floor, inWaitingTicks[i], inTicks[i]
+                        + elapsedTicks);
+                points += bounded(earned);
+                removeIn(i);
+            }
+        }
+    }
+
+    private void enterUsers() {
+        for (int i = nbWaiting - 1; i >= 0 && nbIn < cabinSize; i--) {
+            if (waitingFloors[i] == floor) {
+                int ticks = waitingTicks[i] + elapsedTicks;
+                removeWaiting(i);
+                ensureInNotShared();
+                if (nbIn == entryFloors.length) {
+                    growIn(nbIn * 2);
+                }
+                entryFloors[nbIn] = floor;
+                exitFloors[nbIn] = UNKNOWN_EXIT_FLOOR;
+                inWaitingTicks[nbIn] = ticks;
+                inTicks[nbIn] = -elapsedTicks;
+                nbIn++;
+            }
+        }
+    }
+
+    private void removeWaiting(int index) {
+        if (sharedWaiting) {
+            waitingFloors = waitingFloors.clone();
+            waitingTicks = waitingTicks.clone();
+            sharedWaiting = false;
+        }
+        nbWaiting--;
+        waitingFloors[index] = waitingFloors[nbWaiting];
+        waitingTicks[index] = waitingTicks[nbWaiting];
+    }
+
+    private void removeIn(int index) {
+        ensureInNotShared();
+        nbIn--;
+        entryFloors[index] = entryFloors[nbIn];
+        exitFloors[index] = exitFloors[nbIn];
+        inWaitingTicks[index] = inWaitingTicks[nbIn];
+        inTicks[index] = inTicks[nbIn];
+    }
+
+    private void ensureInNotShared() {
+        if (sharedIn) {
+            growIn(entryFloors.length);
+            sharedIn = false;
+        }
+    }
+
+    /**
+     * Returns the estimated points that remaining users will earn, if served from the current floor
+     * without detour.
+     * <p>
+     * Users in the cabin are estimated with {@link Score#estimatePointsEarned}. Users which have not
+     * requested a floor yet are assumed to be served at best, and waiting users are estimated with
+     * {@link Score#estimatePointsWhenWaiting}. Estimates are not bounded to 0, so that users who can
+     * no longer earn points are still worth serving.
+     */
+    public int estimateRemainingPoints() {
+        int estimate = 0;
+        for (int i = 0; i < nbIn; i++) {
+            if (exitFloors[i] == UNKNOWN_EXIT_FLOOR) {
+                estimate += Math.min(MAX_POINTS, Score.maxPointsToEarnWhenWaiting(inWaitingTicks[i]));
+            }
+            else {
+                estimate += Math.min(MAX_POINTS, Score.estimatePointsEarned(entryFloors[i], exitFloors[i],
+                        inWaitingTicks[i], inTicks[i] + elapsedTicks, floor, 0));
+            }
+        }
+        for (int i = 0; i < nbWaiting; i++) {
+            estimate += Math.min(MAX_POINTS, Score.estimatePointsWhenWaiting(waitingFloors[i], waitingTicks[i]
+                    + elapsedTicks, floor));
+        }
+        return estimate;
+    }
+
+    private static int bounded(int points) {
+        return Math.max(0, Math.min(MAX_POINTS, points));
+    }
+
+    @Override
+    public String toString() {
+        return "Floor=" + floor + ", Door=" + (doorOpen ? "OPEN" : "CLOSED") + ", Elapsed=" + elapsedTicks
+                + ", Points=" + points + ", Wait=" + nbWaiting + ", In=" + nbIn;
+    }
+}
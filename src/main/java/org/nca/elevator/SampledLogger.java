@@ -0,0 +1,54 @@
+package org.nca.elevator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Debug channel for diagnostics of hot loops, logging only one message out of a number of calls.
+ * <p>
+ * When debug is disabled, a call costs a level check, its message being neither formatted nor
+ * counted. Methods have fixed arguments to avoid allocating an array of arguments on each call.
+ */
+public final class SampledLogger {
+
+    public static final int DEFAULT_RATE = 1000;
+
+    private final Logger logger;
+
+    private final int rate;
+
+    private final AtomicLong nbCalls = new AtomicLong();
+
+    public SampledLogger(Logger logger) {
+        this(logger, DEFAULT_RATE);
+    }
+
+    /**
+     * @param rate
+     *            one message is logged out of this number of calls
+     */
+    public SampledLogger(Logger logger, int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        this.logger = logger;
+        this.rate = rate;
+    }
+
+    public void debug(String format, Object arg) {
+        if (logger.isDebugEnabled() && isSampled()) {
+            logger.debug(format, arg);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (logger.isDebugEnabled() && isSampled()) {
+            logger.debug(format, arg1, arg2);
+        }
+    }
+
+    private boolean isSampled() {
+        return nbCalls.getAndIncrement() % rate == 0;
+    }
+}
@@ -19,16 +19,21 @@ public class Score {
     return maxPointsToEarnInElevator(entryFloor, exitFloor, waitingTicks, elevatorTicks) - bestTickToGo(currentFloor, exitFloor) - (numberOfStops*2);
   }
 
+  /** Returns the estimated number of points that will be earned by a waiting user, if the elevator goes directly to its floor */
+  public static int estimatePointsWhenWaiting(int floor, int waitingTicks, int currentFloor) {
+    return maxPointsToEarnWhenWaiting(waitingTicks + abs(currentFloor - floor));
+  }
+
   /**
    * Shameless copy of server code, to compute minimum number of ticks from one floor to another.
    * {@link https ://github.com/xebia-france/code-elevator
    * /blob/master/elevator-server/src/main/java/elevator /server/Score.java }
    */
-  private static Integer bestTickToGo(Integer startFloor, Integer targetFloor) {
+  private static int bestTickToGo(int startFloor, int targetFloor) {
     // elevator is OPEN at floor
-    final Integer elevatorHasToCloseDoorsWhenAtFloor = 1;
-    final Integer elevatorGoesStraightFromFloorToFloorToGo = abs(targetFloor - startFloor);
-    final Integer elevatorHasToOpenDoorsWhenAtFloorToGo = 1;
+    final int elevatorHasToCloseDoorsWhenAtFloor = 1;
+    final int elevatorGoesStraightFromFloorToFloorToGo = abs(targetFloor - startFloor);
+    final int elevatorHasToOpenDoorsWhenAtFloorToGo = 1;
 
     return elevatorHasToCloseDoorsWhenAtFloor + elevatorGoesStraightFromFloorToFloorToGo
         + elevatorHasToOpenDoorsWhenAtFloorToGo;
@@ -0,0 +1,164 @@
+package org.nca.elevator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Running score of an elevator, updated on each user exit as the game server computes it.
+ * <p>
+ * Besides the points earned, it splits the points lost by each user between the decay while
+ * waiting and the ticks spent in the cabin beyond the shortest ride. It is written by the thread
+ * accessing the elevator, and can be read from any thread.
+ */
+class ScoreLedger {
+
+    /** Points earned by a user served immediately, the maximum a user can earn. */
+    static final int MAX_POINTS = Score.maxPointsToEarnWhenWaiting(0);
+
+    private volatile long totalPoints, nbUsers, pointsLostWaiting, pointsLostRiding;
+
+    /** Number of users per points earned, from 0 to MAX_POINTS. */
+    private final AtomicLongArray distribution = new AtomicLongArray(MAX_POINTS + 1);
+
+    ScoreLedger() {
+    }
+
+    /**
+     * Creates a copy of the provided ledger, with its current values.
+     */
+    ScoreLedger(ScoreLedger ledger) {
+        totalPoints = ledger.totalPoints;
+        nbUsers = ledger.nbUsers;
+        pointsLostWaiting = ledger.pointsLostWaiting;
+        pointsLostRiding = ledger.pointsLostRiding;
+        for (int points = 0; points <= MAX_POINTS; points++) {
+            distribution.set(points, ledger.distribution.get(points));
+        }
+    }
+
+    /**
+     * Records the exit of the provided user.
+     *
+     * @return the points earned by the user
+     */
+    int userExited(ElevatorUser user) {
+        return userExited(user.getFinalPointsEarned(), user.getWaitingTicks());
+    }
+
+    /**
+     * Records the exit of a user with the provided final points and waiting ticks.
+     *
+     * @return the points earned by the user
+     */
+    int userExited(int finalPoints, int waitingTicks) {
+        int points = pointsEarned(finalPoints);
+        totalPoints += points;
+        nbUsers++;
+        pointsLostWaiting += lostWaiting(waitingTicks);
+        pointsLostRiding += lostRiding(finalPoints, waitingTicks);
+        distribution.incrementAndGet(points);
+        return points;
+    }
+
+    /** Returns the points earned by the user, never negative. */
+    static int pointsEarned(ElevatorUser user) {
+        return pointsEarned(user.getFinalPointsEarned());
+    }
+
+    static int pointsEarned(int finalPoints) {
+        return Math.max(0, Math.min(MAX_POINTS, finalPoints));
+    }
+
+    /** Returns the points lost by the user to the decay while waiting. */
+    static int lostWaiting(ElevatorUser user) {
+        return lostWaiting(user.getWaitingTicks());
+    }
+
+    static int lostWaiting(int waitingTicks) {
+        return Math.min(MAX_POINTS, MAX_POINTS - Score.maxPointsToEarnWhenWaiting(waitingTicks));
+    }
+
+    /** Returns the points lost by the user in the cabin, beyond the shortest ride. */
+    static int lostRiding(ElevatorUser user) {
+        return lostRiding(user.getFinalPointsEarned(), user.getWaitingTicks());
+    }
+
+    static int lostRiding(int finalPoints, int waitingTicks) {
+        return Math.max(0, MAX_POINTS - pointsEarned(finalPoints) - lostWaiting(waitingTicks));
+    }
+
+    long getTotalPoints() {
+        return totalPoints;
+    }
+
+    long getNbUsers() {
+        return nbUsers;
+    }
+
+    long getPointsLostWaiting() {
+        return pointsLostWaiting;
+    }
+
+    long getPointsLostRiding() {
+        return pointsLostRiding;
+    }
+
+    /**
+     * Returns the number of users who earned the provided points.
+     */
+    long getNbUsersWithPoints(int points) {
+        return distribution.get(points);
+    }
+
+    /**
+     * Returns the points earned per tick over the provided number of ticks.
+     */
+    double getPointsPerTick(long ticks) {
+        return ticks == 0 ? 0 : totalPoints / (double) ticks;
+    }
+
+    /**
+     * Writes the score, to be read by {@link #readFrom(DataInput)}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(totalPoints);
+        out.writeLong(nbUsers);
+        out.writeLong(pointsLostWaiting);
+        out.writeLong(pointsLostRiding);
+        for (int points = 0; points <= MAX_POINTS; points++) {
+            out.writeLong(distribution.get(points));
+        }
+    }
+
+    static ScoreLedger readFrom(DataInput in) throws IOException {
+        ScoreLedger ledger = new ScoreLedger();
+        ledger.totalPoints = in.readLong();
+        ledger.nbUsers = in.readLong();
+        ledger.pointsLostWaiting = in.readLong();
+        ledger.pointsLostRiding = in.readLong();
+        for (int points = 0; points <= MAX_POINTS; points++) {
+            ledger.distribution.set(points, in.readLong());
+        }
+        return ledger;
+    }
+
+    /**
+     * Appends the description of the score to the provided builder.
+     */
+    StringBuilder appendTo(StringBuilder builder, long ticks) {
+        builder.append(totalPoints).append(" points for ").append(nbUsers).append(" users in ").append(ticks)
+                .append(" ticks (").append(String.format(Locale.ROOT, "%.3f", getPointsPerTick(ticks)))
+                .append(" per tick), lost waiting: ").append(pointsLostWaiting).append(", lost riding: ")
+                .append(pointsLostRiding).append(", users per points:");
+        for (int points = 0; points <= MAX_POINTS; points++) {
+            long count = distribution.get(points);
+            if (count > 0) {
+                builder.append(' ').append(points).append('=').append(count);
+            }
+        }
+        return builder;
+    }
+}
@@ -3,15 +3,22 @@ package org.nca.elevator;
 import static spark.Spark.after;
 import static spark.Spark.before;
 import static spark.Spark.get;
+import static spark.Spark.post;
 import static spark.Spark.setIpAddress;
 import static spark.Spark.setPort;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-import org.nca.elevator.Elevator.Command;
 import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.ClassicStrategy;
 import org.nca.elevator.strategy.ElevatorStrategy;
+import org.nca.elevator.strategy.Strategies;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,7 +28,7 @@ import spark.Response;
 import spark.Route;
 
 /**
- * Elevator server based on Spark.
+ * Elevator server, based on Spark or on the HTTP server of the JDK.
  */
 public class Server {
 
@@ -33,16 +40,44 @@ public class Server {
 
     private final int port;
 
-    boolean isServerInitialized = false;
+    private final Concurrency concurrency;
+
+    private final Transport transport;
+
+    /**
+     * How concurrent requests access the elevator.
+     */
+    static enum Concurrency {
+        LOCK, // each request locks the elevator
+        EVENT_LOOP // requests are posted to a single thread owning the elevator
+    }
+
+    /**
+     * How requests are received.
+     */
+    static enum Transport {
+        SPARK, // Spark on its embedded Jetty
+        HTTP_SERVER, // HTTP server of the JDK, with a small pool of threads
+        VIRTUAL_THREADS // HTTP server of the JDK, with a virtual thread per request when available
+    }
 
     public static void main(String[] args) {
         System.setProperty("java.util.logging.SimpleFormatter.format",
                 "[%1$tT:%1$tL] %4$s: %5$s %n");
+        // requests don't wait for the console
+        AsyncLogHandler.install();
         try {
             String ipAddress = "localhost";
             int port = 8080;
             String strategy = "ClassicStrategy";
             String optimization = "NONE";
+            String concurrency = "LOCK";
+            long deadlineMillis = 0;
+            boolean speculative = false;
+            String transport = "SPARK";
+            int nbCabins = 1;
+            File journalDir = null;
+            File checkpointDir = null;
 
             if (args.length >= 3) {
                 ipAddress = args[0];
@@ -54,12 +89,40 @@ public class Server {
                 if (args.length > 3) {
                     optimization = args[3];
                 }
+                if (args.length > 4) {
+                    concurrency = args[4];
+                }
+                if (args.length > 5) {
+                    deadlineMillis = Long.valueOf(args[5]);
+                }
+                if (args.length > 6) {
+                    speculative = Boolean.valueOf(args[6]);
+                }
+                if (args.length > 7) {
+                    transport = args[7];
+                }
+                if (args.length > 8) {
+                    nbCabins = Integer.valueOf(args[8]);
+                }
+                if (args.length > 9 && !args[9].equals("none")) {
+                    journalDir = new File(args[9]);
+                }
+                if (args.length > 10) {
+                    checkpointDir = new File(args[10]);
+                }
             }
             String strategyClass = "org.nca.elevator.strategy." + strategy;
 
-            logger.info("Launch Elevator Server on address {}, port {}, using strategy {} with optimization {}",
-                    ipAddress, port, strategyClass, optimization);
-            new Server(ipAddress, port).startElevator(strategyClass, optimization);
+            logger.info("Launch Elevator Server on address {}, port {}, using strategy {} with optimization {}, concurrency {}, deadline {} ms, speculation {}, transport {}, {} cabins, journal in {} and checkpoints in {}",
+                    ipAddress, port, strategyClass, optimization, concurrency, deadlineMillis, speculative, transport, nbCabins,
+                    journalDir, checkpointDir);
+            Server server = new Server(ipAddress, port, Concurrency.valueOf(concurrency), Transport.valueOf(transport));
+            if (nbCabins > 1) {
+                server.startBuilding(strategyClass, optimization, nbCabins);
+            }
+            else {
+                server.startElevator(strategyClass, optimization, deadlineMillis, speculative, journalDir, checkpointDir);
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -68,193 +131,218 @@ public class Server {
     }
 
     Server(String ipAddress, int port) {
+        this(ipAddress, port, Concurrency.LOCK);
+    }
+
+    Server(String ipAddress, int port, Concurrency concurrency) {
+        this(ipAddress, port, concurrency, Transport.SPARK);
+    }
+
+    Server(String ipAddress, int port, Concurrency concurrency, Transport transport) {
         this.ipAddress = ipAddress;
         this.port = port;
-
+        this.concurrency = concurrency;
+        this.transport = transport;
     }
 
     void startElevator(String strategyClass, String optimizationName) throws Exception {
-        setIpAddress(ipAddress);
-        setPort(port);
-        ElevatorStrategy strategy = (ElevatorStrategy) Class.forName(strategyClass).newInstance();
-        Optimization optimization = Optimization.valueOf(optimizationName);
-        if (optimization == null) {
-            optimization = Optimization.NONE;
-        }
-        final Elevator elevator = new Elevator(strategy, optimization);
-        defineFilters(elevator);
-        defineRoutes(elevator);
-        defineFeedbackRoutes(elevator);
+        startElevator(strategyClass, optimizationName, 0, false, null, null);
     }
 
-    private void defineFeedbackRoutes(final Elevator elevator) {
-        get(new Route("/status") {
+    /**
+     * @param deadlineMillis
+     *            time budget of the strategy for each command, 0 for no deadline
+     * @param speculative
+     *            true to compute each command in advance, right after the previous one
+     * @param journalDir
+     *            directory of the journal of each session, null for no journal
+     * @param checkpointDir
+     *            directory of the checkpoint of each session, restored on start, null for no
+     *            checkpoint
+     */
+    void startElevator(final String strategyClass, String optimizationName, final long deadlineMillis,
+            final boolean speculative, final File journalDir, File checkpointDir) throws Exception {
+        Optimization optimizationFound = Optimization.valueOf(optimizationName);
+        final Optimization optimization = optimizationFound == null ? Optimization.NONE : optimizationFound;
+        final ElevatorMetrics metrics = new ElevatorMetrics();
+        final ScheduledExecutorService journalFlusher = journalDir == null ? null : newJournalFlusher(journalDir);
+        // each session has its own elevator, strategy and executor
+        final ElevatorSessions sessions = new ElevatorSessions(new ElevatorSessions.Factory() {
             @Override
-            public Object handle(Request request, Response response) {
-                String result = "";
-                try {
-                    String entries = request.queryParams("entries");
-                    int numberOfEntries = entries == null ? 1 : Integer.valueOf(entries);
-                    response.type("text/html");
-                    result = "<p>GRElevator v. " + VERSION + "</p>" 
-                            + "<p> lowerFloor :" + elevator.getLowerFloor() + " higherFloor :" + elevator.getHigherFloor() + " cabinSize :" + elevator.getCabinSize() + "</p>"
-                            + "<p>Using strategy: " + elevator.getStrategy().getName()
-                            + " and optimization: " + elevator.getOptimization() + ".</p>"
-                            + "<p><b>State</b> :"
-                            + elevator.getHistoryAsHtml(numberOfEntries) + "</p>";
-                } catch (Exception e) {
-                    result = e.getMessage();
+            public ElevatorExecutor create(String id) throws Exception {
+                ElevatorStrategy strategy = Strategies.newStrategy(strategyClass);
+                Elevator elevator = new Elevator(strategy, optimization);
+                if (deadlineMillis > 0) {
+                    elevator.setDeadline(deadlineMillis, TimeUnit.MILLISECONDS, new ClassicStrategy());
                 }
-                return result;
-            }
-        });
-
-        get(new Route("/strategy") {
-            @Override
-            public Object handle(Request request, Response response) {
-                try {
-                    String klass = "org.nca.elevator.strategy." + request.queryParams("klass");
-                    ElevatorStrategy strategy = (ElevatorStrategy) Class.forName(klass).newInstance();
-                    elevator.setStrategy(strategy);
-                    return "Strategy successfully changed to " + klass;
-                } catch (Exception e) {
-                    response.status(500);
-                    logger.error("Unable to change the strategy : {}", e.toString());
-                    return "Strategy change failed: " + e.getMessage();
+                elevator.setSpeculative(speculative);
+                elevator.setMetrics(metrics);
+                if (journalFlusher != null) {
+                    elevator.setJournal(new EventJournal(journalFile(journalDir, id), journalFlusher,
+                            EventJournal.DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS));
                 }
+                return concurrency == Concurrency.EVENT_LOOP ? new EventLoopElevatorExecutor(elevator, metrics)
+                        : new LockingElevatorExecutor(elevator, metrics);
             }
-        });
-
-        get(new Route("/optimization") {
-            @Override
-            public Object handle(Request request, Response response) {
-                String name = request.queryParams("name");
-                Optimization optimization = Optimization.valueOf(name);
-                if (optimization == null) {
-                    response.status(404);
-                    return "No optimization found for " + name;
-                }
-                try {
-                    elevator.setOptimization(optimization);
-                    return "Optimization successfully changed to " + optimization;
-                } catch (Exception e) {
-                    response.status(500);
-                    logger.error("Unable to change the optimization: {}", e.toString());
-                    return "Optimization change failed: " + e.getMessage();
+        }, ElevatorSessions.DEFAULT_MAX_SESSIONS, ElevatorSessions.DEFAULT_IDLE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        if (checkpointDir != null) {
+            sessions.withCheckpoints(new ElevatorCheckpoints(checkpointDir, ElevatorCheckpoints.DEFAULT_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS));
+        }
+        if (journalDir != null || checkpointDir != null) {
+            // journals closed, and last checkpoints taken, when the server is stopped
+            Runtime.getRuntime().addShutdownHook(new Thread("elevator-shutdown") {
+                @Override
+                public void run() {
+                    try {
+                        sessions.shutdown();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
                 }
-            }
-        });
+            });
+        }
+        sessions.start();
+        start(new ElevatorRoutes(sessions).withMetrics(metrics));
+    }
 
-        get(new Route("/forceReset") {
+    private static ScheduledExecutorService newJournalFlusher(File journalDir) throws IOException {
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + journalDir);
+        }
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
             @Override
-            public Object handle(Request request, Response response) {
-                // So the next Command will be a RESET
-                isServerInitialized = false;
-                return "";
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "elevator-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
             }
         });
     }
 
-    private void defineRoutes(final Elevator elevator) {
-        get(new Route("/call") {
-            @Override
-            public Object handle(Request request, Response response) {
-                String atFloor = request.queryParams("atFloor");
-                String to = request.queryParams("to");
-                elevator.call(Integer.valueOf(atFloor), to);
-                return "";
-            }
-        });
+    /**
+     * Returns the journal of the provided session.
+     */
+    static File journalFile(File journalDir, String sessionId) {
+        return new File(journalDir, ElevatorSessions.toFileName(sessionId) + ".journal");
+    }
 
-        get(new Route("/go") {
-            @Override
-            public Object handle(Request request, Response response) {
-                String floor = request.queryParams("floorToGo");
-                elevator.go(Integer.valueOf(floor));
-                return "";
-            }
-        });
+    /**
+     * Starts a building with several cabins, each one using its own instance of the strategy.
+     * Deadline, speculation, concurrency and journal are not supported with several cabins.
+     */
+    @SuppressWarnings("unchecked")
+    void startBuilding(String strategyClass, String optimizationName, int nbCabins) throws Exception {
+        Class<? extends ElevatorStrategy> strategy = (Class<? extends ElevatorStrategy>) Class.forName(strategyClass);
+        ElevatorMetrics metrics = new ElevatorMetrics();
+        Dispatcher dispatcher = new Dispatcher(strategy, Optimization.valueOf(optimizationName), nbCabins, metrics);
+        start(new ElevatorRoutes(dispatcher).withMetrics(metrics));
+    }
 
-        get(new Route("/userHasEntered") {
-            @Override
-            public Object handle(Request request, Response response) {
-                try {
-                  elevator.userHasEntered();
-                  return "";
-                } catch (Exception e) {
-                  response.status(500); // TODO find a more accurate status code
-                  return e.getMessage();
+    private void start(ElevatorRoutes routes) throws Exception {
+        if (transport == Transport.HTTP_SERVER) {
+            new HttpServerTransport(ipAddress, port, routes).start();
+        }
+        else if (transport == Transport.VIRTUAL_THREADS) {
+            HttpServerTransport.withVirtualThreads(ipAddress, port, routes).start();
+        }
+        else {
+            setIpAddress(ipAddress);
+            setPort(port);
+            defineFilters();
+            defineRoutes(routes);
+        }
+    }
+
+    /**
+     * Defines a Spark route for each route.
+     */
+    private void defineRoutes(final ElevatorRoutes routes) {
+        for (final ElevatorRoutes.Route route : routes.getRoutes()) {
+            Route sparkRoute = new Route(route.getPath()) {
+                @Override
+                public Object handle(Request request, Response response) {
+                    return routes.handle(route, new SparkRequest(request), new SparkResponse(response));
                 }
+            };
+            if (route.getMethod().equals("POST")) {
+                post(sparkRoute);
             }
-        });
-
-        get(new Route("/userHasExited") {
-            @Override
-            public Object handle(Request request, Response response) {
-                elevator.userHasExited();
-                return "";
+            else {
+                get(sparkRoute);
             }
-        });
+        }
+    }
 
-        get(new Route("/reset") {
-            @Override
-            public Object handle(Request request, Response response) {
-                String lowerFloor = request.queryParams("lowerFloor");
-                String higherFloor = request.queryParams("higherFloor");
-                String cause = request.queryParams("cause");
-                String cabinSize = request.queryParams("cabinSize");
-
-                logger.info("Resetting elevator from {} to {} with max of {} users in the cabin because of : {}", lowerFloor,
-                        higherFloor, cabinSize, cause);
-                if (lowerFloor != null && higherFloor != null) {
-                    elevator.reset(Integer.valueOf(lowerFloor), Integer.valueOf(higherFloor), Integer.valueOf(cabinSize));
-                }
-                else {
-                    elevator.reset(0, 19, 30); // allow to use the not up-to-date elevator server
-                }
-                return "";
-            }
-        });
+    private static class SparkRequest implements ElevatorRoutes.Request {
+        private final Request request;
 
-        get(new Route("/nextCommand") {
-            @Override
-            public Object handle(Request request, Response response) {
-                try {
-                    if (isServerInitialized) {
-                        return elevator.nextCommand().toString();
-                    }
-                    else {
-                        // need to force reset by server by sending unknown command to it
-                        isServerInitialized = true;
-                        return "NEED RESET";
-                    }
-                } catch (Exception e) {
-                    logger.error("Unexpected error in next command: {}", e.getMessage());
-                    return Command.NOTHING;
-                }
-            }
-        });
+        SparkRequest(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public String queryParams(String name) {
+            return request.queryParams(name);
+        }
+
+        @Override
+        public String body() {
+            return request.body();
+        }
+
+        @Override
+        public String pathInfo() {
+            return request.pathInfo();
+        }
+
+        @Override
+        public String queryString() {
+            return request.queryString();
+        }
+
+        @Override
+        public String headers(String name) {
+            return request.headers(name);
+        }
     }
 
-    private void defineFilters(final ElevatorState elevator) {
-        // performance is not important, just lock each request handling to avoid fine-tuned locking
-        final ReentrantLock lock = new ReentrantLock();
+    private static class SparkResponse implements ElevatorRoutes.Response {
+        private final Response response;
+
+        SparkResponse(Response response) {
+            this.response = response;
+        }
+
+        @Override
+        public void status(int statusCode) {
+            response.status(statusCode);
+        }
+
+        @Override
+        public void type(String contentType) {
+            response.type(contentType);
+        }
+    }
 
+    private void defineFilters() {
         before(new Filter() { // matches all routes
             @Override
             public void handle(Request request, Response response) {
-                lock.lock();
-                logger.info("Request {}{}", request.pathInfo(), request.queryString() == null ? ""
-                        : "?" + request.queryString());
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Request {}{}", request.pathInfo(), request.queryString() == null ? ""
+                            : "?" + request.queryString());
+                }
             }
         });
 
         after(new Filter() {// matches all routes
             @Override
             public void handle(Request request, Response response) {
-                logger.info("Done {}{}, {}", request.pathInfo(), request.queryString() == null ? ""
-                        : "?" + request.queryString(), elevator);
-                lock.unlock();
+                if (logger.isInfoEnabled()) {
+                    logger.info("Done {}{}", request.pathInfo(), request.queryString() == null ? ""
+                            : "?" + request.queryString());
+                }
             }
         });
     }
@@ -0,0 +1,204 @@
+package org.nca.elevator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Direction;
+import org.nca.elevator.Elevator.Door;
+
+/**
+ * History of the last states of the elevator, one state being recorded for each command.
+ * <p>
+ * States are kept in a preallocated ring buffer of primitive columns, so that recording a state
+ * allocates nothing. HTML is only rendered when requested.
+ * <p>
+ * States are recorded by the thread owning the elevator, and can be rendered from any thread: rows
+ * are copied while holding the monitor of the history, which is only held for a short time.
+ */
+class StateHistory {
+
+    static final int DEFAULT_CAPACITY = 100;
+
+    private static final Command[] COMMANDS = Command.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Door[] DOORS = Door.values();
+
+    private final int capacity;
+
+    private final byte[] commands;
+    private final int[] floors;
+    private final byte[] directions;
+    private final byte[] doors;
+    private final long[] ticksClocks;
+    private final long[] totalExits;
+    private final int[] nbWaits;
+    private final int[] nbIns;
+    private final int[] waitingTicks;
+    private final int[] inboardTicks;
+    private final int[] nbFloorsAsEntry;
+    private final int[] nbFloorsAsExit;
+
+    /** Number of states recorded since creation, the last ones being kept in the buffer. */
+    private long size;
+
+    public StateHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StateHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        commands = new byte[capacity];
+        floors = new int[capacity];
+        directions = new byte[capacity];
+        doors = new byte[capacity];
+        ticksClocks = new long[capacity];
+        totalExits = new long[capacity];
+        nbWaits = new int[capacity];
+        nbIns = new int[capacity];
+        waitingTicks = new int[capacity];
+        inboardTicks = new int[capacity];
+        nbFloorsAsEntry = new int[capacity];
+        nbFloorsAsExit = new int[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Records a state, replacing the oldest one if the history is full.
+     */
+    public synchronized void add(Command command, int floor, Direction dir, Door door, long ticksClock,
+            long exits, int nbWait, int nbIn, int waitTicks, int inTicks, int floorsAsEntry, int floorsAsExit) {
+        int index = (int) (size % capacity);
+        commands[index] = (byte) command.ordinal();
+        floors[index] = floor;
+        directions[index] = (byte) dir.ordinal();
+        doors[index] = (byte) door.ordinal();
+        ticksClocks[index] = ticksClock;
+        totalExits[index] = exits;
+        nbWaits[index] = nbWait;
+        nbIns[index] = nbIn;
+        waitingTicks[index] = waitTicks;
+        inboardTicks[index] = inTicks;
+        nbFloorsAsEntry[index] = floorsAsEntry;
+        nbFloorsAsExit[index] = floorsAsExit;
+        size++;
+    }
+
+    /**
+     * Returns the number of states recorded since creation, including the ones no longer kept.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of states kept.
+     */
+    public synchronized int nbStates() {
+        return (int) Math.min(size, capacity);
+    }
+
+    public synchronized Command getLastCommand() {
+        return size == 0 ? null : COMMANDS[commands[(int) ((size - 1) % capacity)]];
+    }
+
+    public String getHistoryAsHtml(int numberOfEntries) {
+        return getHistoryAsHtml(size(), numberOfEntries);
+    }
+
+    /**
+     * Returns the history as HTML, from the state recorded just before the provided position and
+     * going backward.
+     *
+     * @param position
+     *            number of states recorded when the history is considered, states recorded after
+     *            are ignored
+     * @param numberOfEntries
+     *            maximum number of states to render
+     */
+    public String getHistoryAsHtml(long position, int numberOfEntries) {
+        StateHistory rows = copy(position, numberOfEntries);
+        StringBuilder history = new StringBuilder();
+        history
+          .append("<table cellpadding='5' cellmargin='2'>")
+          .append("<th>Clock</th><th>Exits</th><th>Command</th><th>Floor</th>")
+          .append("<th>Direction</th><th>Door</th><th>Users</th><th>Ticks</th><th>Floors</th>");
+        for (int i = rows.nbStates() - 1; i >= 0; i--) {
+          history.append("<tr>")
+            .append("<td>").append(rows.ticksClocks[i]).append("</td>")
+            .append("<td>").append(rows.totalExits[i]).append("</td>")
+            .append("<td>").append(COMMANDS[rows.commands[i]]).append("</td>")
+            .append("<td>").append(rows.floors[i]).append("</td>")
+            .append("<td>").append(DIRECTIONS[rows.directions[i]]).append("</td>")
+            .append("<td>").append(DOORS[rows.doors[i]]).append("</td>")
+            .append("<td>").append(rows.nbWaits[i]).append(" | ").append(rows.nbIns[i]).append("</td>")
+            .append("<td>").append(rows.waitingTicks[i]).append(" | ").append(rows.inboardTicks[i]).append("</td>")
+            .append("<td>").append(rows.nbFloorsAsEntry[i]).append(" | ").append(rows.nbFloorsAsExit[i]).append("</td>")
+            .append("</tr>");
+        }
+        history.append("</table>");
+        return history.toString();
+    }
+
+    /**
+     * Copies the states still kept among the provided number of states recorded before the provided
+     * position, from the oldest one.
+     */
+    synchronized StateHistory copy(long position, int numberOfEntries) {
+        long end = Math.min(position, size);
+        long start = Math.max(Math.max(0, end - numberOfEntries), size - capacity);
+        StateHistory rows = new StateHistory((int) Math.max(1, end - start));
+        for (long i = start; i < end; i++) {
+            int index = (int) (i % capacity);
+            rows.add(COMMANDS[commands[index]], floors[index], DIRECTIONS[directions[index]], DOORS[doors[index]],
+                    ticksClocks[index], totalExits[index], nbWaits[index], nbIns[index], waitingTicks[index],
+                    inboardTicks[index], nbFloorsAsEntry[index], nbFloorsAsExit[index]);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the states kept, from the oldest one, to be read by {@link #readFrom(DataInput, int)}.
+     */
+    synchronized void writeTo(DataOutput out) throws IOException {
+        int nbStates = nbStates();
+        out.writeInt(nbStates);
+        for (long i = size - nbStates; i < size; i++) {
+            int index = (int) (i % capacity);
+            out.writeByte(commands[index]);
+            out.writeInt(floors[index]);
+            out.writeByte(directions[index]);
+            out.writeByte(doors[index]);
+            out.writeLong(ticksClocks[index]);
+            out.writeLong(totalExits[index]);
+            out.writeInt(nbWaits[index]);
+            out.writeInt(nbIns[index]);
+            out.writeInt(waitingTicks[index]);
+            out.writeInt(inboardTicks[index]);
+            out.writeInt(nbFloorsAsEntry[index]);
+            out.writeInt(nbFloorsAsExit[index]);
+        }
+    }
+
+    /**
+     * Reads states written by {@link #writeTo(DataOutput)} into a history of the provided capacity,
+     * keeping the last ones if they don't fit.
+     */
+    static StateHistory readFrom(DataInput in, int capacity) throws IOException {
+        StateHistory history = new StateHistory(capacity);
+        for (int i = in.readInt(); i > 0; i--) {
+            history.add(COMMANDS[in.readByte()], in.readInt(), DIRECTIONS[in.readByte()], DOORS[in.readByte()],
+                    in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                    in.readInt(), in.readInt());
+        }
+        return history;
+    }
+
+}
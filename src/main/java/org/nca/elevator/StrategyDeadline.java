@@ -0,0 +1,151 @@
+package org.nca.elevator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the strategy of an elevator with a time budget, using a fallback strategy when the budget
+ * is exceeded.
+ * <p>
+ * The strategy runs in a separate thread on a copy of the elevator, so that it can't change the
+ * elevator once the deadline has passed. When it answers in time, its command is performed on the
+ * elevator. Otherwise the fallback strategy is run on the elevator itself, and the overrun is
+ * counted. A late strategy is not interrupted : the fallback strategy is used until it finishes,
+ * and its late command is ignored.
+ */
+class StrategyDeadline {
+
+    static final Logger logger = LoggerFactory.getLogger(StrategyDeadline.class);
+
+    private final long budgetNanos;
+
+    private final ElevatorStrategy fallback;
+
+    private final ExecutorService runner;
+
+    /** True while the strategy computes a command, written by the runner thread. */
+    private volatile boolean running;
+
+    /** Counters written by the thread owning the elevator, and read from any thread. */
+    private volatile long nbCommands, nbOverruns;
+
+    /** Metrics recording the commands and overruns, null if not recorded. */
+    private ElevatorMetrics metrics;
+
+    StrategyDeadline(long budget, TimeUnit unit, ElevatorStrategy fallback) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + budget);
+        }
+        this.budgetNanos = unit.toNanos(budget);
+        this.fallback = fallback;
+        this.runner = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "elevator-strategy");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    void setMetrics(ElevatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the next command of the provided strategy for the elevator, or of the fallback
+     * strategy if the strategy can't answer within the budget.
+     */
+    Command nextCommand(Elevator elevator, final ElevatorStrategy strategy) {
+        if (running) {
+            logger.warn("Strategy is still computing a previous command, using fallback");
+        }
+        else {
+            final Elevator copy = elevator.copy();
+            running = true;
+            Future<Command> command = runner.submit(new Callable<Command>() {
+                @Override
+                public Command call() {
+                    try {
+                        return strategy.nextCommand(copy, copy);
+                    } finally {
+                        running = false;
+                    }
+                }
+            });
+            try {
+                Command result = command.get(budgetNanos, TimeUnit.NANOSECONDS);
+                commandInTime();
+                return elevator.perform(result, copy);
+            } catch (TimeoutException e) {
+                logger.warn("Strategy exceeded its budget of {} ms, using fallback",
+                        TimeUnit.NANOSECONDS.toMillis(budgetNanos));
+            } catch (ExecutionException e) {
+                logger.error("Strategy failed, using fallback", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for strategy, using fallback");
+            }
+        }
+        return fallback(elevator);
+    }
+
+    /**
+     * Counts a command provided by the strategy within the budget.
+     */
+    void commandInTime() {
+        nbCommands++;
+        if (metrics != null) {
+            metrics.recordDeadlineCommand(false);
+        }
+    }
+
+    /**
+     * Returns the command of the fallback strategy for the elevator, counting the overrun.
+     */
+    Command fallback(Elevator elevator) {
+        nbCommands++;
+        nbOverruns++;
+        if (metrics != null) {
+            metrics.recordDeadlineCommand(true);
+        }
+        return fallback.nextCommand(elevator, elevator);
+    }
+
+    long getBudget(TimeUnit unit) {
+        return unit.convert(budgetNanos, TimeUnit.NANOSECONDS);
+    }
+
+    Class<? extends ElevatorStrategy> getFallback() {
+        return fallback.getClass();
+    }
+
+    /**
+     * Returns the number of commands requested with this deadline.
+     */
+    long getNbCommands() {
+        return nbCommands;
+    }
+
+    /**
+     * Returns the number of commands provided by the fallback strategy.
+     */
+    long getNbOverruns() {
+        return nbOverruns;
+    }
+
+    void shutdown() {
+        runner.shutdown();
+    }
+}
@@ -0,0 +1,180 @@
+package org.nca.elevator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the next command of an elevator in advance, right after a command, so that it is ready
+ * when requested.
+ * <p>
+ * The strategy runs in a separate thread on a copy of the elevator. Any event changing the
+ * elevator before the next command invalidates the speculated command, which is then computed
+ * again when requested. While events keep arriving between commands, no command is speculated, as
+ * the copy of the elevator and the computation would be wasted : speculation resumes after a
+ * command without event since the previous one.
+ * <p>
+ * All methods but the counters are called by the thread owning the elevator.
+ */
+class StrategySpeculation {
+
+    static final Logger logger = LoggerFactory.getLogger(StrategySpeculation.class);
+
+    private final ExecutorService runner;
+
+    /** Command being speculated, null if there is none or if it has been invalidated. */
+    private Future<Command> pending;
+
+    /** Copy of the elevator on which the pending command is speculated. */
+    private Elevator copy;
+
+    /** True once a command has been speculated or skipped. */
+    private boolean started;
+
+    /** True if an event changed the elevator since the last command. */
+    private boolean eventSinceCommand;
+
+    /** Counters written by the thread owning the elevator, and read from any thread. */
+    private volatile long nbHits, nbMisses;
+
+    /** Metrics recording the hits and misses, null if not recorded. */
+    private ElevatorMetrics metrics;
+
+    StrategySpeculation() {
+        this.runner = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "elevator-speculation");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    void setMetrics(ElevatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts to speculate the next command of the provided strategy for the elevator.
+     */
+    void start(Elevator elevator, final ElevatorStrategy strategy) {
+        cancel();
+        started = true;
+        if (eventSinceCommand) {
+            eventSinceCommand = false;
+            return;
+        }
+        final Elevator copy = elevator.copy();
+        this.copy = copy;
+        pending = runner.submit(new Callable<Command>() {
+            @Override
+            public Command call() {
+                return strategy.nextCommand(copy, copy);
+            }
+        });
+    }
+
+    /**
+     * Invalidates the speculated command, if any.
+     */
+    void invalidate() {
+        if (cancel()) {
+            miss();
+        }
+        eventSinceCommand = started;
+    }
+
+    private boolean cancel() {
+        if (pending == null) {
+            return false;
+        }
+        // not interrupted, but dropped if not started
+        pending.cancel(false);
+        pending = null;
+        copy = null;
+        return true;
+    }
+
+    /**
+     * Performs the speculated command on the elevator, waiting for it if it is not ready yet.
+     *
+     * @param deadline
+     *            deadline of the strategy, or null to wait for the speculated command without limit
+     * @return the command performed, or null if no valid command has been speculated
+     */
+    Command nextCommand(Elevator elevator, StrategyDeadline deadline) {
+        if (pending == null) {
+            return null;
+        }
+        Future<Command> command = pending;
+        Elevator speculated = copy;
+        pending = null;
+        copy = null;
+        try {
+            Command result;
+            if (deadline == null) {
+                result = command.get();
+            }
+            else {
+                result = command.get(deadline.getBudget(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+                deadline.commandInTime();
+            }
+            hit();
+            return elevator.perform(result, speculated);
+        } catch (TimeoutException e) {
+            logger.warn("Speculated command exceeded the deadline, using fallback");
+            return deadline.fallback(elevator);
+        } catch (ExecutionException e) {
+            logger.error("Strategy failed while speculating, computing command again", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for speculated command, computing command again");
+        }
+        miss();
+        return null;
+    }
+
+    private void hit() {
+        nbHits++;
+        if (metrics != null) {
+            metrics.recordSpeculation(true);
+        }
+    }
+
+    private void miss() {
+        nbMisses++;
+        if (metrics != null) {
+            metrics.recordSpeculation(false);
+        }
+    }
+
+    /**
+     * Returns the number of commands provided by speculation.
+     */
+    long getNbHits() {
+        return nbHits;
+    }
+
+    /**
+     * Returns the number of speculated commands invalidated or failed.
+     */
+    long getNbMisses() {
+        return nbMisses;
+    }
+
+    void shutdown() {
+        invalidate();
+        runner.shutdown();
+    }
+}
@@ -0,0 +1,236 @@
+package org.nca.elevator;
+
+import java.util.Arrays;
+
+/**
+ * Storage of users in parallel arrays of primitives, one array per field of a user, instead of one
+ * object per user.
+ * <p>
+ * A user is identified by its slot, the index of its fields in these arrays. The slots of removed
+ * users are recycled, so that adding or removing a user allocates nothing once the arrays are large
+ * enough. Slots are chained in one FIFO list per floor through {@link #nextSlots}, which also chains
+ * the free slots. The range of floors having a list grows on demand. One more list holds the slots
+ * without floor, so that no floor value has to be reserved for them.
+ */
+abstract class UserSlots {
+
+    static final int NO_SLOT = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Next slot in the list of each slot, or next free slot for free slots. */
+    int[] nextSlots;
+
+    private int firstFreeSlot = NO_SLOT;
+
+    /** Number of slots used at least once, the following slots having never been used. */
+    private int nbUsedSlots;
+
+    /** Floor of the first list. */
+    private int lowestFloor;
+
+    /**
+     * First and last slots of the list of each floor, indexed by {@code floor - lowestFloor}, the
+     * last index being the list of slots without floor.
+     */
+    private int[] firstSlots, lastSlots;
+
+    UserSlots(int lowerFloor, int higherFloor) {
+        nextSlots = new int[INITIAL_CAPACITY];
+        lowestFloor = lowerFloor;
+        firstSlots = newLists(Math.max(1, higherFloor - lowerFloor + 1) + 1);
+        lastSlots = newLists(firstSlots.length);
+    }
+
+    /**
+     * Creates a copy of the provided slots, to be completed by the copy of the fields of users.
+     */
+    UserSlots(UserSlots slots) {
+        nextSlots = slots.nextSlots.clone();
+        firstFreeSlot = slots.firstFreeSlot;
+        nbUsedSlots = slots.nbUsedSlots;
+        lowestFloor = slots.lowestFloor;
+        firstSlots = slots.firstSlots.clone();
+        lastSlots = slots.lastSlots.clone();
+    }
+
+    private static int[] newLists(int nbFloors) {
+        int[] lists = new int[nbFloors];
+        Arrays.fill(lists, NO_SLOT);
+        return lists;
+    }
+
+    /**
+     * Returns a free slot, growing the arrays if there is none.
+     */
+    final int allocate() {
+        int slot = firstFreeSlot;
+        if (slot != NO_SLOT) {
+            firstFreeSlot = nextSlots[slot];
+        } else {
+            if (nbUsedSlots == nextSlots.length) {
+                resize(nextSlots.length * 2);
+            }
+            slot = nbUsedSlots++;
+        }
+        nextSlots[slot] = NO_SLOT;
+        return slot;
+    }
+
+    /**
+     * Frees the provided slot, which must not be in a list. Its fields are kept until the slot is
+     * allocated again.
+     */
+    final void release(int slot) {
+        nextSlots[slot] = firstFreeSlot;
+        firstFreeSlot = slot;
+    }
+
+    /**
+     * Resizes the arrays of fields to the provided capacity, subclasses resizing their own arrays.
+     */
+    void resize(int capacity) {
+        nextSlots = Arrays.copyOf(nextSlots, capacity);
+    }
+
+    /**
+     * Called when the range of floors grows, for subclasses keeping values per floor.
+     *
+     * @param shift
+     *            increase of the index of existing floors
+     * @param nbFloors
+     *            new number of floors
+     */
+    void floorsResized(int shift, int nbFloors) {
+        // nothing by default
+    }
+
+    /**
+     * Returns an array of the provided length with the values of the provided one, shifted.
+     */
+    static int[] resize(int[] values, int shift, int length) {
+        int[] resized = new int[length];
+        System.arraycopy(values, 0, resized, shift, values.length);
+        return resized;
+    }
+
+    int getLowestFloor() {
+        return lowestFloor;
+    }
+
+    int getHighestFloor() {
+        return lowestFloor + firstSlots.length - 2;
+    }
+
+    private int withoutFloorIndex() {
+        return firstSlots.length - 1;
+    }
+
+    /**
+     * Returns the index of the provided floor in arrays per floor, growing them if needed.
+     */
+    final int floorIndex(int floor) {
+        int highestFloor = getHighestFloor();
+        if (floor < lowestFloor || floor > highestFloor) {
+            int newLowestFloor = Math.min(floor, lowestFloor);
+            int nbFloors = Math.max(floor, highestFloor) - newLowestFloor + 1;
+            int shift = lowestFloor - newLowestFloor;
+            int[] newFirstSlots = newLists(nbFloors + 1);
+            int[] newLastSlots = newLists(nbFloors + 1);
+            int oldNbFloors = withoutFloorIndex();
+            System.arraycopy(firstSlots, 0, newFirstSlots, shift, oldNbFloors);
+            System.arraycopy(lastSlots, 0, newLastSlots, shift, oldNbFloors);
+            newFirstSlots[nbFloors] = firstSlots[oldNbFloors];
+            newLastSlots[nbFloors] = lastSlots[oldNbFloors];
+            firstSlots = newFirstSlots;
+            lastSlots = newLastSlots;
+            lowestFloor = newLowestFloor;
+            floorsResized(shift, nbFloors);
+        }
+        return floor - lowestFloor;
+    }
+
+    /**
+     * Returns true if the provided floor is in the range of floors, without growing it.
+     */
+    final boolean isKnownFloor(int floor) {
+        return floor >= lowestFloor && floor <= getHighestFloor();
+    }
+
+    /**
+     * Returns the first slot of the list of the provided floor, or {@code NO_SLOT}.
+     */
+    final int firstSlot(int floor) {
+        return isKnownFloor(floor) ? firstSlots[floor - lowestFloor] : NO_SLOT;
+    }
+
+    /**
+     * Returns the first slot of the list of slots without floor, or {@code NO_SLOT}.
+     */
+    final int firstSlotWithoutFloor() {
+        return firstSlots[withoutFloorIndex()];
+    }
+
+    final void addLast(int floor, int slot) {
+        addLastAt(floorIndex(floor), slot);
+    }
+
+    final void addLastWithoutFloor(int slot) {
+        addLastAt(withoutFloorIndex(), slot);
+    }
+
+    private void addLastAt(int index, int slot) {
+        nextSlots[slot] = NO_SLOT;
+        if (lastSlots[index] == NO_SLOT) {
+            firstSlots[index] = slot;
+        } else {
+            nextSlots[lastSlots[index]] = slot;
+        }
+        lastSlots[index] = slot;
+    }
+
+    /**
+     * Removes the first slot of the list of the provided floor.
+     *
+     * @return the removed slot, or {@code NO_SLOT} if the list is empty
+     */
+    final int pollFirst(int floor) {
+        int slot = firstSlot(floor);
+        if (slot != NO_SLOT) {
+            remove(floor, NO_SLOT, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Removes the provided slot from the list of the provided floor.
+     *
+     * @param previousSlot
+     *            slot before the removed one in the list, or {@code NO_SLOT} if it is the first
+     */
+    final void remove(int floor, int previousSlot, int slot) {
+        removeAt(floor - lowestFloor, previousSlot, slot);
+    }
+
+    /**
+     * Removes the provided slot from the list of slots without floor.
+     *
+     * @see #remove(int, int, int)
+     */
+    final void removeWithoutFloor(int previousSlot, int slot) {
+        removeAt(withoutFloorIndex(), previousSlot, slot);
+    }
+
+    private void removeAt(int index, int previousSlot, int slot) {
+        int nextSlot = nextSlots[slot];
+        if (previousSlot == NO_SLOT) {
+            firstSlots[index] = nextSlot;
+        } else {
+            nextSlots[previousSlot] = nextSlot;
+        }
+        if (nextSlot == NO_SLOT) {
+            lastSlots[index] = previousSlot;
+        }
+        nextSlots[slot] = NO_SLOT;
+    }
+}
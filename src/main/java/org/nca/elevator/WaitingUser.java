@@ -1,16 +1,54 @@
 package org.nca.elevator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.nca.elevator.Elevator.Direction;
 
 class WaitingUser implements Comparable<WaitingUser> {
     private final int floor;
     private final Direction direction;
-    private int ticks;
+    private final Clock clock;
+    /** Clock value when this user started to wait. */
+    private final long creationTick;
 
     public WaitingUser(int floor, Direction dir) {
+        this(floor, dir, new Clock());
+    }
+
+    public WaitingUser(int floor, Direction dir, Clock clock) {
+        this(floor, dir, clock, clock.getTicks());
+    }
+
+    WaitingUser(int floor, Direction dir, Clock clock, long creationTick) {
         this.floor = floor;
         this.direction = dir;
-        ticks = 0;
+        this.clock = clock;
+        this.creationTick = creationTick;
+    }
+
+    /**
+     * Returns a copy of this user, following the provided clock.
+     */
+    WaitingUser copy(Clock clock) {
+        return new WaitingUser(floor, direction, clock, creationTick);
+    }
+
+    /**
+     * Writes this user, to be read by {@link #readFrom(DataInput, Clock)}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(floor);
+        out.writeByte(direction.ordinal());
+        out.writeLong(creationTick);
+    }
+
+    /**
+     * Reads a user written by {@link #writeTo(DataOutput)}, following the provided clock.
+     */
+    static WaitingUser readFrom(DataInput in, Clock clock) throws IOException {
+        return new WaitingUser(in.readInt(), Direction.values()[in.readByte()], clock, in.readLong());
     }
 
     public int getFloor() {
@@ -31,21 +69,14 @@ class WaitingUser implements Comparable<WaitingUser> {
 
     /** Returns the maximum number of points that can be earned if user is taken to target floor directly */
     public  int estimateMaximumPointsToEarn() {
-      return Score.maxPointsToEarnWhenWaiting(ticks);
+      return Score.maxPointsToEarnWhenWaiting(getTicks());
     }
 
     /**
      * Returns the number of ticks this user has waited.
      */
     public int getTicks() {
-        return ticks;
-    }
-
-    /**
-     * Receives a tick.
-     */
-    public void tick() {
-        ticks++;
+        return (int) (clock.getTicks() - creationTick);
     }
 
     @Override
@@ -53,12 +84,19 @@ class WaitingUser implements Comparable<WaitingUser> {
         int f = this.floor - other.floor;
         if (f != 0)
             return f;
-        return this.ticks - other.ticks;
+        return this.getTicks() - other.getTicks();
+    }
+
+    /**
+     * Appends the description of this user to the provided builder.
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        return builder.append(floor).append('/').append(direction.toShortString()).append(" T=").append(getTicks());
     }
 
     @Override
     public String toString() {
-        return floor + "/" + direction.toShortString() + " T=" + ticks;
+        return appendTo(new StringBuilder()).toString();
     }
 
     @Override
@@ -67,7 +105,7 @@ class WaitingUser implements Comparable<WaitingUser> {
         int result = 1;
         result = prime * result + ((direction == null) ? 0 : direction.hashCode());
         result = prime * result + floor;
-        result = prime * result + ticks;
+        result = prime * result + getTicks();
         return result;
     }
 
@@ -84,7 +122,7 @@ class WaitingUser implements Comparable<WaitingUser> {
             return false;
         if (floor != other.floor)
             return false;
-        if (ticks != other.ticks)
+        if (getTicks() != other.getTicks())
             return false;
         return true;
     }
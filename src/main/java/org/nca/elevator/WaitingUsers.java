@@ -1,8 +1,12 @@
 package org.nca.elevator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Comparator;
 import java.util.List;
 
 import org.nca.elevator.Elevator.Direction;
@@ -10,49 +14,251 @@ import org.nca.elevator.Elevator.Optimization;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-class WaitingUsers {
+/**
+ * Users waiting for the elevator, indexed by floor.
+ * <p>
+ * Users are kept in per-floor lists of {@link UserSlots}, with counters per floor and direction,
+ * and range queries over floors are answered by {@link FloorCounter}s, so that no query needs to
+ * scan all users. Adding a user or making it enter the elevator allocates nothing.
+ */
+class WaitingUsers extends UserSlots {
 
     static final Logger logger = LoggerFactory.getLogger(WaitingUsers.class);
 
-    private List<WaitingUser> users = new ArrayList<WaitingUser>();
+    /** Diagnostics of the evaluation of users, called for each floor on each command. */
+    static final SampledLogger sampled = new SampledLogger(logger);
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Points state of a user which could not earn points when added. */
+    private static final byte WITHOUT_POINTS = 0;
+
+    /** Points state of a waiting user in the queue of users with points. */
+    private static final byte WAITING_WITH_POINTS = 1;
 
     /**
-     * Receives a tick.
+     * Points state of a user which has entered while in the queue of users with points, its slot
+     * being released when it leaves the queue.
      */
-    public void tick() {
-        for (WaitingUser user : users) {
-            user.tick();
-        }
+    private static final byte ENTERED_WITH_POINTS = 2;
+
+    private int[] floors;
+
+    private byte[] directions;
+
+    /** Clock value when each user started to wait. */
+    private long[] creationTicks;
+
+    private byte[] pointsStates;
+
+    /**
+     * Next slot in the queue of users that could earn points when added, in arrival order. As all
+     * users share the same clock, users lose their points in this order.
+     */
+    private int[] nextSlotsWithPoints;
+
+    private int firstSlotWithPoints = NO_SLOT, lastSlotWithPoints = NO_SLOT;
+
+    /** Number of users per floor and direction, indexed by {@link #counterIndex(int, int)}. */
+    private int[] nbUsersPerDirection;
+
+    /** Number of users that can still earn points per floor and direction. */
+    private int[] nbUsersWithPointsPerDirection;
+
+    /** Number of users per floor. */
+    private final FloorCounter usersCounter;
+
+    /** Number of users that can still earn points per floor. */
+    private final FloorCounter usersWithPointsCounter;
+
+    private int nbUsers;
+
+    /** Total of ticks of users, minus the current clock value for each user. */
+    private long ticksOffset;
+
+    private final Clock clock;
+
+    /** Slots of the users of a floor being appended, reused by {@link #appendTo}. */
+    private int[] appendedSlots = new int[0];
+
+    public WaitingUsers() {
+        this(new Clock(), 0, 19);
+    }
+
+    public WaitingUsers(Clock clock, int lowerFloor, int higherFloor) {
+        super(lowerFloor, higherFloor);
+        this.clock = clock;
+        int capacity = nextSlots.length;
+        floors = new int[capacity];
+        directions = new byte[capacity];
+        creationTicks = new long[capacity];
+        pointsStates = new byte[capacity];
+        nextSlotsWithPoints = new int[capacity];
+        int nbFloors = getHighestFloor() - getLowestFloor() + 1;
+        nbUsersPerDirection = new int[nbFloors * DIRECTIONS.length];
+        nbUsersWithPointsPerDirection = new int[nbFloors * DIRECTIONS.length];
+        usersCounter = new FloorCounter(lowerFloor, higherFloor);
+        usersWithPointsCounter = new FloorCounter(lowerFloor, higherFloor);
+    }
+
+    private WaitingUsers(WaitingUsers users, Clock clock) {
+        super(users);
+        this.clock = clock;
+        floors = users.floors.clone();
+        directions = users.directions.clone();
+        creationTicks = users.creationTicks.clone();
+        pointsStates = users.pointsStates.clone();
+        nextSlotsWithPoints = users.nextSlotsWithPoints.clone();
+        firstSlotWithPoints = users.firstSlotWithPoints;
+        lastSlotWithPoints = users.lastSlotWithPoints;
+        nbUsersPerDirection = users.nbUsersPerDirection.clone();
+        nbUsersWithPointsPerDirection = users.nbUsersWithPointsPerDirection.clone();
+        usersCounter = new FloorCounter(users.usersCounter);
+        usersWithPointsCounter = new FloorCounter(users.usersWithPointsCounter);
+        nbUsers = users.nbUsers;
+        ticksOffset = users.ticksOffset;
+    }
+
+    @Override
+    void resize(int capacity) {
+        super.resize(capacity);
+        floors = Arrays.copyOf(floors, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        creationTicks = Arrays.copyOf(creationTicks, capacity);
+        pointsStates = Arrays.copyOf(pointsStates, capacity);
+        nextSlotsWithPoints = Arrays.copyOf(nextSlotsWithPoints, capacity);
+    }
+
+    @Override
+    void floorsResized(int shift, int nbFloors) {
+        nbUsersPerDirection = resize(nbUsersPerDirection, shift * DIRECTIONS.length, nbFloors * DIRECTIONS.length);
+        nbUsersWithPointsPerDirection = resize(nbUsersWithPointsPerDirection, shift * DIRECTIONS.length, nbFloors
+                * DIRECTIONS.length);
+    }
+
+    /**
+     * Returns the index of the counters of the provided floor, which must be known, and direction.
+     */
+    private int counterIndex(int floor, int direction) {
+        return (floor - getLowestFloor()) * DIRECTIONS.length + direction;
+    }
+
+    private int getTicks(int slot) {
+        return (int) (clock.getTicks() - creationTicks[slot]);
+    }
+
+    private WaitingUser getUser(int slot) {
+        return new WaitingUser(floors[slot], DIRECTIONS[directions[slot]], clock, creationTicks[slot]);
     }
 
     public void add(WaitingUser user) {
-        users.add(user);
+        add(user.getFloor(), user.getDirection(), clock.getTicks() - user.getTicks());
     }
 
-    public WaitingUser popUser(int floor) {
-        WaitingUser selectedUser = null;
-        Iterator<WaitingUser> it = users.iterator();
-        while (it.hasNext()) {
-            WaitingUser user = it.next();
-            if (user.isWaitingAt(floor)) {
-                selectedUser = user;
-                it.remove();
+    /**
+     * Adds a user starting to wait now.
+     */
+    public void add(int floor, Direction direction) {
+        add(floor, direction, clock.getTicks());
+    }
+
+    private void add(int floor, Direction direction, long creationTick) {
+        int slot = allocate();
+        floors[slot] = floor;
+        directions[slot] = (byte) direction.ordinal();
+        creationTicks[slot] = creationTick;
+        addLast(floor, slot);
+        int index = counterIndex(floor, direction.ordinal());
+        nbUsersPerDirection[index]++;
+        usersCounter.add(floor, 1);
+        if (Score.maxPointsToEarnWhenWaiting(getTicks(slot)) > 0) {
+            nbUsersWithPointsPerDirection[index]++;
+            usersWithPointsCounter.add(floor, 1);
+            pointsStates[slot] = WAITING_WITH_POINTS;
+            nextSlotsWithPoints[slot] = NO_SLOT;
+            if (lastSlotWithPoints == NO_SLOT) {
+                firstSlotWithPoints = slot;
+            } else {
+                nextSlotsWithPoints[lastSlotWithPoints] = slot;
             }
+            lastSlotWithPoints = slot;
+        } else {
+            pointsStates[slot] = WITHOUT_POINTS;
         }
-        if (selectedUser == null) {
+        nbUsers++;
+        ticksOffset -= creationTick;
+    }
+
+    /**
+     * Removes the user waiting for the longest time at the provided floor.
+     */
+    public WaitingUser popUser(int floor) {
+        int slot = popSlot(floor);
+        if (slot == NO_SLOT) {
             logger.warn(
                     "Unable to find first waiting user for floor {}, providing one without direction", floor);
-            selectedUser = new WaitingUser(floor, Direction.NONE);
+            return new WaitingUser(floor, Direction.NONE, clock);
+        }
+        WaitingUser user = getUser(slot);
+        releasePopped(slot);
+        return user;
+    }
+
+    /**
+     * Makes the user waiting for the longest time at the provided floor enter the provided elevator
+     * users, without creating any object.
+     */
+    void moveUserTo(int floor, ElevatorUsers elevatorUsers) {
+        int slot = popSlot(floor);
+        if (slot == NO_SLOT) {
+            logger.warn(
+                    "Unable to find first waiting user for floor {}, providing one without direction", floor);
+            elevatorUsers.userEntered(floor, Direction.NONE, 0);
+            return;
+        }
+        elevatorUsers.userEntered(floor, DIRECTIONS[directions[slot]], getTicks(slot));
+        releasePopped(slot);
+    }
+
+    /**
+     * Removes the user waiting for the longest time at the provided floor, its slot being kept
+     * until {@link #releasePopped(int)}.
+     *
+     * @return the slot of the removed user, or {@code NO_SLOT} if no user waits at this floor
+     */
+    private int popSlot(int floor) {
+        expireUsersWithoutPoints();
+        int slot = pollFirst(floor);
+        if (slot == NO_SLOT) {
+            return NO_SLOT;
+        }
+        int index = counterIndex(floor, directions[slot]);
+        nbUsersPerDirection[index]--;
+        usersCounter.add(floor, -1);
+        if (pointsStates[slot] == WAITING_WITH_POINTS) {
+            // user is still in the queue of users with points, it is released when expired
+            nbUsersWithPointsPerDirection[index]--;
+            usersWithPointsCounter.add(floor, -1);
+            pointsStates[slot] = ENTERED_WITH_POINTS;
+        }
+        nbUsers--;
+        ticksOffset += creationTicks[slot];
+        return slot;
+    }
+
+    private void releasePopped(int slot) {
+        if (pointsStates[slot] != ENTERED_WITH_POINTS) {
+            release(slot);
         }
-        return selectedUser;
     }
 
     public int nbUsersToward(Direction direction, int currentFloor, int higherFloor, Optimization optimization) {
         int min = direction == Direction.UP ? currentFloor + 1 : 0;
         int max = direction == Direction.UP ? higherFloor : currentFloor - 1;
-        int count = 0;
-        for (int floor = min; floor <= max; floor++) {
-            count += nbUsersForFloor(floor, optimization);
+        int count = usersCounter.count(min, max);
+        if (optimization == Optimization.POINTS) {
+            expireUsersWithoutPoints();
+            count += usersWithPointsCounter.count(min, max);
         }
         return count;
     }
@@ -60,11 +266,13 @@ class WaitingUsers {
     public int scoreToward(Direction direction, int currentFloor, int higherFloor) {
         int min = direction == Direction.UP ? currentFloor + 1 : 0;
         int max = direction == Direction.UP ? higherFloor : currentFloor - 1;
-        int score = 0;
-        for (int floor = min; floor <= max; floor++) {
-            score += (higherFloor - Math.abs(currentFloor - floor)) * nbUsersForFloor(floor, Optimization.NONE);
-        }
-        return score;
+        // sum of (higherFloor - |currentFloor - floor|) * nbUsers(floor) over the range
+        long count = usersCounter.count(min, max);
+        long floorsSum = usersCounter.weightedCount(min, max);
+        long score = direction == Direction.UP
+                ? (higherFloor + currentFloor) * count - floorsSum
+                : (higherFloor - currentFloor) * count + floorsSum;
+        return (int) score;
     }
 
     public boolean hasUserToward(Direction direction, int currentFloor, int higherFloor) {
@@ -76,69 +284,167 @@ class WaitingUsers {
     }
 
     public boolean hasUserForFloor(int floor) {
-      return nbUsersForFloor(floor, Optimization.NONE) > 0;
+      return usersCounter.count(floor) > 0;
     }
 
     public int nbUsersForFloorInDirection(int floor, Direction dir, Optimization optimization) {
-      int number = 0;
-      for (WaitingUser user : users) {
-          boolean hasCompatibleDirection = dir==Direction.NONE || user.hasCompatibleDirection(dir);
-          if (user.isWaitingAt(floor) && hasCompatibleDirection) {
-              switch (optimization) {
-              case POINTS:
-                  if (user.estimateMaximumPointsToEarn() > 0) {
-                      number++;
-                  } else {
-                      logger.info("Ignoring waiting user because no points to earn");
-                  }
-              case NONE:
-              default:
-                  number++;
-              }
+      if (!isKnownFloor(floor)) {
+          return 0;
+      }
+      int index = counterIndex(floor, 0);
+      int number = countInDirection(nbUsersPerDirection, index, dir);
+      if (optimization == Optimization.POINTS) {
+          expireUsersWithoutPoints();
+          int numberWithPoints = countInDirection(nbUsersWithPointsPerDirection, index, dir);
+          if (numberWithPoints < number) {
+              sampled.debug("Ignoring {} waiting users because no points to earn", number - numberWithPoints);
           }
+          number += numberWithPoints;
       }
       return number;
    }
 
+    private int countInDirection(int[] counters, int index, Direction dir) {
+        if (dir == Direction.NONE) {
+            int total = 0;
+            for (int i = 0; i < DIRECTIONS.length; i++) {
+                total += counters[index + i];
+            }
+            return total;
+        }
+        return counters[index + dir.ordinal()] + counters[index + Direction.NONE.ordinal()];
+    }
+
     public int nbUsersForFloor(int floor, Optimization optimization) {
         return nbUsersForFloorInDirection(floor, Direction.NONE, optimization);
     }
 
     public int nbUsers() {
-      return users.size();
+      return nbUsers;
     }
 
     public int getTotalTicks() {
-        int total = 0;
-        for (WaitingUser user : users) {
-            total += user.getTicks();
-        }
-        return total;
+        return (int) (nbUsers * clock.getTicks() + ticksOffset);
     }
 
     public int getAverageTicksPerUser() {
-        return getTotalTicks() / (users.isEmpty() ? 1 : users.size());
+        return getTotalTicks() / (nbUsers == 0 ? 1 : nbUsers);
+    }
+
+    /**
+     * Removes from the counters of users with points the users that have lost all their points.
+     * <p>
+     * Called lazily before reading these counters, each user being expired only once.
+     */
+    private void expireUsersWithoutPoints() {
+        while (firstSlotWithPoints != NO_SLOT
+                && Score.maxPointsToEarnWhenWaiting(getTicks(firstSlotWithPoints)) <= 0) {
+            int slot = firstSlotWithPoints;
+            firstSlotWithPoints = nextSlotsWithPoints[slot];
+            if (firstSlotWithPoints == NO_SLOT) {
+                lastSlotWithPoints = NO_SLOT;
+            }
+            if (pointsStates[slot] == ENTERED_WITH_POINTS) {
+                release(slot);
+            } else {
+                nbUsersWithPointsPerDirection[counterIndex(floors[slot], directions[slot])]--;
+                usersWithPointsCounter.add(floors[slot], -1);
+            }
+            pointsStates[slot] = WITHOUT_POINTS;
+        }
+    }
+
+    /**
+     * Returns a copy of these users, following the provided clock.
+     */
+    WaitingUsers copy(Clock clock) {
+        return new WaitingUsers(this, clock);
+    }
+
+    /**
+     * Returns the users in arrival order, the order in which users with points must be added.
+     */
+    private List<WaitingUser> usersInArrivalOrder() {
+        List<WaitingUser> users = new ArrayList<WaitingUser>(nbUsers);
+        for (int floor = getLowestFloor(); floor <= getHighestFloor(); floor++) {
+            for (int slot = firstSlot(floor); slot != NO_SLOT; slot = nextSlots[slot]) {
+                users.add(getUser(slot));
+            }
+        }
+        Collections.sort(users, new Comparator<WaitingUser>() {
+            @Override
+            public int compare(WaitingUser u1, WaitingUser u2) {
+                return u2.getTicks() - u1.getTicks();
+            }
+        });
+        return users;
     }
 
-    public String toString(String separator, String[] boundaries) {
-        StringBuilder builder = new StringBuilder();
-        Collections.sort(users);
-        for (WaitingUser user : users) {
-            if (builder.length() > 0)
-                builder.append(separator);
-            builder.append(user);
+    /**
+     * Writes these users, to be read by {@link #readFrom(DataInput, Clock, int, int)}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(nbUsers);
+        for (WaitingUser user : usersInArrivalOrder()) {
+            user.writeTo(out);
         }
-        builder.insert(0, "Nb=" + users.size() + " " + boundaries[0]);
-        builder.append(boundaries[1]);
-        return builder.toString();
     }
 
-    public String toHTMLString() {
-        return toString("<br/>", new String[]{ "<br/>", ""});
+    /**
+     * Reads users written by {@link #writeTo(DataOutput)}, following the provided clock.
+     */
+    static WaitingUsers readFrom(DataInput in, Clock clock, int lowerFloor, int higherFloor) throws IOException {
+        WaitingUsers users = new WaitingUsers(clock, lowerFloor, higherFloor);
+        for (int i = in.readInt(); i > 0; i--) {
+            users.add(WaitingUser.readFrom(in, clock));
+        }
+        return users;
+    }
+
+    /**
+     * Adds all users to the provided planning state.
+     */
+    void copyTo(PlanningState state) {
+        for (int floor = getLowestFloor(); floor <= getHighestFloor(); floor++) {
+            for (int slot = firstSlot(floor); slot != NO_SLOT; slot = nextSlots[slot]) {
+                state.addWaitingUser(floor, getTicks(slot));
+            }
+        }
+    }
+
+    /**
+     * Appends the description of users to the provided builder, ordered by floor then by waiting
+     * ticks.
+     */
+    public StringBuilder appendTo(StringBuilder builder, String separator, String prefix, String suffix) {
+        builder.append("Nb=").append(nbUsers).append(' ').append(prefix);
+        boolean first = true;
+        for (int floor = getLowestFloor(); floor <= getHighestFloor(); floor++) {
+            // users are kept in arrival order, so the last one has the least ticks
+            int nbSlots = usersCounter.count(floor);
+            if (appendedSlots.length < nbSlots) {
+                appendedSlots = new int[Math.max(nbSlots, appendedSlots.length * 2)];
+            }
+            int nbAppended = 0;
+            for (int slot = firstSlot(floor); slot != NO_SLOT; slot = nextSlots[slot]) {
+                appendedSlots[nbAppended++] = slot;
+            }
+            for (int i = nbAppended - 1; i >= 0; i--) {
+                if (!first) {
+                    builder.append(separator);
+                }
+                // as WaitingUser.appendTo does, read from the slots
+                int slot = appendedSlots[i];
+                builder.append(floors[slot]).append('/').append(DIRECTIONS[directions[slot]].toShortString())
+                        .append(" T=").append(getTicks(slot));
+                first = false;
+            }
+        }
+        return builder.append(suffix);
     }
 
     @Override
     public String toString() {
-        return toString(" | ", new String[]{ "[", "]"});
+        return appendTo(new StringBuilder(), " | ", "[", "]").toString();
     }
-}
\ No newline at end of file
+}
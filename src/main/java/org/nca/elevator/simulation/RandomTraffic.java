@@ -0,0 +1,59 @@
+package org.nca.elevator.simulation;
+
+import java.util.Random;
+
+/**
+ * Random traffic of a building, where most users enter or leave the building by the lower floor.
+ * <p>
+ * At each tick, a new user appears with the provided probability, as long as the building does not
+ * hold the maximum number of users. Half of the users start from the lower floor and go to another
+ * random floor, the others start from a random floor and go either to the lower floor or to another
+ * random floor.
+ */
+public class RandomTraffic implements TrafficGenerator {
+
+  private final Random random;
+  private final double probability;
+  private final int maxUsers;
+
+  /**
+   * @param seed
+   *          seed of the random generator, the same seed giving the same traffic
+   * @param probability
+   *          probability that a new user appears at each tick
+   * @param maxUsers
+   *          maximum number of users in the building at the same time
+   */
+  public RandomTraffic(long seed, double probability, int maxUsers) {
+    this.random = new Random(seed);
+    this.probability = probability;
+    this.maxUsers = maxUsers;
+  }
+
+  @Override
+  public void generate(long tick, Simulator simulator) {
+    if (simulator.nbUsers() >= maxUsers || random.nextDouble() >= probability) {
+      return;
+    }
+    int lowerFloor = simulator.getLowerFloor();
+    int higherFloor = simulator.getHigherFloor();
+    if (higherFloor == lowerFloor) {
+      return;
+    }
+    int floor = random.nextBoolean() ? lowerFloor : randomFloor(lowerFloor, higherFloor);
+    int floorToGo;
+    if (floor != lowerFloor && random.nextBoolean()) {
+      floorToGo = lowerFloor;
+    }
+    else {
+      do {
+        floorToGo = randomFloor(lowerFloor, higherFloor);
+      } while (floorToGo == floor);
+    }
+    simulator.newUser(floor, floorToGo);
+  }
+
+  private int randomFloor(int lowerFloor, int higherFloor) {
+    return lowerFloor + random.nextInt(higherFloor - lowerFloor + 1);
+  }
+}
@@ -0,0 +1,65 @@
+package org.nca.elevator.simulation;
+
+/**
+ * Result of a simulation.
+ */
+public class SimulationResult {
+
+  private final long ticks;
+  private final long score;
+  private final long nbUsersDone;
+  private final long totalWaitTicks;
+  private final long totalRideTicks;
+  private final long nbResets;
+  private final long durationNanos;
+
+  SimulationResult(long ticks, long score, long nbUsersDone, long totalWaitTicks, long totalRideTicks,
+      long nbResets, long durationNanos) {
+    this.ticks = ticks;
+    this.score = score;
+    this.nbUsersDone = nbUsersDone;
+    this.totalWaitTicks = totalWaitTicks;
+    this.totalRideTicks = totalRideTicks;
+    this.nbResets = nbResets;
+    this.durationNanos = durationNanos;
+  }
+
+  public long getTicks() {
+    return ticks;
+  }
+
+  /** Returns the total score, as computed by the game server. */
+  public long getScore() {
+    return score;
+  }
+
+  /** Returns the number of users taken to their floor. */
+  public long getNbUsersDone() {
+    return nbUsersDone;
+  }
+
+  /** Returns the average number of ticks users have waited before entering, for users done. */
+  public double getAverageWaitTicks() {
+    return nbUsersDone == 0 ? 0 : (double) totalWaitTicks / nbUsersDone;
+  }
+
+  /** Returns the average number of ticks users have spent in the elevator, for users done. */
+  public double getAverageRideTicks() {
+    return nbUsersDone == 0 ? 0 : (double) totalRideTicks / nbUsersDone;
+  }
+
+  /** Returns the number of resets due to invalid commands. */
+  public long getNbResets() {
+    return nbResets;
+  }
+
+  public double getTicksPerSecond() {
+    return durationNanos == 0 ? 0 : ticks * 1e9 / durationNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ticks=%d, score=%d, users=%d, wait=%.2f, ride=%.2f, resets=%d, ticks/s=%.0f", ticks,
+        score, nbUsersDone, getAverageWaitTicks(), getAverageRideTicks(), nbResets, getTicksPerSecond());
+  }
+}
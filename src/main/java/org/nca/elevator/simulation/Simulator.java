@@ -0,0 +1,245 @@
+package org.nca.elevator.simulation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.nca.elevator.Elevator;
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.Score;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.nca.elevator.strategy.Strategies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Headless simulation of a building, driving an elevator directly without HTTP, the way the
+ * code-elevator game server does.
+ * <p>
+ * On each tick, new users are generated and call the elevator, then the next command of the
+ * elevator is applied to the building. While the door is open, users wanting to go to the current
+ * floor exit, then users waiting at the current floor enter and request their floor, as long as the
+ * cabin is not full. An invalid command resets the elevator and costs {@code RESET_PENALTY} points.
+ * <p>
+ * A user earns the points computed by {@link Score#maxPointsToEarnInElevator(int, int, int, int)}
+ * when exiting, bounded between 0 and 20.
+ */
+public class Simulator {
+
+  static final Logger logger = LoggerFactory.getLogger(Simulator.class);
+
+  static final int RESET_PENALTY = 10;
+
+  private static final int MAX_POINTS = 20;
+
+  private final Elevator elevator;
+  private final TrafficGenerator traffic;
+  private final int lowerFloor, higherFloor, cabinSize;
+
+  private int floor;
+  private boolean doorOpen;
+  private long tick;
+
+  /** Waiting users, per floor. */
+  private final List<ArrayDeque<User>> waitingUsers;
+  /** Users in the cabin. */
+  private final List<User> cabinUsers = new ArrayList<User>();
+  private int nbUsers;
+
+  private long score, nbUsersDone, totalWaitTicks, totalRideTicks, nbResets;
+
+  private static class User {
+    final int floor;
+    final int floorToGo;
+    final long creationTick;
+    long entryTick;
+
+    User(int floor, int floorToGo, long creationTick) {
+      this.floor = floor;
+      this.floorToGo = floorToGo;
+      this.creationTick = creationTick;
+    }
+  }
+
+  public Simulator(Elevator elevator, TrafficGenerator traffic, int lowerFloor, int higherFloor, int cabinSize) {
+    if (lowerFloor > 0 || higherFloor < 0) {
+      // the elevator always starts from floor 0
+      throw new IllegalArgumentException("Floor 0 must be between lower floor " + lowerFloor
+          + " and higher floor " + higherFloor);
+    }
+    this.elevator = elevator;
+    this.traffic = traffic;
+    this.lowerFloor = lowerFloor;
+    this.higherFloor = higherFloor;
+    this.cabinSize = cabinSize;
+    waitingUsers = new ArrayList<ArrayDeque<User>>();
+    for (int i = lowerFloor; i <= higherFloor; i++) {
+      waitingUsers.add(new ArrayDeque<User>());
+    }
+    reset();
+  }
+
+  public int getLowerFloor() {
+    return lowerFloor;
+  }
+
+  public int getHigherFloor() {
+    return higherFloor;
+  }
+
+  /**
+   * Returns the number of users in the building, waiting or in the cabin.
+   */
+  public int nbUsers() {
+    return nbUsers;
+  }
+
+  /**
+   * Adds a user waiting at the provided floor to go to another floor, who calls the elevator.
+   */
+  public void newUser(int atFloor, int floorToGo) {
+    if (atFloor == floorToGo || !isValidFloor(atFloor) || !isValidFloor(floorToGo)) {
+      throw new IllegalArgumentException("Invalid user from floor " + atFloor + " to floor " + floorToGo);
+    }
+    waitingUsers.get(atFloor - lowerFloor).addLast(new User(atFloor, floorToGo, tick));
+    nbUsers++;
+    elevator.call(atFloor, floorToGo > atFloor ? "UP" : "DOWN");
+  }
+
+  /**
+   * Runs the simulation for the provided number of ticks.
+   */
+  public SimulationResult run(long ticks) {
+    long start = System.nanoTime();
+    for (long i = 0; i < ticks; i++) {
+      tick();
+    }
+    return new SimulationResult(tick, score, nbUsersDone, totalWaitTicks, totalRideTicks, nbResets,
+        System.nanoTime() - start);
+  }
+
+  private void tick() {
+    traffic.generate(tick, this);
+    Command command = elevator.nextCommand();
+    if (apply(command)) {
+      if (doorOpen) {
+        exitUsers();
+        enterUsers();
+      }
+    }
+    else {
+      logger.debug("Invalid command {} at floor {} with door open {}, resetting", command, floor, doorOpen);
+      score -= RESET_PENALTY;
+      nbResets++;
+      reset();
+    }
+    tick++;
+  }
+
+  /**
+   * Applies the command to the building.
+   *
+   * @return false if the command is invalid in the current state
+   */
+  private boolean apply(Command command) {
+    switch (command) {
+    case UP:
+      if (doorOpen || floor == higherFloor) {
+        return false;
+      }
+      floor++;
+      return true;
+    case DOWN:
+      if (doorOpen || floor == lowerFloor) {
+        return false;
+      }
+      floor--;
+      return true;
+    case OPEN:
+      if (doorOpen) {
+        return false;
+      }
+      doorOpen = true;
+      return true;
+    case CLOSE:
+      if (!doorOpen) {
+        return false;
+      }
+      doorOpen = false;
+      return true;
+    case NOTHING:
+    default:
+      return true;
+    }
+  }
+
+  private void exitUsers() {
+    Iterator<User> it = cabinUsers.iterator();
+    while (it.hasNext()) {
+      User user = it.next();
+      if (user.floorToGo == floor) {
+        it.remove();
+        nbUsers--;
+        elevator.userHasExited();
+        int waitTicks = (int) (user.entryTick - user.creationTick);
+        int rideTicks = (int) (tick - user.entryTick);
+        int points = Score.maxPointsToEarnInElevator(user.floor, user.floorToGo, waitTicks, rideTicks);
+        score += Math.max(0, Math.min(MAX_POINTS, points));
+        nbUsersDone++;
+        totalWaitTicks += waitTicks;
+        totalRideTicks += rideTicks;
+      }
+    }
+  }
+
+  private void enterUsers() {
+    ArrayDeque<User> users = waitingUsers.get(floor - lowerFloor);
+    while (!users.isEmpty() && cabinUsers.size() < cabinSize) {
+      User user = users.pollFirst();
+      user.entryTick = tick;
+      cabinUsers.add(user);
+      elevator.userHasEntered();
+      elevator.go(user.floorToGo);
+    }
+  }
+
+  private void reset() {
+    for (ArrayDeque<User> users : waitingUsers) {
+      users.clear();
+    }
+    cabinUsers.clear();
+    nbUsers = 0;
+    floor = 0;
+    doorOpen = false;
+    elevator.reset(lowerFloor, higherFloor, cabinSize);
+  }
+
+  private boolean isValidFloor(int floor) {
+    return floor >= lowerFloor && floor <= higherFloor;
+  }
+
+  /**
+   * Runs a simulation, with args : strategy [optimization] [lowerFloor higherFloor cabinSize] [ticks]
+   * [seed].
+   */
+  public static void main(String[] args) throws Exception {
+    // logging of each command would dominate the simulation
+    java.util.logging.Logger.getLogger("").setLevel(Level.WARNING);
+
+    String strategy = args.length > 0 ? args[0] : "ClassicStrategy";
+    Optimization optimization = Optimization.valueOf(args.length > 1 ? args[1] : "NONE");
+    int lowerFloor = args.length > 4 ? Integer.valueOf(args[2]) : 0;
+    int higherFloor = args.length > 4 ? Integer.valueOf(args[3]) : 19;
+    int cabinSize = args.length > 4 ? Integer.valueOf(args[4]) : 30;
+    long ticks = args.length > 5 ? Long.valueOf(args[5]) : 1000000;
+    long seed = args.length > 6 ? Long.valueOf(args[6]) : 42;
+
+    ElevatorStrategy elevatorStrategy = Strategies.newStrategy(Strategies.PACKAGE + "." + strategy);
+    Simulator simulator = new Simulator(new Elevator(elevatorStrategy, optimization), new RandomTraffic(seed, 0.5,
+        (higherFloor - lowerFloor + 1) * 2), lowerFloor, higherFloor, cabinSize);
+    System.out.println(strategy + " " + optimization + ": " + simulator.run(ticks));
+  }
+}
@@ -0,0 +1,274 @@
+package org.nca.elevator.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+
+import org.nca.elevator.Elevator;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.nca.elevator.strategy.Strategies;
+
+/**
+ * Tournament between strategies : each strategy, with each optimization, is simulated on each
+ * building with each traffic seed, and strategies are ranked by total score.
+ * <p>
+ * Simulations are independent, each one using its own elevator, and run in parallel on all cores
+ * in a fork/join pool.
+ */
+public class Tournament {
+
+  static final String STRATEGY_PACKAGE = Strategies.PACKAGE;
+
+  /** Building on which strategies are simulated, as provided by a reset of the game server. */
+  public static class Building {
+    final int lowerFloor, higherFloor, cabinSize;
+
+    public Building(int lowerFloor, int higherFloor, int cabinSize) {
+      this.lowerFloor = lowerFloor;
+      this.higherFloor = higherFloor;
+      this.cabinSize = cabinSize;
+    }
+
+    @Override
+    public String toString() {
+      return lowerFloor + ".." + higherFloor + "/" + cabinSize;
+    }
+  }
+
+  /** Results of a strategy with an optimization, over all buildings and seeds. */
+  public static class Entry {
+    final Class<? extends ElevatorStrategy> strategy;
+    final Optimization optimization;
+    long score, nbUsersDone, nbResets, ticks;
+    double totalWaitTicks, totalRideTicks;
+
+    Entry(Class<? extends ElevatorStrategy> strategy, Optimization optimization) {
+      this.strategy = strategy;
+      this.optimization = optimization;
+    }
+
+    void add(SimulationResult result) {
+      score += result.getScore();
+      nbUsersDone += result.getNbUsersDone();
+      nbResets += result.getNbResets();
+      ticks += result.getTicks();
+      totalWaitTicks += result.getAverageWaitTicks() * result.getNbUsersDone();
+      totalRideTicks += result.getAverageRideTicks() * result.getNbUsersDone();
+    }
+
+    public Class<? extends ElevatorStrategy> getStrategy() {
+      return strategy;
+    }
+
+    public Optimization getOptimization() {
+      return optimization;
+    }
+
+    public long getScore() {
+      return score;
+    }
+
+    public long getNbResets() {
+      return nbResets;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-20s %-7s score=%d, points/tick=%.3f, users=%d, wait=%.2f, ride=%.2f, resets=%d",
+          strategy.getSimpleName(), optimization, score, ticks == 0 ? 0 : (double) score / ticks, nbUsersDone,
+          nbUsersDone == 0 ? 0 : totalWaitTicks / nbUsersDone, nbUsersDone == 0 ? 0 : totalRideTicks / nbUsersDone,
+          nbResets);
+    }
+  }
+
+  private final List<Class<? extends ElevatorStrategy>> strategies;
+  private final List<Building> buildings;
+  private final long[] seeds;
+  private final long ticks;
+
+  public Tournament(List<Class<? extends ElevatorStrategy>> strategies, List<Building> buildings, long[] seeds,
+      long ticks) {
+    this.strategies = strategies;
+    this.buildings = buildings;
+    this.seeds = seeds;
+    this.ticks = ticks;
+  }
+
+  /**
+   * Runs all simulations in the provided pool, and returns the entries ranked by decreasing score.
+   */
+  public List<Entry> run(ForkJoinPool pool) {
+    final List<Entry> entries = new ArrayList<Entry>();
+    final List<Match> matches = new ArrayList<Match>();
+    for (Class<? extends ElevatorStrategy> strategy : strategies) {
+      for (Optimization optimization : Optimization.values()) {
+        Entry entry = new Entry(strategy, optimization);
+        entries.add(entry);
+        for (Building building : buildings) {
+          for (long seed : seeds) {
+            matches.add(new Match(entry, building, seed, ticks));
+          }
+        }
+      }
+    }
+    pool.invoke(new RecursiveAction() {
+      @Override
+      protected void compute() {
+        invokeAll(matches);
+      }
+    });
+    // aggregated once all matches are done, so entries are not shared between threads
+    for (Match match : matches) {
+      match.entry.add(match.join());
+    }
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry e1, Entry e2) {
+        return Long.compare(e2.score, e1.score);
+      }
+    });
+    return entries;
+  }
+
+  /** Simulation of a strategy with an optimization, on a building with a traffic seed. */
+  private static class Match extends RecursiveTask<SimulationResult> {
+    private static final long serialVersionUID = 1L;
+
+    final Entry entry;
+    final Building building;
+    final long seed;
+    final long ticks;
+
+    Match(Entry entry, Building building, long seed, long ticks) {
+      this.entry = entry;
+      this.building = building;
+      this.seed = seed;
+      this.ticks = ticks;
+    }
+
+    @Override
+    protected SimulationResult compute() {
+      try {
+        Elevator elevator = new Elevator(Strategies.newStrategy(entry.strategy), entry.optimization);
+        int nbFloors = building.higherFloor - building.lowerFloor + 1;
+        Simulator simulator = new Simulator(elevator, new RandomTraffic(seed, 0.5, nbFloors * 2),
+            building.lowerFloor, building.higherFloor, building.cabinSize);
+        return simulator.run(ticks);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Unable to create strategy " + entry.strategy, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the concrete strategies of the strategy package, which can be instantiated without
+   * argument.
+   */
+  public static List<Class<? extends ElevatorStrategy>> findStrategies() throws IOException {
+    ClassLoader loader = Tournament.class.getClassLoader();
+    String path = STRATEGY_PACKAGE.replace('.', '/');
+    TreeSet<String> classNames = new TreeSet<String>();
+    Enumeration<URL> resources = loader.getResources(path);
+    while (resources.hasMoreElements()) {
+      URL url = resources.nextElement();
+      if (url.getProtocol().equals("jar")) {
+        JarFile jar = ((JarURLConnection) url.openConnection()).getJarFile();
+        Enumeration<JarEntry> jarEntries = jar.entries();
+        while (jarEntries.hasMoreElements()) {
+          String name = jarEntries.nextElement().getName();
+          if (name.startsWith(path + "/") && name.indexOf('/', path.length() + 1) < 0) {
+            addClassName(classNames, name.substring(path.length() + 1));
+          }
+        }
+      }
+      else {
+        String[] files = new File(URLDecoder.decode(url.getPath(), "UTF-8")).list();
+        for (String file : files == null ? new String[0] : files) {
+          addClassName(classNames, file);
+        }
+      }
+    }
+    List<Class<? extends ElevatorStrategy>> strategies = new ArrayList<Class<? extends ElevatorStrategy>>();
+    for (String className : classNames) {
+      try {
+        Class<?> klass = Class.forName(STRATEGY_PACKAGE + "." + className);
+        if (ElevatorStrategy.class.isAssignableFrom(klass) && !klass.isInterface()
+            && !Modifier.isAbstract(klass.getModifiers())) {
+          klass.getConstructor();
+          strategies.add(klass.asSubclass(ElevatorStrategy.class));
+        }
+      } catch (ClassNotFoundException e) {
+        // not a loadable class, ignored
+      } catch (NoSuchMethodException e) {
+        // can't be instantiated without argument, ignored
+      }
+    }
+    return strategies;
+  }
+
+  private static void addClassName(TreeSet<String> classNames, String file) {
+    // nested and anonymous classes are not strategies to compare
+    if (file.endsWith(".class") && file.indexOf('$') < 0) {
+      classNames.add(file.substring(0, file.length() - ".class".length()));
+    }
+  }
+
+  /**
+   * Runs a tournament between all strategies but the slow one, with args : [ticks] [number of seeds]
+   * [strategies, separated by commas].
+   */
+  public static void main(String[] args) throws Exception {
+    // logging of each command would dominate the simulations
+    java.util.logging.Logger.getLogger("").setLevel(Level.WARNING);
+
+    long ticks = args.length > 0 ? Long.valueOf(args[0]) : 100000;
+    int nbSeeds = args.length > 1 ? Integer.valueOf(args[1]) : 4;
+    List<Class<? extends ElevatorStrategy>> strategies = new ArrayList<Class<? extends ElevatorStrategy>>();
+    if (args.length > 2) {
+      for (String name : args[2].split(",")) {
+        strategies.add(Class.forName(STRATEGY_PACKAGE + "." + name.trim()).asSubclass(ElevatorStrategy.class));
+      }
+    }
+    else {
+      for (Class<? extends ElevatorStrategy> strategy : findStrategies()) {
+        // only adds a pause to the classic strategy
+        if (!strategy.getSimpleName().equals("SlowClassicStrategy")) {
+          strategies.add(strategy);
+        }
+      }
+    }
+    List<Building> buildings = new ArrayList<Building>();
+    buildings.add(new Building(0, 5, 5));
+    buildings.add(new Building(0, 19, 30));
+    buildings.add(new Building(-5, 45, 50));
+    long[] seeds = new long[nbSeeds];
+    for (int i = 0; i < nbSeeds; i++) {
+      seeds[i] = i + 1;
+    }
+
+    long start = System.currentTimeMillis();
+    List<Entry> ranking = new Tournament(strategies, buildings, seeds, ticks).run(new ForkJoinPool());
+    System.out.println("Tournament on buildings " + buildings + " with " + nbSeeds + " seeds of " + ticks
+        + " ticks, in " + (System.currentTimeMillis() - start) + " ms");
+    int rank = 1;
+    for (Entry entry : ranking) {
+      System.out.println(rank++ + ". " + entry);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package org.nca.elevator.simulation;
+
+/**
+ * Generates the users of a simulated building.
+ */
+public interface TrafficGenerator {
+
+  /**
+   * Called once per tick, before the elevator is asked for its next command. New users are
+   * added with {@link Simulator#newUser(int, int)}.
+   * 
+   * @param tick
+   *          current tick of the simulation
+   * @param simulator
+   *          simulator receiving the new users
+   */
+  void generate(long tick, Simulator simulator);
+
+}
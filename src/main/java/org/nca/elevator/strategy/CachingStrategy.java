@@ -0,0 +1,219 @@
+package org.nca.elevator.strategy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.ElevatorController;
+import org.nca.elevator.ElevatorState;
+
+/**
+ * Caches the decisions of a strategy, keyed on the facts of the elevator state read by the
+ * "classic" and "most users" strategies.
+ * <p>
+ * The decision cached is the action requested to the controller, not the command returned, so that
+ * actions depending on the position of the elevator (like going to the middle floor) are performed
+ * again on a hit. Only strategies whose decisions depend on these facts alone can be cached.
+ * <p>
+ * Facts are evaluated lazily, following the decisions of these strategies : facts not read in the
+ * current situation are left out of the key, and the scores of directions, which walk through
+ * users, are only compared for strategies reading them.
+ * <p>
+ * Evaluating these facts costs about as much as the decisions of these strategies, and a lookup
+ * costs more : the cache is slower than the strategy it wraps, and is not provided as a strategy of
+ * the server.
+ * <p>
+ * The cache is bounded, the least recently used decision being evicted when it is full.
+ */
+public class CachingStrategy implements ElevatorStrategy {
+
+  static final int DEFAULT_CAPACITY = 1024;
+
+  /** Actions of the controller. */
+  private static enum Action {
+    NOTHING, OPEN, CLOSE, CURRENT_DIRECTION, OPPOSITE_DIRECTION, MIDDLE_FLOOR;
+  }
+
+  private final ElevatorStrategy strategy;
+
+  private final boolean readsScores;
+
+  private final Map<Integer, Action> decisions;
+
+  private final AtomicLong nbHits = new AtomicLong(), nbMisses = new AtomicLong(),
+      nbEvictions = new AtomicLong();
+
+  public CachingStrategy(ElevatorStrategy strategy) {
+    this(strategy, DEFAULT_CAPACITY);
+  }
+
+  public CachingStrategy(ElevatorStrategy strategy, int capacity) {
+    this(strategy, capacity, true);
+  }
+
+  /**
+   * @param readsScores
+   *          false if the decisions of the strategy don't depend on the scores of directions
+   */
+  public CachingStrategy(ElevatorStrategy strategy, final int capacity, boolean readsScores) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.strategy = strategy;
+    this.readsScores = readsScores;
+    this.decisions = new LinkedHashMap<Integer, Action>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Action> eldest) {
+        if (size() > capacity) {
+          nbEvictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  public Command nextCommand(ElevatorState e, ElevatorController c) {
+    int key = fingerprint(e, readsScores);
+    Action action;
+    synchronized (decisions) {
+      action = decisions.get(key);
+    }
+    if (action != null) {
+      nbHits.incrementAndGet();
+      return perform(action, c);
+    }
+    nbMisses.incrementAndGet();
+    RecordingController recorder = new RecordingController(c);
+    Command command = strategy.nextCommand(e, recorder);
+    if (recorder.action != null) {
+      synchronized (decisions) {
+        decisions.put(key, recorder.action);
+      }
+    }
+    return command;
+  }
+
+  /**
+   * Returns the facts of the state read by the strategies, one bit per fact at a fixed position,
+   * plus the last command. Facts not read are left to 0.
+   */
+  static int fingerprint(ElevatorState e, boolean withScores) {
+    Command last = e.lastCommand();
+    int key = (last == null ? 0 : last.ordinal() + 1) << 9;
+    if (e.hasDoorClosed()) {
+      key |= bit(true, 8);
+      key |= bit(e.isCabinFull(), 6);
+      key |= bit(e.hasElevatorUserForCurrentFloor(), 5);
+      key |= bit(e.hasWaitingUserForCurrentFloor(), 4);
+      key |= bit(e.hasWaitingUserForCurrentFloorInCurrentDirection(), 3);
+      key |= bit(e.hasUsersInOppositeDirection(), 1);
+      if (e.hasUsersInCurrentDirection()) {
+        key |= bit(true, 2);
+        if (withScores) {
+          key |= bit(e.scoreInCurrentDirection() >= e.scoreInOppositeDirection(), 0);
+        }
+      }
+    }
+    else if (e.hasDoorOpen()) {
+      key |= bit(true, 7);
+      key |= bit(e.hasWaitingUserForCurrentFloor(), 4);
+    }
+    return key;
+  }
+
+  private static int bit(boolean fact, int position) {
+    return fact ? 1 << position : 0;
+  }
+
+  private static Command perform(Action action, ElevatorController c) {
+    switch (action) {
+    case OPEN:
+      return c.openDoor();
+    case CLOSE:
+      return c.closeDoor();
+    case CURRENT_DIRECTION:
+      return c.goCurrentDirection();
+    case OPPOSITE_DIRECTION:
+      return c.goOppositeDirection();
+    case MIDDLE_FLOOR:
+      return c.goToMiddleFloor();
+    case NOTHING:
+    default:
+      return c.doNothing();
+    }
+  }
+
+  /** Performs actions on a controller, recording the last one. */
+  private static class RecordingController implements ElevatorController {
+    private final ElevatorController controller;
+    Action action;
+
+    RecordingController(ElevatorController controller) {
+      this.controller = controller;
+    }
+
+    @Override
+    public Command doNothing() {
+      action = Action.NOTHING;
+      return controller.doNothing();
+    }
+
+    @Override
+    public Command openDoor() {
+      action = Action.OPEN;
+      return controller.openDoor();
+    }
+
+    @Override
+    public Command closeDoor() {
+      action = Action.CLOSE;
+      return controller.closeDoor();
+    }
+
+    @Override
+    public Command goCurrentDirection() {
+      action = Action.CURRENT_DIRECTION;
+      return controller.goCurrentDirection();
+    }
+
+    @Override
+    public Command goOppositeDirection() {
+      action = Action.OPPOSITE_DIRECTION;
+      return controller.goOppositeDirection();
+    }
+
+    @Override
+    public Command goToMiddleFloor() {
+      action = Action.MIDDLE_FLOOR;
+      return controller.goToMiddleFloor();
+    }
+  }
+
+  public Class<? extends ElevatorStrategy> getCachedStrategy() {
+    return strategy.getClass();
+  }
+
+  public long getNbHits() {
+    return nbHits.get();
+  }
+
+  public long getNbMisses() {
+    return nbMisses.get();
+  }
+
+  public long getNbEvictions() {
+    return nbEvictions.get();
+  }
+
+  public int size() {
+    synchronized (decisions) {
+      return decisions.size();
+    }
+  }
+
+}
@@ -0,0 +1,144 @@
+package org.nca.elevator.strategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.ElevatorController;
+import org.nca.elevator.ElevatorState;
+import org.nca.elevator.PlanningState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The "lookahead" strategy : play sequences of commands on a copy of the elevator, and perform the
+ * first command of the sequence expected to earn the most points.
+ * <p>
+ * Sequences are explored with a beam search : at each depth, all commands are played on the best
+ * sequences found so far, and only the best ones are kept. A sequence is evaluated by the points
+ * earned by users exiting while playing it, plus the points estimated for remaining users. The
+ * search stops at the maximum depth, or at the first depth finished after the time budget.
+ * <p>
+ * As it is based on points, this strategy ignores the optimization of the elevator.
+ * <p>
+ * When created by name, the depth, beam width and budget are read from the system properties
+ * {@value #DEPTH_PROPERTY}, {@value #BEAM_WIDTH_PROPERTY} and {@value #BUDGET_MILLIS_PROPERTY}.
+ */
+public class LookaheadStrategy implements ElevatorStrategy {
+
+  static final Logger logger = LoggerFactory.getLogger(LookaheadStrategy.class);
+
+  static final int DEFAULT_DEPTH = 12;
+  static final int DEFAULT_BEAM_WIDTH = 32;
+  static final long DEFAULT_BUDGET_MILLIS = 2;
+
+  static final String DEPTH_PROPERTY = "elevator.lookahead.depth";
+  static final String BEAM_WIDTH_PROPERTY = "elevator.lookahead.beamWidth";
+  static final String BUDGET_MILLIS_PROPERTY = "elevator.lookahead.budgetMillis";
+
+  private final int depth;
+  private final int beamWidth;
+  private final long budgetNanos;
+
+  /** A sequence of commands, with the state reached and its value. */
+  private static class Node {
+    final PlanningState state;
+    final Command firstCommand;
+    final int value;
+
+    Node(PlanningState state, Command firstCommand) {
+      this.state = state;
+      this.firstCommand = firstCommand;
+      this.value = state.getPoints() + state.estimateRemainingPoints();
+    }
+  }
+
+  private static final Comparator<Node> BEST_FIRST = new Comparator<Node>() {
+    @Override
+    public int compare(Node n1, Node n2) {
+      return n2.value - n1.value;
+    }
+  };
+
+  /**
+   * Uses the system properties, or default values when not defined.
+   */
+  public LookaheadStrategy() {
+    this(Integer.getInteger(DEPTH_PROPERTY, DEFAULT_DEPTH), Integer.getInteger(BEAM_WIDTH_PROPERTY,
+        DEFAULT_BEAM_WIDTH), Long.getLong(BUDGET_MILLIS_PROPERTY, DEFAULT_BUDGET_MILLIS), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param depth
+   *          maximum number of commands in a sequence
+   * @param beamWidth
+   *          number of sequences kept at each depth
+   * @param budget
+   *          time after which no new depth is explored
+   */
+  public LookaheadStrategy(int depth, int beamWidth, long budget, TimeUnit unit) {
+    if (depth <= 0 || beamWidth <= 0) {
+      throw new IllegalArgumentException("Depth and beam width must be positive: " + depth + ", " + beamWidth);
+    }
+    this.depth = depth;
+    this.beamWidth = beamWidth;
+    this.budgetNanos = unit.toNanos(budget);
+  }
+
+  @Override
+  public Command nextCommand(ElevatorState e, ElevatorController c) {
+    PlanningState root = e.getPlanningState();
+    if (root.nbUsersWaiting() == 0 && root.nbUsersInElevator() == 0) {
+      // ensure we minimize next moves when next users come
+      return root.isDoorOpen() ? c.closeDoor() : c.goToMiddleFloor();
+    }
+    long deadline = System.nanoTime() + budgetNanos;
+    // on equal values, prefer serving users and keeping the current direction
+    Command[] commands = root.isGoingUp()
+        ? new Command[] { Command.OPEN, Command.CLOSE, Command.UP, Command.DOWN, Command.NOTHING }
+        : new Command[] { Command.OPEN, Command.CLOSE, Command.DOWN, Command.UP, Command.NOTHING };
+    List<Node> beam = new ArrayList<Node>();
+    beam.add(new Node(root, null));
+    int level = 0;
+    while (level < depth) {
+      List<Node> children = new ArrayList<Node>(beam.size() * commands.length);
+      for (Node node : beam) {
+        for (Command command : commands) {
+          if (node.state.isValid(command)) {
+            PlanningState child = node.state.clone();
+            child.play(command);
+            children.add(new Node(child, node.firstCommand == null ? command : node.firstCommand));
+          }
+        }
+      }
+      Collections.sort(children, BEST_FIRST);
+      beam = children.size() > beamWidth ? children.subList(0, beamWidth) : children;
+      level++;
+      if (System.nanoTime() > deadline) {
+        break;
+      }
+    }
+    Node best = beam.get(0);
+    logger.debug("Best sequence at depth {} starts with {}, value {}", level, best.firstCommand, best.value);
+    return perform(best.firstCommand, root, c);
+  }
+
+  private Command perform(Command command, PlanningState state, ElevatorController c) {
+    switch (command) {
+    case OPEN:
+      return c.openDoor();
+    case CLOSE:
+      return c.closeDoor();
+    case UP:
+    case DOWN:
+      return (command == Command.UP) == state.isGoingUp() ? c.goCurrentDirection() : c.goOppositeDirection();
+    case NOTHING:
+    default:
+      return c.doNothing();
+    }
+  }
+
+}
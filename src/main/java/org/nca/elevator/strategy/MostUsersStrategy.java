@@ -3,6 +3,7 @@ package org.nca.elevator.strategy;
 import org.nca.elevator.Elevator.Command;
 import org.nca.elevator.ElevatorController;
 import org.nca.elevator.ElevatorState;
+import org.nca.elevator.SampledLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +15,8 @@ public class MostUsersStrategy implements ElevatorStrategy {
 
   static final Logger logger = LoggerFactory.getLogger(MostUsersStrategy.class);
 
+  static final SampledLogger sampled = new SampledLogger(logger);
+
   @Override
   public Command nextCommand(ElevatorState e, ElevatorController c) {
     Command command = null;
@@ -22,13 +25,11 @@ public class MostUsersStrategy implements ElevatorStrategy {
         command = c.openDoor();
       }
       else if (e.hasUsersInCurrentDirection() && hasBetterScoreForCurrentDirection(e)) {
-        logger.info("Scores current {} / opposite {}", e.scoreInCurrentDirection(), e
-            .scoreInOppositeDirection());
+        logScores(e);
         command = c.goCurrentDirection();
       }
       else if (e.hasUsersInOppositeDirection()) {
-        logger.info("Scores current {} / opposite {}", e.scoreInCurrentDirection(), e
-            .scoreInOppositeDirection());
+        logScores(e);
         command = c.goOppositeDirection();
       }
       else {
@@ -51,6 +52,15 @@ public class MostUsersStrategy implements ElevatorStrategy {
     return command;
   }
 
+  /**
+   * Scores are only computed when debug is enabled, as they walk through users.
+   */
+  private static void logScores(ElevatorState e) {
+    if (logger.isDebugEnabled()) {
+      sampled.debug("Scores current {} / opposite {}", e.scoreInCurrentDirection(), e.scoreInOppositeDirection());
+    }
+  }
+
   private boolean hasBetterScoreForCurrentDirection(ElevatorState e) {
     return e.scoreInCurrentDirection() >= e.scoreInOppositeDirection();
   }
@@ -0,0 +1,30 @@
+package org.nca.elevator.strategy;
+
+/**
+ * Creates strategies from their class, through their constructor without argument.
+ */
+public final class Strategies {
+
+  /** Package of the strategies, in which simple class names are looked up. */
+  public static final String PACKAGE = "org.nca.elevator.strategy";
+
+  private Strategies() {
+  }
+
+  /**
+   * Returns a new instance of the provided strategy class.
+   */
+  public static ElevatorStrategy newStrategy(Class<? extends ElevatorStrategy> strategyClass)
+      throws ReflectiveOperationException {
+    return strategyClass.getDeclaredConstructor().newInstance();
+  }
+
+  /**
+   * Returns a new instance of the strategy with the provided class name, either fully qualified or
+   * simple if the class is in the package of the strategies.
+   */
+  public static ElevatorStrategy newStrategy(String className) throws ReflectiveOperationException {
+    String qualifiedName = className.indexOf('.') < 0 ? PACKAGE + "." + className : className;
+    return newStrategy(Class.forName(qualifiedName).asSubclass(ElevatorStrategy.class));
+  }
+}
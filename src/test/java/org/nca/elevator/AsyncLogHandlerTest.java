@@ -0,0 +1,85 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.Test;
+
+public class AsyncLogHandlerTest {
+
+  /** Handler keeping the messages, after waiting for the latch. */
+  private static class BlockingHandler extends Handler {
+    final List<String> messages = new CopyOnWriteArrayList<String>();
+    final CountDownLatch latch;
+    final CountDownLatch entered = new CountDownLatch(1);
+
+    BlockingHandler(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+      entered.countDown();
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      messages.add(record.getMessage());
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  @Test
+  public void recordsAreWrittenInOrder() throws Exception {
+    BlockingHandler delegate = new BlockingHandler(new CountDownLatch(0));
+    AsyncLogHandler handler = new AsyncLogHandler(16, delegate);
+
+    for (int i = 0; i < 10; i++) {
+      handler.publish(new LogRecord(Level.INFO, "message " + i));
+    }
+    handler.close();
+
+    assertThat(delegate.messages).hasSize(10);
+    assertThat(delegate.messages.get(0)).isEqualTo("message 0");
+    assertThat(delegate.messages.get(9)).isEqualTo("message 9");
+  }
+
+  @Test
+  public void recordsAreDroppedWhenQueueIsFull() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    BlockingHandler delegate = new BlockingHandler(latch);
+    AsyncLogHandler handler = new AsyncLogHandler(4, delegate);
+
+    handler.publish(new LogRecord(Level.INFO, "first"));
+    delegate.entered.await(); // writer blocked with the first record
+    for (int i = 0; i < 10; i++) {
+      handler.publish(new LogRecord(Level.INFO, "message " + i));
+    }
+    assertThat(handler.getNbDropped()).isEqualTo(6);
+
+    latch.countDown();
+    while (handler.getQueueSize() > 0) {
+      Thread.sleep(1);
+    }
+    handler.publish(new LogRecord(Level.INFO, "last"));
+    handler.close();
+
+    // dropped records are reported before the next records written
+    assertThat(delegate.messages).containsExactly("first", "Log queue full, 6 records dropped", "message 0",
+        "message 1", "message 2", "message 3", "last");
+  }
+}
@@ -1,6 +1,7 @@
 package org.nca.elevator;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.nca.elevator.Elevator.Command.CLOSE;
 import static org.nca.elevator.Elevator.Command.DOWN;
 import static org.nca.elevator.Elevator.Command.OPEN;
@@ -27,6 +28,28 @@ public class ClassicElevatorTest {
     end();
   }
 
+  @Test
+  public void floorsOutsideOfTheBuildingAreRejected() throws Exception {
+    e.reset(0, 5, 10);
+    for (int floor : new int[] { -1, 6, 1000000000, Integer.MIN_VALUE }) {
+      try {
+        e.call(floor, U);
+        fail("Call at floor " + floor + " accepted");
+      } catch (IllegalArgumentException expected) {
+        // expected
+      }
+      try {
+        e.go(floor);
+        fail("Floor " + floor + " accepted");
+      } catch (IllegalArgumentException expected) {
+        // expected
+      }
+    }
+    assertThat(e.nbUsersWaiting()).isEqualTo(0);
+    assertThat(e.getStateAsString()).isEqualTo(new Elevator(new ClassicStrategy()).reset(0, 5, 10)
+        .getStateAsString());
+  }
+
   @Test
   public void oneUserGoDown() throws Exception {
     numberOfFloors(5).positionToFloorWithDoorOpened(4);
@@ -112,6 +135,20 @@ public class ClassicElevatorTest {
     exitUser();
   }
 
+  @Test
+  public void snapshotIsPublishedOnEachCommand() throws Exception {
+    numberOfFloors(5);
+    ElevatorSnapshot snapshot = e.getSnapshot();
+    assertThat(snapshot.getHigherFloor()).isEqualTo(4);
+
+    callUp(0);
+    assertThat(e.getSnapshot()).isSameAs(snapshot);
+    open();
+    assertThat(e.getSnapshot()).isNotSameAs(snapshot);
+    assertThat(e.getSnapshot().getHistoryAsHtml(1)).contains("<td>OPEN</td>");
+    assertThat(snapshot.getHistoryAsHtml(1)).doesNotContain("<td>OPEN</td>");
+  }
+
   ClassicElevatorTest exitUser() {
     return exitUser(1);
   }
@@ -0,0 +1,145 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.ClassicStrategy;
+import org.nca.elevator.strategy.MostUsersStrategy;
+
+public class DispatcherTest {
+
+  private Dispatcher dispatcher;
+
+  @Before
+  public void createDispatcher() {
+    dispatcher = new Dispatcher(ClassicStrategy.class, Optimization.NONE, 2);
+    dispatcher.reset(0, 9, 10, 2);
+  }
+
+  @After
+  public void shutdown() {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  public void callsAreSpreadOverIdleCabins() throws Exception {
+    assertThat(dispatcher.call(0, "UP")).isEqualTo(0);
+    assertThat(dispatcher.call(0, "UP")).isEqualTo(1);
+
+    assertThat(dispatcher.nextCommands()).containsExactly(Command.OPEN, Command.OPEN);
+  }
+
+  @Test
+  public void costIncludesDetourAndStops() throws Exception {
+    Elevator idle = new Elevator(new ClassicStrategy()).reset(0, 9, 10);
+    Elevator busy = new Elevator(new ClassicStrategy()).reset(0, 9, 10);
+    busy.call(0, "UP");
+    busy.nextCommand(); // OPEN
+    busy.userHasEntered().go(5);
+    busy.nextCommand(); // CLOSE
+    for (int i = 0; i < 4; i++) {
+      busy.nextCommand(); // UP to floor 4
+    }
+    assertThat(busy.getCurrentFloor()).isEqualTo(4);
+
+    assertThat(Dispatcher.cost(idle, 6)).isEqualTo(3);
+    // on its way, one stop before
+    assertThat(Dispatcher.cost(busy, 6)).isEqualTo(2);
+    // goes up to the last floor before coming back, one stop before
+    assertThat(Dispatcher.cost(busy, 1)).isEqualTo(7);
+    assertThat(Dispatcher.cost(busy, 1)).isGreaterThan(Dispatcher.cost(idle, 1));
+  }
+
+  @Test
+  public void userEnteringAnotherCabinIsHandedToIt() throws Exception {
+    assertThat(dispatcher.call(0, "UP")).isEqualTo(0);
+
+    dispatcher.userHasEntered(1);
+
+    assertThat(dispatcher.getNbTransfers()).isEqualTo(1);
+    assertThat(dispatcher.getCabins().get(0).nbUsersWaiting()).isEqualTo(0);
+    assertThat(dispatcher.getCabins().get(1).nbUsersInElevator()).isEqualTo(1);
+  }
+
+  @Test
+  public void resetChangesTheNumberOfCabins() throws Exception {
+    dispatcher.reset(0, 5, 4, 3);
+
+    assertThat(dispatcher.nextCommands()).hasSize(3);
+    assertThat(dispatcher.getCabins().get(2).getHigherFloor()).isEqualTo(5);
+  }
+
+  @Test
+  public void strategyAndOptimizationAreChangedForAllCabins() throws Exception {
+    dispatcher.setStrategy(MostUsersStrategy.class);
+    dispatcher.setOptimization(Optimization.POINTS);
+
+    for (Elevator cabin : dispatcher.getCabins()) {
+      assertThat(cabin.getStrategy().getName()).isEqualTo(MostUsersStrategy.class.getName());
+      assertThat(cabin.getOptimization()).isEqualTo(Optimization.POINTS);
+    }
+    dispatcher.reset(0, 5, 4, 3);
+    assertThat(dispatcher.getCabins().get(2).getStrategy().getName()).isEqualTo(MostUsersStrategy.class.getName());
+  }
+
+  /** Classic strategy waiting to be released once it has been entered. */
+  public static class BlockingStrategy extends ClassicStrategy {
+    static final CountDownLatch entered = new CountDownLatch(1);
+    static final CountDownLatch released = new CountDownLatch(1);
+
+    @Override
+    public Command nextCommand(ElevatorState e, ElevatorController c) {
+      entered.countDown();
+      try {
+        released.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      return super.nextCommand(e, c);
+    }
+  }
+
+  @Test
+  public void snapshotsAreReadWhileCommandsAreComputed() throws Exception {
+    final Dispatcher blocking = new Dispatcher(BlockingStrategy.class, Optimization.NONE, 2);
+    blocking.reset(0, 9, 10, 2);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<Command>> commands = executor.submit(new Callable<List<Command>>() {
+        @Override
+        public List<Command> call() throws Exception {
+          return blocking.nextCommands();
+        }
+      });
+      assertThat(BlockingStrategy.entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+      assertThat(blocking.getSnapshots()).hasSize(2);
+      assertThat(blocking.getSnapshots().get(0).getTicks()).isEqualTo(0);
+
+      BlockingStrategy.released.countDown();
+      commands.get(10, TimeUnit.SECONDS);
+      assertThat(blocking.getSnapshots().get(0).getTicks()).isEqualTo(1);
+    } finally {
+      BlockingStrategy.released.countDown();
+      executor.shutdown();
+      blocking.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownCabin() throws Exception {
+    dispatcher.go(2, 3);
+  }
+}
@@ -0,0 +1,159 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.nca.elevator.ElevatorSessionsTest.get;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class ElevatorCheckpointsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static Elevator elevatorWithUsers() {
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+    elevator.call(0, "UP").call(3, "DOWN");
+    elevator.nextCommand(); // OPEN
+    elevator.userHasEntered().go(1);
+    elevator.userHasEntered();
+    elevator.nextCommand(); // CLOSE
+    elevator.nextCommand(); // UP
+    elevator.nextCommand(); // OPEN
+    elevator.userHasExited();
+    elevator.call(4, "DOWN");
+    return elevator;
+  }
+
+  @Test
+  public void restoredElevatorGoesOnLikeTheCheckpointedOne() throws Exception {
+    Elevator elevator = elevatorWithUsers();
+
+    Elevator restored = new Elevator(new ClassicStrategy());
+    restored.restore(elevator.checkpoint());
+
+    assertThat(restored.getStateAsString()).isEqualTo(elevator.getStateAsString());
+    assertThat(restored.getHistoryAsHtml(10)).isEqualTo(elevator.getHistoryAsHtml(10));
+    assertThat(restored.getTotalTicks()).isEqualTo(elevator.getTotalTicks());
+    for (int i = 0; i < 20; i++) {
+      assertThat(restored.nextCommand()).isEqualTo(elevator.nextCommand());
+    }
+    assertThat(restored.getStateAsString()).isEqualTo(elevator.getStateAsString());
+    assertThat(restored.getSnapshot().getLedger().getTotalPoints()).isGreaterThan(0).isEqualTo(
+        elevator.getSnapshot().getLedger().getTotalPoints());
+  }
+
+  @Test
+  public void invalidCheckpointLeavesElevatorUnchanged() throws Exception {
+    Elevator elevator = elevatorWithUsers();
+    String state = elevator.getStateAsString();
+    byte[] checkpoint = elevator.checkpoint();
+    byte[] truncated = new byte[checkpoint.length / 2];
+    System.arraycopy(checkpoint, 0, truncated, 0, truncated.length);
+
+    try {
+      elevator.restore(truncated);
+      fail("Truncated checkpoint restored");
+    } catch (IOException e) {
+      // expected
+    }
+    assertThat(elevator.getStateAsString()).isEqualTo(state);
+  }
+
+  @Test
+  public void restartedSessionResumesWithoutReset() throws Exception {
+    File directory = folder.newFolder("checkpoints");
+    ElevatorSessions sessions = newSessions(directory);
+    ElevatorRoutes routes = new ElevatorRoutes(sessions);
+    assertThat(get(routes, "/nextCommand", null, null)).isEqualTo("NEED RESET");
+    get(routes, "/reset?lowerFloor=0&higherFloor=5&cabinSize=10&cause=test", null, null);
+    get(routes, "/call?atFloor=0&to=UP", null, null);
+    assertThat(get(routes, "/nextCommand", null, null)).isEqualTo("OPEN");
+    get(routes, "/nextCommand", "a", null);
+    sessions.shutdown();
+    assertThat(new File(directory, "default.checkpoint").isFile()).isTrue();
+
+    // restart
+    sessions = newSessions(directory);
+    routes = new ElevatorRoutes(sessions);
+    get(routes, "/userHasEntered", null, null);
+    get(routes, "/go?floorToGo=2", null, null);
+    assertThat(get(routes, "/nextCommand", null, null)).isEqualTo("CLOSE");
+    assertThat(get(routes, "/nextCommand", null, null)).isEqualTo("UP");
+    // restored too, without having been reset
+    assertThat(get(routes, "/nextCommand", "a", null)).isEqualTo("UP");
+    sessions.shutdown();
+  }
+
+  @Test
+  public void evictedSessionCheckpointIsDeleted() throws Exception {
+    File directory = folder.newFolder("checkpoints");
+    Files.write(new File(directory, "a.checkpoint").toPath(), elevatorWithUsers().checkpoint());
+    ElevatorSessions sessions = newSessions(directory, 0, TimeUnit.NANOSECONDS);
+    ElevatorRoutes routes = new ElevatorRoutes(sessions);
+    assertThat(get(routes, "/nextCommand", "a", null)).isNotEqualTo("NEED RESET");
+
+    sessions.evictIdleSessions();
+    sessions.shutdown();
+
+    assertThat(new File(directory, "a.checkpoint").exists()).isFalse();
+    assertThat(new File(directory, "default.checkpoint").isFile()).isTrue();
+  }
+
+  @Test
+  public void eventAfterTheLastCommandIsCheckpointed() throws Exception {
+    File directory = folder.newFolder("checkpoints");
+    ElevatorCheckpoints checkpoints = new ElevatorCheckpoints(directory, 1, TimeUnit.MINUTES);
+    Elevator elevator = elevatorWithUsers();
+    LockingElevatorExecutor executor = new LockingElevatorExecutor(elevator);
+    checkpoints.start("a", executor);
+    checkpoints.checkpoint("a", executor);
+    elevator.call(5, "DOWN");
+    // no command since the event
+    checkpoints.shutdown();
+
+    Elevator restored = new Elevator(new ClassicStrategy());
+    checkpoints = new ElevatorCheckpoints(directory, 1, TimeUnit.MINUTES);
+    assertThat(checkpoints.restore("a", new LockingElevatorExecutor(restored))).isTrue();
+    checkpoints.shutdown();
+    assertThat(restored.nbUsersWaiting()).isEqualTo(elevator.nbUsersWaiting());
+    assertThat(restored.getStateAsString()).isEqualTo(elevator.getStateAsString());
+  }
+
+  @Test
+  public void staleCheckpointIsNotRestored() throws Exception {
+    File directory = folder.newFolder("checkpoints");
+    ElevatorCheckpoints checkpoints = new ElevatorCheckpoints(directory, 1, 60, TimeUnit.SECONDS);
+    File file = checkpoints.getFile("a");
+    Files.write(file.toPath(), elevatorWithUsers().checkpoint());
+    LockingElevatorExecutor executor = new LockingElevatorExecutor(new Elevator(new ClassicStrategy()));
+    assertThat(file.setLastModified(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(2))).isTrue();
+
+    assertThat(checkpoints.restore("a", executor)).isFalse();
+
+    assertThat(file.setLastModified(System.currentTimeMillis())).isTrue();
+    assertThat(checkpoints.restore("a", executor)).isTrue();
+    checkpoints.shutdown();
+  }
+
+  private static ElevatorSessions newSessions(File directory) throws Exception {
+    return newSessions(directory, 1, TimeUnit.MINUTES);
+  }
+
+  private static ElevatorSessions newSessions(File directory, long idleTimeout, TimeUnit unit) throws Exception {
+    return new ElevatorSessions(new ElevatorSessions.Factory() {
+      @Override
+      public ElevatorExecutor create(String id) {
+        return new LockingElevatorExecutor(new Elevator(new ClassicStrategy()));
+      }
+    }, 10, idleTimeout, unit).withCheckpoints(new ElevatorCheckpoints(directory, 1, TimeUnit.MINUTES));
+  }
+}
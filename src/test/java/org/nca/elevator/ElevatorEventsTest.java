@@ -0,0 +1,47 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class ElevatorEventsTest {
+
+  @Test
+  public void eventsAreAppliedInOrder() throws Exception {
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+    ElevatorEvents.parse("call 0 UP\ncall 4 DOWN\n").applyTo(elevator);
+    assertThat(elevator.nextCommand()).isEqualTo(Command.OPEN);
+
+    ElevatorEvents events = ElevatorEvents.parse("userHasEntered\r\n\ngo 2\n");
+    events.applyTo(elevator);
+
+    assertThat(events.size()).isEqualTo(2);
+    assertThat(elevator.nbUsersWaiting()).isEqualTo(1);
+    assertThat(elevator.nbUsersInElevator()).isEqualTo(1);
+    assertThat(elevator.nextCommand()).isEqualTo(Command.CLOSE);
+    assertThat(elevator.nextCommand()).isEqualTo(Command.UP);
+  }
+
+  @Test
+  public void emptyBody() throws Exception {
+    assertThat(ElevatorEvents.parse("").size()).isEqualTo(0);
+    assertThat(ElevatorEvents.parse(null).size()).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownEvent() throws Exception {
+    ElevatorEvents.parse("call 0 UP\nuserHasFlown\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingParameter() throws Exception {
+    ElevatorEvents.parse("go\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidDirection() throws Exception {
+    ElevatorEvents.parse("call 2 LEFT\n");
+  }
+}
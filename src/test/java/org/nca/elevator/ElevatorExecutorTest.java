@@ -0,0 +1,93 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class ElevatorExecutorTest {
+
+  @Test
+  public void lockingExecutorPublishesSnapshot() throws Exception {
+    checkPublishesSnapshot(new LockingElevatorExecutor(new Elevator(new ClassicStrategy())));
+  }
+
+  @Test
+  public void eventLoopExecutorPublishesSnapshot() throws Exception {
+    checkPublishesSnapshot(new EventLoopElevatorExecutor(new Elevator(new ClassicStrategy())));
+  }
+
+  @Test
+  public void eventLoopExecutorPropagatesFailure() throws Exception {
+    ElevatorExecutor executor = new EventLoopElevatorExecutor(new Elevator(new ClassicStrategy()));
+    try {
+      executor.execute(new ElevatorExecutor.Task<Object>() {
+        @Override
+        public Object run(Elevator elevator) {
+          throw new IllegalStateException("failure");
+        }
+      });
+      fail("exception expected");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("failure");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void eventLoopExecutorSerializesConcurrentTasks() throws Exception {
+    final ElevatorExecutor executor = new EventLoopElevatorExecutor(new Elevator(new ClassicStrategy()));
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    List<Future<Object>> results = new ArrayList<Future<Object>>();
+    for (int i = 0; i < 200; i++) {
+      results.add(clients.submit(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          return executor.execute(new ElevatorExecutor.Task<Object>() {
+            @Override
+            public Object run(Elevator elevator) {
+              return elevator.call(2, "UP");
+            }
+          });
+        }
+      }));
+    }
+    for (Future<Object> result : results) {
+      result.get();
+    }
+    clients.shutdown();
+
+    int waiting = executor.execute(new ElevatorExecutor.Task<Integer>() {
+      @Override
+      public Integer run(Elevator elevator) {
+        return elevator.nbUsersWaiting();
+      }
+    });
+    assertThat(waiting).isEqualTo(200);
+    executor.shutdown();
+  }
+
+  private void checkPublishesSnapshot(ElevatorExecutor executor) throws Exception {
+    executor.execute(new ElevatorExecutor.Task<Object>() {
+      @Override
+      public Object run(Elevator elevator) {
+        return elevator.reset(-1, 4, 10);
+      }
+    });
+
+    ElevatorSnapshot snapshot = executor.getSnapshot();
+    assertThat(snapshot.getLowerFloor()).isEqualTo(-1);
+    assertThat(snapshot.getHigherFloor()).isEqualTo(4);
+    assertThat(snapshot.getCabinSize()).isEqualTo(10);
+    executor.shutdown();
+  }
+}
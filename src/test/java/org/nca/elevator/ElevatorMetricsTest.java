@@ -0,0 +1,91 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nca.elevator.strategy.CachingStrategy;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class ElevatorMetricsTest {
+
+  @Test
+  public void elevatorMetricsAreScraped() throws Exception {
+    ElevatorMetrics metrics = new ElevatorMetrics();
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+    elevator.setMetrics(metrics);
+    LockingElevatorExecutor executor = new LockingElevatorExecutor(elevator, metrics);
+
+    elevator.call(0, "UP").call(3, "DOWN");
+    elevator.nextCommand(); // OPEN
+    elevator.userHasEntered().go(1);
+    elevator.nextCommand(); // CLOSE
+    elevator.nextCommand(); // UP
+    elevator.nextCommand(); // OPEN
+    elevator.userHasExited();
+    executor.getSnapshot();
+    executor.execute(new ElevatorExecutor.Task<Void>() {
+      @Override
+      public Void run(Elevator elevator) {
+        return null;
+      }
+    });
+    metrics.recordRoute("/call", 2000);
+
+    String scrape = metrics.scrape();
+
+    assertThat(metrics.getTicks()).isEqualTo(4);
+    assertThat(metrics.getPoints()).isGreaterThan(0);
+    assertThat(scrape).contains("elevator_strategy_decision_seconds_count{strategy=\"ClassicStrategy\"} 4\n");
+    assertThat(scrape).contains("elevator_route_latency_seconds_count{route=\"/call\"} 1\n");
+    assertThat(scrape).contains("elevator_route_latency_seconds{route=\"/call\",quantile=\"0.5\"} 0.000002000\n");
+    assertThat(scrape).contains("elevator_lock_wait_seconds_count 1\n");
+    assertThat(scrape).contains("elevator_users_waiting 1\n");
+    // as of the last command, before the user exited
+    assertThat(scrape).contains("elevator_users_in_cabin 1\n");
+    assertThat(scrape).contains("elevator_points_total " + metrics.getPoints() + "\n");
+    assertThat(scrape).contains("elevator_users_exited_total 1\n");
+    assertThat(scrape).contains("elevator_points_per_user_count 1\n");
+    assertThat(scrape).contains("elevator_points_per_user_bucket{le=\"+Inf\"} 1\n");
+    assertThat(scrape).contains("elevator_points_lost_waiting_total ");
+    assertThat(scrape).contains("elevator_ticks_total 4\n");
+    assertThat(scrape).contains("# TYPE elevator_ticks_total counter\n");
+
+    elevator.shutdown();
+    assertThat(metrics.scrape()).contains("elevator_elevators 0\n");
+  }
+
+  @Test
+  public void deadlineSpeculationAndCacheCountersAreScraped() throws Exception {
+    ElevatorMetrics metrics = new ElevatorMetrics();
+    Elevator elevator = new Elevator(new CachingStrategy(new ClassicStrategy())).reset(0, 5, 10);
+    elevator.setMetrics(metrics);
+    elevator.setDeadline(10, TimeUnit.SECONDS, new ClassicStrategy());
+    elevator.setSpeculative(true);
+
+    elevator.call(2, "UP");
+    for (int i = 0; i < 6; i++) {
+      elevator.nextCommand();
+    }
+    elevator.call(4, "DOWN"); // invalidates the speculated command
+    elevator.nextCommand();
+    ElevatorSnapshot snapshot = elevator.getSnapshot();
+
+    String scrape = metrics.scrape();
+
+    assertThat(scrape).contains("# TYPE elevator_deadline_commands_total counter\n");
+    assertThat(scrape).contains("elevator_deadline_commands_total 7\n");
+    assertThat(scrape).contains("elevator_deadline_overruns_total 0\n");
+    assertThat(snapshot.getNbSpeculationHits()).isGreaterThan(0);
+    assertThat(snapshot.getNbSpeculationMisses()).isEqualTo(1);
+    assertThat(scrape).contains("elevator_speculation_hits_total " + snapshot.getNbSpeculationHits() + "\n");
+    assertThat(scrape).contains("elevator_speculation_misses_total 1\n");
+    assertThat(snapshot.getNbCacheMisses()).isGreaterThan(0);
+    assertThat(scrape).contains("elevator_cache_hits_total " + snapshot.getNbCacheHits() + "\n");
+    assertThat(scrape).contains("elevator_cache_misses_total " + snapshot.getNbCacheMisses() + "\n");
+    assertThat(scrape).contains("elevator_cache_evictions_total 0\n");
+
+    elevator.shutdown();
+  }
+}
@@ -0,0 +1,134 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class ElevatorSessionsTest {
+
+  private ElevatorSessions sessions;
+
+  private ElevatorSessions newSessions(int maxSessions, long idleTimeout, TimeUnit unit) {
+    sessions = new ElevatorSessions(new ElevatorSessions.Factory() {
+      @Override
+      public ElevatorExecutor create(String id) {
+        return new LockingElevatorExecutor(new Elevator(new ClassicStrategy()));
+      }
+    }, maxSessions, idleTimeout, unit);
+    return sessions;
+  }
+
+  @After
+  public void shutdown() throws Exception {
+    if (sessions != null) {
+      sessions.shutdown();
+    }
+  }
+
+  @Test
+  public void requestsAreRoutedToTheirSession() throws Exception {
+    ElevatorRoutes routes = new ElevatorRoutes(newSessions(10, 1, TimeUnit.MINUTES));
+
+    // the first command of each session asks for a reset
+    assertThat(get(routes, "/nextCommand", "a", null)).isEqualTo("NEED RESET");
+    assertThat(get(routes, "/nextCommand", null, "b")).isEqualTo("NEED RESET");
+    assertThat(get(routes, "/nextCommand", null, null)).isEqualTo("NEED RESET");
+    get(routes, "/call?atFloor=0&to=UP", "a", null);
+
+    assertThat(get(routes, "/nextCommand", "a", null)).isEqualTo("OPEN");
+    // without users, goes to the middle floor
+    assertThat(get(routes, "/nextCommand", null, "b")).isEqualTo("UP");
+    assertThat(sessions.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void idleSessionsAreEvicted() throws Exception {
+    newSessions(10, 0, TimeUnit.NANOSECONDS);
+    sessions.get(null);
+    ElevatorRoutes first = sessions.get("a");
+
+    assertThat(sessions.evictIdleSessions()).isEqualTo(1);
+    assertThat(sessions.size()).isEqualTo(1);
+    assertThat(sessions.getNbEvictions()).isEqualTo(1);
+    assertThat(sessions.get("a")).isNotSameAs(first);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void maximumNumberOfSessions() throws Exception {
+    newSessions(2, 1, TimeUnit.MINUTES);
+    sessions.get(null);
+    sessions.get("a");
+    sessions.get("b");
+  }
+
+  @Test
+  public void distinctIdsHaveDistinctFileNames() throws Exception {
+    assertThat(ElevatorSessions.toFileName("default")).isEqualTo("default");
+    assertThat(ElevatorSessions.toFileName("a.b")).isEqualTo("a_2Eb");
+    assertThat(ElevatorSessions.toFileName("a_b")).isEqualTo("a_5Fb");
+    assertThat(ElevatorSessions.toFileName("../\u00e9")).isEqualTo("_2E_2E_2F_C3_A9");
+  }
+
+  static String get(ElevatorRoutes routes, String uri, String parameter, String header) {
+    final Map<String, String> parameters = new HashMap<String, String>();
+    String path = uri;
+    int index = uri.indexOf('?');
+    if (index >= 0) {
+      path = uri.substring(0, index);
+      for (String pair : uri.substring(index + 1).split("&")) {
+        String[] tokens = pair.split("=");
+        parameters.put(tokens[0], tokens[1]);
+      }
+    }
+    if (parameter != null) {
+      parameters.put(ElevatorSessions.SESSION_PARAMETER, parameter);
+    }
+    final Map<String, String> headers = new HashMap<String, String>();
+    if (header != null) {
+      headers.put(ElevatorSessions.SESSION_HEADER, header);
+    }
+    final String pathInfo = path;
+    ElevatorRoutes.Request request = new ElevatorRoutes.Request() {
+      @Override
+      public String queryParams(String name) {
+        return parameters.get(name);
+      }
+
+      @Override
+      public String body() {
+        return "";
+      }
+
+      @Override
+      public String pathInfo() {
+        return pathInfo;
+      }
+
+      @Override
+      public String queryString() {
+        return null;
+      }
+
+      @Override
+      public String headers(String name) {
+        return headers.get(name);
+      }
+    };
+    ElevatorRoutes.Response response = new ElevatorRoutes.Response() {
+      @Override
+      public void status(int statusCode) {
+      }
+
+      @Override
+      public void type(String contentType) {
+      }
+    };
+    return routes.find("GET", path).handle(request, response).toString();
+  }
+}
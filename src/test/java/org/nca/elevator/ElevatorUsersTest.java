@@ -127,4 +127,82 @@ public class ElevatorUsersTest {
 
   }
 
+  @Test
+  public void scoreTowardDirection() throws Exception {
+    ElevatorUsers users = new ElevatorUsers();
+    users.userEntered(new WaitingUser(2, Direction.UP));
+    users.userEntered(new WaitingUser(2, Direction.DOWN));
+    users.userEntered(new WaitingUser(2, Direction.NONE));
+    users.userRequestedFloor(4, 2);
+    users.userRequestedFloor(0, 2);
+
+    // user without requested floor is ignored
+    assertThat(users.scoreTowardDirection(Direction.UP, 2, 5)).isEqualTo(10 - 2);
+    assertThat(users.scoreTowardDirection(Direction.DOWN, 2, 5)).isEqualTo(10 - 2);
+    assertThat(users.scoreTowardDirection(Direction.UP, 4, 5)).isEqualTo(0);
+    assertThat(users.scoreTowardDirection(Direction.DOWN, 5, 5)).isEqualTo((10 - 1) + (10 - 5));
+  }
+
+  @Test
+  public void totalTicks() throws Exception {
+    Clock clock = new Clock();
+    ElevatorUsers users = new ElevatorUsers(clock, 0, 5);
+    WaitingUser waitingUser = new WaitingUser(0, Direction.UP, clock);
+    clock.tick();
+    clock.tick();
+    users.userEntered(waitingUser);
+    users.userEntered(new WaitingUser(0, Direction.UP, clock));
+    users.userRequestedFloor(3, 0);
+    clock.tick();
+
+    assertThat(users.getTotalTicks()).isEqualTo(2 + 1 + 1);
+    users.userExited(3);
+    assertThat(users.getTotalTicks()).isEqualTo(1);
+  }
+
+  @Test
+  public void usersRequestAndExitAtFloorMinusOne() throws Exception {
+    ElevatorUsers users = new ElevatorUsers(new Clock(), -2, 5);
+    users.userEntered(new WaitingUser(2, Direction.DOWN));
+    users.userRequestedFloor(-1, 2);
+    users.userEntered(new WaitingUser(2, Direction.DOWN));
+
+    assertThat(users.nbUsersForFloor(-1)).isEqualTo(1);
+    assertThat(users.toString()).isEqualTo("Nb=2 [2/D/_ T=0/0+0 | 2/D/-1 T=0/0+0]");
+    assertThat(users.userExited(-1)).isGreaterThan(0);
+    assertThat(users.nbUsersForFloor(-1)).isEqualTo(0);
+    assertThat(users.nbUsers()).isEqualTo(1);
+
+    // the user without exit floor exits at -1 too
+    assertThat(users.userExited(-1)).isGreaterThan(0);
+    assertThat(users.nbUsers()).isEqualTo(0);
+    assertThat(users.nbUsersForFloor(-1)).isEqualTo(0);
+    assertThat(users.nbUsersTowardDirection(Direction.DOWN, 2, Optimization.NONE)).isEqualTo(0);
+    assertThat(users.scoreTowardDirection(Direction.DOWN, 2, 5)).isEqualTo(0);
+
+    users.userEntered(new WaitingUser(2, Direction.DOWN));
+    assertThat(users.userRequestedFloor(-1, 2).getEntryFloor()).isEqualTo(2);
+    assertThat(users.requestFloor(0, 2)).isEqualTo(UserSlots.NO_SLOT);
+    assertThat(users.nbUsersForFloor(-1)).isEqualTo(1);
+    assertThat(users.nbUsersForFloor(0)).isEqualTo(0);
+  }
+
+  @Test
+  public void slotsOfExitedUsersAreReused() throws Exception {
+    Clock clock = new Clock();
+    ElevatorUsers users = new ElevatorUsers(clock, 0, 5);
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 40; i++) {
+        users.userEntered(0, Direction.UP, 2);
+        users.requestFloor(1 + i % 8, 0);
+      }
+      clock.tick();
+      for (int i = 0; i < 40; i++) {
+        assertThat(users.userExited(1 + i % 8)).isEqualTo(Score.maxPointsToEarnInElevator(0, 1 + i % 8, 2, 1));
+      }
+      assertThat(users.nbUsers()).isEqualTo(0);
+      assertThat(users.getTotalTicks()).isEqualTo(0);
+    }
+    assertThat(users.userExited(3)).isEqualTo(ElevatorUsers.NULL_SCORE);
+  }
 }
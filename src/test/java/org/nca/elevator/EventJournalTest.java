@@ -0,0 +1,158 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.strategy.ClassicStrategy;
+import org.nca.elevator.strategy.MostUsersStrategy;
+
+public class EventJournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+
+  @After
+  public void shutdownFlusher() {
+    flusher.shutdown();
+  }
+
+  private EventJournal newJournal(File file) throws Exception {
+    return new EventJournal(file, flusher, 10, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Drives the elevator with a few users, returning the commands.
+   */
+  private static List<Command> drive(Elevator elevator) {
+    List<Command> commands = new ArrayList<Command>();
+    elevator.reset(0, 5, 10);
+    elevator.call(0, "UP").call(3, "DOWN");
+    commands.add(elevator.nextCommand());
+    elevator.userHasEntered().go(4);
+    for (int i = 0; i < 12; i++) {
+      if (elevator.getCurrentFloor() == 4 && elevator.hasDoorOpen() && elevator.nbUsersInElevator() > 0) {
+        elevator.userHasExited();
+      }
+      if (elevator.getCurrentFloor() == 3 && elevator.hasDoorOpen() && elevator.nbUsersWaiting() > 0) {
+        elevator.userHasEntered().go(0);
+      }
+      if (elevator.getCurrentFloor() == 0 && elevator.hasDoorOpen() && elevator.nbUsersInElevator() > 0) {
+        elevator.userHasExited();
+      }
+      commands.add(elevator.nextCommand());
+    }
+    return commands;
+  }
+
+  @Test
+  public void replayRebuildsTheElevator() throws Exception {
+    File file = folder.newFile("default.journal");
+    Elevator elevator = new Elevator(new ClassicStrategy());
+    elevator.setJournal(newJournal(file));
+    List<Command> commands = drive(elevator);
+    elevator.shutdown();
+
+    JournalReplay.Result result = JournalReplay.replay(file, Optimization.NONE, new ClassicStrategy());
+
+    Elevator replayed = result.getElevator();
+    assertThat(result.isTruncated()).isFalse();
+    assertThat(result.getNbCommands()).isEqualTo(commands.size());
+    assertThat(result.getNbCandidateDifferences()).isEqualTo(0);
+    assertThat(replayed.getCurrentFloor()).isEqualTo(elevator.getCurrentFloor());
+    assertThat(replayed.getCurrentDirection()).isEqualTo(elevator.getCurrentDirection());
+    assertThat(replayed.getStateAsString()).isEqualTo(elevator.getStateAsString());
+    assertThat(replayed.getSnapshot().getLedger().getTotalPoints()).isEqualTo(
+        elevator.getSnapshot().getLedger().getTotalPoints());
+    assertThat(replayed.getSnapshot().getLedger().getNbUsers()).isGreaterThan(0).isEqualTo(
+        elevator.getSnapshot().getLedger().getNbUsers());
+  }
+
+  @Test
+  public void candidateStrategyIsComparedWithoutChangingTheReplay() throws Exception {
+    File file = folder.newFile("default.journal");
+    Elevator elevator = new Elevator(new ClassicStrategy());
+    elevator.setJournal(newJournal(file));
+    drive(elevator);
+    elevator.shutdown();
+
+    JournalReplay.Result result = JournalReplay.replay(file, Optimization.NONE, new MostUsersStrategy());
+
+    assertThat(result.getCandidateNanos()).isGreaterThan(0);
+    assertThat(result.getElevator().getStateAsString()).isEqualTo(elevator.getStateAsString());
+  }
+
+  @Test
+  public void restoredCheckpointIsReplayed() throws Exception {
+    Elevator checkpointed = new Elevator(new ClassicStrategy());
+    drive(checkpointed);
+    File file = folder.newFile("default.journal");
+    Elevator elevator = new Elevator(new ClassicStrategy());
+    elevator.setJournal(newJournal(file));
+    elevator.restore(checkpointed.checkpoint());
+    elevator.call(1, "UP");
+    elevator.nextCommand();
+    elevator.shutdown();
+
+    JournalReplay.Result result = JournalReplay.replay(file, Optimization.NONE, null);
+
+    assertThat(result.getElevator().getStateAsString()).isEqualTo(elevator.getStateAsString());
+    assertThat(result.getElevator().getTotalTicks()).isEqualTo(elevator.getTotalTicks());
+  }
+
+  @Test
+  public void journalIsForcedPeriodically() throws Exception {
+    File file = folder.newFile("default.journal");
+    EventJournal journal = newJournal(file);
+    journal.call(2, Elevator.Direction.UP);
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (file.length() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    // START and CALL records
+    assertThat(file.length()).isEqualTo(9 + 6);
+    journal.close();
+  }
+
+  @Test
+  public void restartAndTruncatedRecordAreReplayed() throws Exception {
+    File file = folder.newFile("default.journal");
+    Elevator elevator = new Elevator(new ClassicStrategy());
+    elevator.setJournal(newJournal(file));
+    drive(elevator);
+    elevator.shutdown();
+    // restart of the server, then a crash while writing a record
+    Elevator restarted = new Elevator(new ClassicStrategy());
+    restarted.setJournal(newJournal(file));
+    restarted.call(2, "UP").nextCommand();
+    restarted.shutdown();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(raf.length() - 1);
+    } finally {
+      raf.close();
+    }
+
+    JournalReplay.Result result = JournalReplay.replay(file, Optimization.NONE, null);
+
+    assertThat(result.isTruncated()).isTrue();
+    assertThat(result.getElevator().getHigherFloor()).isEqualTo(Elevator.DEFAULT_HIGHER_FLOOR);
+    assertThat(result.getElevator().nbUsersWaiting()).isEqualTo(1);
+    assertThat(result.getElevator().getSnapshot().getLedger().getNbUsers()).isEqualTo(0);
+  }
+}
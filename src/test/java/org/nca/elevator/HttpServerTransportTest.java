@@ -0,0 +1,135 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class HttpServerTransportTest {
+
+  private HttpServerTransport transport;
+
+  private Elevator elevator;
+
+  @Before
+  public void startServer() throws Exception {
+    elevator = new Elevator(new ClassicStrategy());
+    transport = new HttpServerTransport("localhost", 0, new ElevatorRoutes(new LockingElevatorExecutor(elevator)));
+    transport.start();
+  }
+
+  @After
+  public void stopServer() {
+    transport.stop();
+  }
+
+  @Test
+  public void routesAreServed() throws Exception {
+    assertThat(request("GET", "/nextCommand", null).body).isEqualTo("NEED RESET");
+    assertThat(request("GET", "/reset?lowerFloor=0&higherFloor=5&cabinSize=10&cause=the+start", null).status)
+        .isEqualTo(200);
+    assertThat(request("GET", "/call?atFloor=2&to=UP", null).status).isEqualTo(200);
+    assertThat(request("GET", "/nextCommand", null).body).isEqualTo("UP");
+  }
+
+  @Test
+  public void eventsArePosted() throws Exception {
+    request("GET", "/nextCommand", null);
+    request("GET", "/reset?lowerFloor=0&higherFloor=5&cabinSize=10", null);
+
+    Answer answer = request("POST", "/events?nextCommand=true", "call 0 UP\n");
+    assertThat(answer.status).isEqualTo(200);
+    assertThat(answer.body).isEqualTo("OPEN");
+
+    assertThat(request("POST", "/events", "go\n").status).isEqualTo(400);
+  }
+
+  @Test
+  public void unknownRoute() throws Exception {
+    assertThat(request("GET", "/fly", null).status).isEqualTo(404);
+    assertThat(request("POST", "/reset", "").status).isEqualTo(404);
+  }
+
+  @Test
+  public void errorsAreAnswered() throws Exception {
+    // unknown optimization, failing in the route
+    assertThat(request("GET", "/optimization?name=FOO", null).status).isEqualTo(500);
+    assertThat(request("GET", "/call?atFloor=%zz&to=UP", null).status).isEqualTo(400);
+    // the connection is still served
+    assertThat(request("GET", "/nextCommand", null).body).isEqualTo("NEED RESET");
+  }
+
+  @Test
+  public void burstOfCallsIsQueuedInVirtualThreadsMode() throws Exception {
+    // virtual threads if the runtime provides them, the bounded pool of threads otherwise
+    transport.stop();
+    transport = HttpServerTransport.withVirtualThreads("localhost", 0,
+        new ElevatorRoutes(new LockingElevatorExecutor(elevator)));
+    transport.start();
+    request("GET", "/reset?lowerFloor=0&higherFloor=5&cabinSize=10", null);
+
+    int nbCalls = 200;
+    ExecutorService clients = Executors.newFixedThreadPool(50);
+    List<Future<Integer>> statuses = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < nbCalls; i++) {
+      final int floor = i % 5;
+      statuses.add(clients.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          return request("GET", "/call?atFloor=" + floor + "&to=UP", null).status;
+        }
+      }));
+    }
+    for (Future<Integer> status : statuses) {
+      assertThat(status.get()).isEqualTo(200);
+    }
+    clients.shutdown();
+
+    assertThat(elevator.nbUsersWaiting()).isEqualTo(nbCalls);
+  }
+
+  private static class Answer {
+    int status;
+    String body;
+  }
+
+  private Answer request(String method, String path, String body) throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + transport.getPort() + path)
+        .openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      OutputStream out = connection.getOutputStream();
+      out.write(body.getBytes("UTF-8"));
+      out.close();
+    }
+    Answer answer = new Answer();
+    answer.status = connection.getResponseCode();
+    InputStream in = answer.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    if (in != null) {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+      in.close();
+    }
+    answer.body = bytes.toString("UTF-8");
+    return answer;
+  }
+}
@@ -0,0 +1,37 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsCoverAllValues() throws Exception {
+    for (long value : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE }) {
+      int bucket = LatencyHistogram.bucket(value);
+      assertThat(LatencyHistogram.highestValue(bucket)).isGreaterThanOrEqualTo(value);
+      // precision of 1/16 of the value
+      assertThat(LatencyHistogram.highestValue(bucket) - value).isLessThanOrEqualTo(Math.max(0, value / 16));
+      if (bucket > 0) {
+        assertThat(LatencyHistogram.highestValue(bucket - 1)).isLessThan(value);
+      }
+    }
+  }
+
+  @Test
+  public void quantiles() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.getValueAtQuantile(0.5)).isEqualTo(0);
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(1000);
+    assertThat(histogram.getSum()).isEqualTo(500500000L);
+    assertThat(histogram.getMax()).isEqualTo(1000000L);
+    assertThat(histogram.getValueAtQuantile(0.5)).isGreaterThanOrEqualTo(500000L).isLessThan(500000L * 17 / 16);
+    assertThat(histogram.getValueAtQuantile(0.99)).isGreaterThanOrEqualTo(990000L).isLessThanOrEqualTo(1000000L);
+    assertThat(histogram.getValueAtQuantile(1)).isEqualTo(1000000L);
+  }
+}
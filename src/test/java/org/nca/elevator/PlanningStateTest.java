@@ -0,0 +1,82 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.nca.elevator.Elevator.Command.CLOSE;
+import static org.nca.elevator.Elevator.Command.DOWN;
+import static org.nca.elevator.Elevator.Command.OPEN;
+import static org.nca.elevator.Elevator.Command.UP;
+
+import org.junit.Test;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class PlanningStateTest {
+
+  @Test
+  public void copyOfElevator() throws Exception {
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+    elevator.call(0, "UP");
+    elevator.call(4, "DOWN");
+    elevator.nextCommand(); // open
+    elevator.userHasEntered().go(3);
+
+    PlanningState state = elevator.getPlanningState();
+
+    assertThat(state.getFloor()).isEqualTo(0);
+    assertThat(state.isDoorOpen()).isTrue();
+    assertThat(state.isGoingUp()).isTrue();
+    assertThat(state.nbUsersWaiting()).isEqualTo(1);
+    assertThat(state.nbUsersInElevator()).isEqualTo(1);
+  }
+
+  @Test
+  public void usersExitAndEnterOnOpen() throws Exception {
+    PlanningState state = new PlanningState(0, 5, 10, 0, false, true, 1, 1);
+    state.addElevatorUser(0, 2, 4, 0);
+    state.addWaitingUser(2, 0);
+
+    assertThat(state.isValid(DOWN)).isFalse();
+    assertThat(state.isValid(CLOSE)).isFalse();
+    state.play(UP);
+    state.play(UP);
+    state.play(OPEN);
+
+    // waited 4 ticks, best ticks to go from 0 to 2 is 4, with 2 ticks in elevator before open
+    assertThat(state.getPoints()).isEqualTo(20 - 2 + 4 - 2);
+    assertThat(state.nbUsersInElevator()).isEqualTo(1);
+    assertThat(state.nbUsersWaiting()).isEqualTo(0);
+    assertThat(state.isValid(UP)).isFalse();
+  }
+
+  @Test
+  public void copiesDoNotChangeEachOther() throws Exception {
+    PlanningState state = new PlanningState(0, 5, 10, 2, false, true, 2, 0);
+    state.addWaitingUser(2, 0);
+    state.addWaitingUser(3, 0);
+
+    PlanningState copy = state.clone();
+    copy.play(OPEN);
+    PlanningState other = state.clone();
+    other.play(UP);
+    other.play(OPEN);
+
+    assertThat(state.nbUsersWaiting()).isEqualTo(2);
+    assertThat(state.nbUsersInElevator()).isEqualTo(0);
+    assertThat(copy.nbUsersWaiting()).isEqualTo(1);
+    assertThat(copy.nbUsersInElevator()).isEqualTo(1);
+    assertThat(other.nbUsersWaiting()).isEqualTo(1);
+    assertThat(other.nbUsersInElevator()).isEqualTo(1);
+    assertThat(other.getFloor()).isEqualTo(3);
+  }
+
+  @Test
+  public void remainingPointsDecreaseWithTicks() throws Exception {
+    PlanningState state = new PlanningState(0, 5, 10, 0, false, true, 1, 0);
+    state.addWaitingUser(3, 0);
+    int estimate = state.estimateRemainingPoints();
+
+    state.play(UP);
+    // one floor closer, one tick more
+    assertThat(state.estimateRemainingPoints()).isEqualTo(Score.maxPointsToEarnWhenWaiting(1 + 2));
+    assertThat(estimate).isEqualTo(Score.maxPointsToEarnWhenWaiting(3));
+  }
+}
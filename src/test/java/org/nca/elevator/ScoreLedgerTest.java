@@ -0,0 +1,87 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator.Direction;
+import org.nca.elevator.strategy.ClassicStrategy;
+
+public class ScoreLedgerTest {
+
+  private static ElevatorUser user(Clock clock, int entryFloor, int exitFloor, int waitingTicks, int elevatorTicks) {
+    WaitingUser waiting = new WaitingUser(entryFloor, entryFloor < exitFloor ? Direction.UP : Direction.DOWN, clock);
+    tick(clock, waitingTicks);
+    ElevatorUser user = new ElevatorUser(waiting, clock).setExitAt(exitFloor);
+    tick(clock, elevatorTicks);
+    return user;
+  }
+
+  private static void tick(Clock clock, int ticks) {
+    for (int i = 0; i < ticks; i++) {
+      clock.tick();
+    }
+  }
+
+  @Test
+  public void pointsLostAreSplitBetweenWaitingAndRiding() throws Exception {
+    // best ride from 0 to 3 is 5 ticks
+    ElevatorUser user = user(new Clock(), 0, 3, 4, 7);
+
+    assertThat(ScoreLedger.pointsEarned(user)).isEqualTo(16);
+    assertThat(ScoreLedger.lostWaiting(user)).isEqualTo(2);
+    assertThat(ScoreLedger.lostRiding(user)).isEqualTo(2);
+  }
+
+  @Test
+  public void userWaitingTooLongEarnsNothing() throws Exception {
+    ElevatorUser user = user(new Clock(), 5, 0, 60, 7);
+
+    assertThat(ScoreLedger.pointsEarned(user)).isEqualTo(0);
+    assertThat(ScoreLedger.lostWaiting(user)).isEqualTo(20);
+    assertThat(ScoreLedger.lostRiding(user)).isEqualTo(0);
+  }
+
+  @Test
+  public void ledgerIsUpdatedOnEachExit() throws Exception {
+    ScoreLedger ledger = new ScoreLedger();
+
+    assertThat(ledger.userExited(user(new Clock(), 0, 3, 4, 7))).isEqualTo(16);
+    assertThat(ledger.userExited(user(new Clock(), 0, 1, 0, 3))).isEqualTo(20);
+
+    assertThat(ledger.getTotalPoints()).isEqualTo(36);
+    assertThat(ledger.getNbUsers()).isEqualTo(2);
+    assertThat(ledger.getPointsLostWaiting()).isEqualTo(2);
+    assertThat(ledger.getPointsLostRiding()).isEqualTo(2);
+    assertThat(ledger.getNbUsersWithPoints(16)).isEqualTo(1);
+    assertThat(ledger.getNbUsersWithPoints(20)).isEqualTo(1);
+    assertThat(ledger.getNbUsersWithPoints(0)).isEqualTo(0);
+    assertThat(ledger.getPointsPerTick(12)).isEqualTo(3.0);
+    assertThat(ledger.appendTo(new StringBuilder(), 12).toString()).isEqualTo(
+        "36 points for 2 users in 12 ticks (3.000 per tick), lost waiting: 2, lost riding: 2, users per points: 16=1 20=1");
+  }
+
+  @Test
+  public void elevatorScoreIsPublishedInSnapshot() throws Exception {
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+
+    elevator.call(0, "UP");
+    elevator.nextCommand(); // OPEN
+    elevator.userHasEntered().go(1);
+    elevator.nextCommand(); // CLOSE
+    elevator.nextCommand(); // UP
+    elevator.nextCommand(); // OPEN
+    elevator.userHasExited();
+    elevator.userHasExited(); // no user left, ignored by the ledger
+    // score as of the last command
+    assertThat(elevator.getSnapshot().getLedger().getNbUsers()).isEqualTo(0);
+    elevator.nextCommand();
+
+    ElevatorSnapshot snapshot = elevator.getSnapshot();
+    assertThat(snapshot.getLedger().getNbUsers()).isEqualTo(1);
+    assertThat(snapshot.getLedger().getTotalPoints()).isEqualTo(ScoreLedger.MAX_POINTS);
+    assertThat(snapshot.getTicks()).isEqualTo(5);
+
+    elevator.reset(0, 5, 10);
+    assertThat(elevator.getSnapshot().getLedger().getNbUsers()).isEqualTo(0);
+  }
+}
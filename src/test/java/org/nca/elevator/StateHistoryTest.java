@@ -0,0 +1,57 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.Elevator.Direction;
+import org.nca.elevator.Elevator.Door;
+
+public class StateHistoryTest {
+
+  @Test
+  public void keepsOnlyLastStates() throws Exception {
+    StateHistory history = new StateHistory(3);
+    assertThat(history.getLastCommand()).isNull();
+
+    for (int i = 0; i < 5; i++) {
+      add(history, i, Command.UP);
+    }
+    add(history, 5, Command.OPEN);
+
+    assertThat(history.size()).isEqualTo(6);
+    assertThat(history.nbStates()).isEqualTo(3);
+    assertThat(history.getLastCommand()).isEqualTo(Command.OPEN);
+  }
+
+  @Test
+  public void historyAsHtmlFromMostRecentState() throws Exception {
+    StateHistory history = new StateHistory(3);
+    for (int i = 0; i < 5; i++) {
+      add(history, i, Command.UP);
+    }
+
+    String html = history.getHistoryAsHtml(10);
+    assertThat(html).contains("<td>4</td>").contains("<td>3</td>").contains("<td>2</td>");
+    assertThat(html).doesNotContain("<td>1</td>");
+    assertThat(html.indexOf("<td>4</td>")).isLessThan(html.indexOf("<td>3</td>"));
+    assertThat(history.getHistoryAsHtml(1)).doesNotContain("<td>3</td>");
+  }
+
+  @Test
+  public void historyAsHtmlAtPosition() throws Exception {
+    StateHistory history = new StateHistory(3);
+    for (int i = 0; i < 4; i++) {
+      add(history, i, Command.UP);
+    }
+
+    // state 3 was recorded after position, state 0 is no longer kept
+    String html = history.getHistoryAsHtml(3, 10);
+    assertThat(html).contains("<td>2</td>").contains("<td>1</td>");
+    assertThat(html).doesNotContain("<td>3</td>").doesNotContain("<td>0</td>");
+  }
+
+  private void add(StateHistory history, int floor, Command command) {
+    history.add(command, floor, Direction.UP, Door.CLOSED, 100 + floor, 200 + floor, 0, 0, 0, 0, 0, 0);
+  }
+}
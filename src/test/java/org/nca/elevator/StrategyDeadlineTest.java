@@ -0,0 +1,49 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.simulation.RandomTraffic;
+import org.nca.elevator.simulation.SimulationResult;
+import org.nca.elevator.simulation.Simulator;
+import org.nca.elevator.strategy.ClassicStrategy;
+import org.nca.elevator.strategy.LookaheadStrategy;
+import org.nca.elevator.strategy.SlowClassicStrategy;
+
+public class StrategyDeadlineTest {
+
+  @Test
+  public void fallbackWhenDeadlinePasses() throws Exception {
+    Elevator elevator = new Elevator(new SlowClassicStrategy()).reset(0, 5, 10);
+    elevator.setDeadline(10, TimeUnit.MILLISECONDS, new ClassicStrategy());
+    elevator.call(0, "UP");
+
+    long start = System.nanoTime();
+    assertThat(elevator.nextCommand()).isEqualTo(Command.OPEN);
+    elevator.userHasEntered().go(2);
+    // slow strategy is still running, fallback is used without waiting
+    assertThat(elevator.nextCommand()).isEqualTo(Command.CLOSE);
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(100);
+
+    ElevatorSnapshot snapshot = elevator.getSnapshot();
+    assertThat(snapshot.hasDeadline()).isTrue();
+    assertThat(snapshot.getNbCommandsWithDeadline()).isEqualTo(2);
+    assertThat(snapshot.getNbOverruns()).isEqualTo(2);
+  }
+
+  @Test
+  public void sameCommandsWithinDeadline() throws Exception {
+    Elevator elevator = new Elevator(new LookaheadStrategy(8, 16, 1, TimeUnit.SECONDS));
+    elevator.setDeadline(1, TimeUnit.SECONDS, new ClassicStrategy());
+    SimulationResult withDeadline = new Simulator(elevator, new RandomTraffic(42, 0.5, 40), 0, 19, 30).run(1000);
+    SimulationResult withoutDeadline = new Simulator(new Elevator(new LookaheadStrategy(8, 16, 1, TimeUnit.SECONDS)),
+        new RandomTraffic(42, 0.5, 40), 0, 19, 30).run(1000);
+
+    assertThat(elevator.getSnapshot().getNbOverruns()).isEqualTo(0);
+    assertThat(withDeadline.getScore()).isEqualTo(withoutDeadline.getScore());
+    assertThat(withDeadline.getNbUsersDone()).isEqualTo(withoutDeadline.getNbUsersDone());
+  }
+}
@@ -0,0 +1,72 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator.Command;
+import org.nca.elevator.simulation.RandomTraffic;
+import org.nca.elevator.simulation.SimulationResult;
+import org.nca.elevator.simulation.Simulator;
+import org.nca.elevator.strategy.ClassicStrategy;
+import org.nca.elevator.strategy.LookaheadStrategy;
+
+public class StrategySpeculationTest {
+
+  @Test
+  public void speculatedCommandIsUsedWithoutEvent() throws Exception {
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+    elevator.setSpeculative(true);
+    elevator.call(2, "UP");
+
+    assertThat(elevator.nextCommand()).isEqualTo(Command.UP);
+    assertThat(elevator.nextCommand()).isEqualTo(Command.UP);
+    assertThat(elevator.nextCommand()).isEqualTo(Command.OPEN);
+    assertThat(elevator.getSnapshot().getNbSpeculationHits()).isEqualTo(2);
+    assertThat(elevator.getSnapshot().getNbSpeculationMisses()).isEqualTo(0);
+  }
+
+  @Test
+  public void speculatedCommandIsDroppedOnEvent() throws Exception {
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+    elevator.setSpeculative(true);
+
+    // speculated while nobody waits : go to middle floor
+    assertThat(elevator.nextCommand()).isEqualTo(Command.UP);
+    elevator.call(1, "DOWN");
+    assertThat(elevator.nextCommand()).isEqualTo(Command.OPEN);
+    assertThat(elevator.getSnapshot().getNbSpeculationHits()).isEqualTo(0);
+    assertThat(elevator.getSnapshot().getNbSpeculationMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void noCommandIsSpeculatedWhileEventsArrive() throws Exception {
+    Elevator elevator = new Elevator(new ClassicStrategy()).reset(0, 5, 10);
+    elevator.setSpeculative(true);
+
+    assertThat(elevator.nextCommand()).isEqualTo(Command.UP);
+    elevator.call(1, "DOWN");
+    assertThat(elevator.nextCommand()).isEqualTo(Command.OPEN);
+    elevator.userHasEntered().go(0);
+    assertThat(elevator.nextCommand()).isEqualTo(Command.CLOSE);
+    // without event since the previous command, the next one is speculated again
+    assertThat(elevator.nextCommand()).isEqualTo(Command.DOWN);
+    assertThat(elevator.nextCommand()).isEqualTo(Command.OPEN);
+    assertThat(elevator.getSnapshot().getNbSpeculationHits()).isEqualTo(1);
+    assertThat(elevator.getSnapshot().getNbSpeculationMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void sameCommandsWithSpeculation() throws Exception {
+    Elevator elevator = new Elevator(new LookaheadStrategy(8, 16, 1, TimeUnit.SECONDS));
+    elevator.setSpeculative(true);
+    SimulationResult speculative = new Simulator(elevator, new RandomTraffic(42, 0.2, 20), 0, 19, 30).run(1000);
+    SimulationResult direct = new Simulator(new Elevator(new LookaheadStrategy(8, 16, 1, TimeUnit.SECONDS)),
+        new RandomTraffic(42, 0.2, 20), 0, 19, 30).run(1000);
+
+    assertThat(elevator.getSnapshot().getNbSpeculationHits()).isGreaterThan(0);
+    assertThat(speculative.getScore()).isEqualTo(direct.getScore());
+    assertThat(speculative.getNbUsersDone()).isEqualTo(direct.getNbUsersDone());
+  }
+}
@@ -0,0 +1,198 @@
+package org.nca.elevator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator.Direction;
+import org.nca.elevator.Elevator.Optimization;
+
+public class WaitingUsersTest {
+
+  @Test
+  public void nbUsersToward() throws Exception {
+    WaitingUsers users = new WaitingUsers(new Clock(), 0, 5);
+    users.add(new WaitingUser(1, Direction.UP));
+    users.add(new WaitingUser(3, Direction.DOWN));
+    users.add(new WaitingUser(3, Direction.UP));
+    users.add(new WaitingUser(5, Direction.DOWN));
+
+    assertThat(users.nbUsersToward(Direction.UP, 0, 5, Optimization.NONE)).isEqualTo(4);
+    assertThat(users.nbUsersToward(Direction.UP, 3, 5, Optimization.NONE)).isEqualTo(1);
+    assertThat(users.nbUsersToward(Direction.DOWN, 3, 5, Optimization.NONE)).isEqualTo(1);
+    assertThat(users.nbUsersToward(Direction.DOWN, 5, 5, Optimization.NONE)).isEqualTo(3);
+  }
+
+  @Test
+  public void scoreToward() throws Exception {
+    WaitingUsers users = new WaitingUsers(new Clock(), 0, 5);
+    users.add(new WaitingUser(1, Direction.UP));
+    users.add(new WaitingUser(4, Direction.DOWN));
+    users.add(new WaitingUser(4, Direction.UP));
+
+    // (5 - 2) * 2 for floor 4
+    assertThat(users.scoreToward(Direction.UP, 2, 5)).isEqualTo(6);
+    // (5 - 1) * 1 for floor 1
+    assertThat(users.scoreToward(Direction.DOWN, 2, 5)).isEqualTo(4);
+  }
+
+  @Test
+  public void nbUsersForFloorInDirection() throws Exception {
+    WaitingUsers users = new WaitingUsers(new Clock(), 0, 5);
+    users.add(new WaitingUser(2, Direction.UP));
+    users.add(new WaitingUser(2, Direction.DOWN));
+    users.add(new WaitingUser(2, Direction.NONE));
+
+    assertThat(users.nbUsersForFloorInDirection(2, Direction.UP, Optimization.NONE)).isEqualTo(2);
+    assertThat(users.nbUsersForFloorInDirection(2, Direction.DOWN, Optimization.NONE)).isEqualTo(2);
+    assertThat(users.nbUsersForFloorInDirection(2, Direction.NONE, Optimization.NONE)).isEqualTo(3);
+    assertThat(users.nbUsersForFloorInDirection(3, Direction.NONE, Optimization.NONE)).isEqualTo(0);
+  }
+
+  @Test
+  public void popUserRemovesOnlyOneUser() throws Exception {
+    WaitingUsers users = new WaitingUsers(new Clock(), 0, 5);
+    WaitingUser first = new WaitingUser(2, Direction.UP);
+    users.add(first);
+    users.add(new WaitingUser(2, Direction.DOWN));
+
+    assertThat(users.popUser(2)).isEqualTo(first);
+    assertThat(users.nbUsers()).isEqualTo(1);
+    assertThat(users.hasUserForFloor(2)).isTrue();
+    assertThat(users.popUser(2).getDirection()).isEqualTo(Direction.DOWN);
+    assertThat(users.hasUserForFloor(2)).isFalse();
+    assertThat(users.popUser(2).getDirection()).isEqualTo(Direction.NONE);
+  }
+
+  @Test
+  public void usersWithoutPointsAreCountedOnceWithPointsOptimization() throws Exception {
+    Clock clock = new Clock();
+    WaitingUsers users = new WaitingUsers(clock, 0, 5);
+    users.add(new WaitingUser(3, Direction.UP, clock));
+    for (int i = 0; i < 40; i++) {
+      clock.tick();
+    }
+    users.add(new WaitingUser(3, Direction.UP, clock));
+
+    assertThat(users.nbUsersForFloor(3, Optimization.NONE)).isEqualTo(2);
+    assertThat(users.nbUsersForFloor(3, Optimization.POINTS)).isEqualTo(3);
+    assertThat(users.nbUsersToward(Direction.UP, 0, 5, Optimization.POINTS)).isEqualTo(3);
+
+    users.popUser(3);
+    users.popUser(3);
+    assertThat(users.nbUsersToward(Direction.UP, 0, 5, Optimization.POINTS)).isEqualTo(0);
+  }
+
+  @Test
+  public void poppedUserWithPointsDoesNotDelayExpiryOfNextUsers() throws Exception {
+    Clock clock = new Clock();
+    WaitingUsers users = new WaitingUsers(clock, 0, 5);
+    users.add(3, Direction.UP);
+    users.popUser(3);
+    for (int i = 0; i < 10; i++) {
+      clock.tick();
+    }
+    users.add(4, Direction.UP);
+    assertThat(users.nbUsersForFloor(4, Optimization.POINTS)).isEqualTo(2);
+    for (int i = 0; i < 40; i++) {
+      clock.tick();
+    }
+
+    // the user at floor 4 has lost its points too
+    assertThat(users.nbUsersForFloor(4, Optimization.POINTS)).isEqualTo(1);
+    assertThat(users.nbUsersToward(Direction.UP, 0, 5, Optimization.POINTS)).isEqualTo(1);
+  }
+
+  @Test
+  public void totalTicksFollowClock() throws Exception {
+    Clock clock = new Clock();
+    WaitingUsers users = new WaitingUsers(clock, 0, 5);
+    users.add(new WaitingUser(1, Direction.UP, clock));
+    clock.tick();
+    users.add(new WaitingUser(2, Direction.UP, clock));
+    clock.tick();
+
+    assertThat(users.getTotalTicks()).isEqualTo(2 + 1);
+    assertThat(users.popUser(1).getTicks()).isEqualTo(2);
+    assertThat(users.getTotalTicks()).isEqualTo(1);
+  }
+
+  @Test
+  public void floorsOutsideInitialRange() throws Exception {
+    WaitingUsers users = new WaitingUsers(new Clock(), 0, 2);
+    users.add(new WaitingUser(-2, Direction.UP));
+    users.add(new WaitingUser(7, Direction.DOWN));
+
+    assertThat(users.nbUsersToward(Direction.UP, 0, 9, Optimization.NONE)).isEqualTo(1);
+    assertThat(users.hasUserForFloor(-2)).isTrue();
+    assertThat(users.nbUsers()).isEqualTo(2);
+  }
+
+  @Test
+  public void toStringByFloorWithoutChangingOrder() throws Exception {
+    Clock clock = new Clock();
+    WaitingUsers users = new WaitingUsers(clock, 0, 5);
+    WaitingUser first = new WaitingUser(3, Direction.UP, clock);
+    users.add(first);
+    clock.tick();
+    users.add(new WaitingUser(1, Direction.DOWN, clock));
+    users.add(new WaitingUser(3, Direction.DOWN, clock));
+
+    assertThat(users.toString()).isEqualTo("Nb=3 [1/D T=0 | 3/D T=0 | 3/U T=1]");
+    assertThat(users.popUser(3)).isEqualTo(first);
+  }
+
+  @Test
+  public void movedUserEntersWithItsWaitingTicks() throws Exception {
+    Clock clock = new Clock();
+    WaitingUsers users = new WaitingUsers(clock, 0, 5);
+    ElevatorUsers elevatorUsers = new ElevatorUsers(clock, 0, 5);
+    users.add(2, Direction.UP);
+    clock.tick();
+    users.add(2, Direction.DOWN);
+    clock.tick();
+
+    users.moveUserTo(2, elevatorUsers);
+
+    assertThat(users.toString()).isEqualTo("Nb=1 [2/D T=1]");
+    assertThat(elevatorUsers.toString()).isEqualTo("Nb=1 [2/U/_ T=2/2+0]");
+  }
+
+  @Test
+  public void enteredUsersWithPointsAreExpiredOnce() throws Exception {
+    Clock clock = new Clock();
+    WaitingUsers users = new WaitingUsers(clock, 0, 5);
+    users.add(3, Direction.UP);
+    users.add(3, Direction.UP);
+    users.popUser(3);
+    for (int i = 0; i < 40; i++) {
+      clock.tick();
+    }
+    // the user that has entered has left the queue of users with points, its slot is reused
+    assertThat(users.nbUsersForFloor(3, Optimization.POINTS)).isEqualTo(1);
+    users.add(3, Direction.DOWN);
+
+    assertThat(users.nbUsersForFloor(3, Optimization.POINTS)).isEqualTo(3);
+    assertThat(users.toString()).isEqualTo("Nb=2 [3/D T=0 | 3/U T=40]");
+  }
+
+  @Test
+  public void copyIsIndependent() throws Exception {
+    Clock clock = new Clock();
+    WaitingUsers users = new WaitingUsers(clock, 0, 5);
+    for (int i = 0; i < 50; i++) {
+      users.add(i % 6, Direction.UP);
+    }
+    Clock copyClock = new Clock(clock.getTicks());
+    WaitingUsers copy = users.copy(copyClock);
+    copy.popUser(0);
+    copy.add(9, Direction.DOWN);
+    copyClock.tick();
+
+    assertThat(users.nbUsers()).isEqualTo(50);
+    assertThat(users.hasUserForFloor(9)).isFalse();
+    assertThat(users.getTotalTicks()).isEqualTo(0);
+    assertThat(copy.nbUsers()).isEqualTo(50);
+    assertThat(copy.nbUsersForFloor(0, Optimization.NONE)).isEqualTo(8);
+    assertThat(copy.getTotalTicks()).isEqualTo(50);
+  }
+}
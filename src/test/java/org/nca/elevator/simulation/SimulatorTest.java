@@ -0,0 +1,73 @@
+package org.nca.elevator.simulation;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator;
+import org.nca.elevator.strategy.ClassicStrategy;
+import org.nca.elevator.strategy.LookaheadStrategy;
+import org.nca.elevator.strategy.MostUsersStrategy;
+
+public class SimulatorTest {
+
+  @Test
+  public void oneUserGoUp() throws Exception {
+    Simulator simulator = new Simulator(new Elevator(new ClassicStrategy()), new TrafficGenerator() {
+      @Override
+      public void generate(long tick, Simulator simulator) {
+        if (tick == 0) {
+          simulator.newUser(0, 3);
+        }
+      }
+    }, 0, 5, 10);
+
+    SimulationResult result = simulator.run(20);
+
+    assertThat(result.getNbUsersDone()).isEqualTo(1);
+    assertThat(result.getNbResets()).isEqualTo(0);
+    // open, close, 3 up, open : best possible
+    assertThat(result.getAverageWaitTicks()).isEqualTo(0);
+    assertThat(result.getAverageRideTicks()).isEqualTo(5);
+    assertThat(result.getScore()).isEqualTo(20);
+    assertThat(simulator.nbUsers()).isEqualTo(0);
+  }
+
+  @Test
+  public void classicStrategyWithRandomTraffic() throws Exception {
+    checkRandomTraffic(new Elevator(new ClassicStrategy()));
+  }
+
+  @Test
+  public void mostUsersStrategyWithRandomTraffic() throws Exception {
+    checkRandomTraffic(new Elevator(new MostUsersStrategy()));
+  }
+
+  @Test
+  public void lookaheadStrategyWithRandomTraffic() throws Exception {
+    checkRandomTraffic(new Elevator(new LookaheadStrategy()));
+  }
+
+  @Test
+  public void lookaheadStrategyEarnsMorePointsThanClassicStrategy() throws Exception {
+    // a large budget, so that the search always reaches the maximum depth
+    SimulationResult lookahead = new Simulator(new Elevator(new LookaheadStrategy(12, 32, 1, TimeUnit.SECONDS)),
+        new RandomTraffic(42, 0.5, 40), 0, 19, 30).run(2000);
+    SimulationResult classic = new Simulator(new Elevator(new ClassicStrategy()), new RandomTraffic(42, 0.5, 40),
+        0, 19, 30).run(2000);
+
+    assertThat(lookahead.getScore()).isGreaterThan(classic.getScore());
+  }
+
+  private void checkRandomTraffic(Elevator elevator) {
+    Simulator simulator = new Simulator(elevator, new RandomTraffic(42, 0.5, 40), 0, 19, 30);
+
+    SimulationResult result = simulator.run(5000);
+
+    assertThat(result.getTicks()).isEqualTo(5000);
+    assertThat(result.getNbResets()).isEqualTo(0);
+    assertThat(result.getNbUsersDone()).isGreaterThan(1000);
+    assertThat(result.getScore()).isGreaterThan(0);
+  }
+}
@@ -0,0 +1,62 @@
+package org.nca.elevator.simulation;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator;
+import org.nca.elevator.Elevator.Optimization;
+import org.nca.elevator.simulation.Tournament.Building;
+import org.nca.elevator.simulation.Tournament.Entry;
+import org.nca.elevator.strategy.ClassicStrategy;
+import org.nca.elevator.strategy.ElevatorStrategy;
+import org.nca.elevator.strategy.MostUsersStrategy;
+import org.nca.elevator.strategy.SlowClassicStrategy;
+import org.nca.elevator.strategy.Strategies;
+
+public class TournamentTest {
+
+  @Test
+  public void findStrategies() throws Exception {
+    List<Class<? extends ElevatorStrategy>> strategies = Tournament.findStrategies();
+
+    List<Class<? extends ElevatorStrategy>> expected = new ArrayList<Class<? extends ElevatorStrategy>>();
+    expected.add(ClassicStrategy.class);
+    expected.add(MostUsersStrategy.class);
+    expected.add(SlowClassicStrategy.class);
+    assertThat(strategies.containsAll(expected)).isTrue();
+    assertThat(strategies.contains(ElevatorStrategy.class)).isFalse();
+  }
+
+  @Test
+  public void rankedScoreboard() throws Exception {
+    List<Class<? extends ElevatorStrategy>> strategies = new ArrayList<Class<? extends ElevatorStrategy>>();
+    strategies.add(ClassicStrategy.class);
+    strategies.add(MostUsersStrategy.class);
+    List<Building> buildings = Arrays.asList(new Building(0, 5, 5), new Building(-2, 9, 10));
+
+    List<Entry> ranking = new Tournament(strategies, buildings, new long[] { 1, 2 }, 2000).run(new ForkJoinPool(2));
+
+    assertThat(ranking).hasSize(2 * Optimization.values().length);
+    for (int i = 1; i < ranking.size(); i++) {
+      assertThat(ranking.get(i - 1).getScore()).isGreaterThanOrEqualTo(ranking.get(i).getScore());
+    }
+    // each match is independent, so scores are the same as with serial simulations
+    for (Entry entry : ranking) {
+      long score = 0;
+      for (Building building : buildings) {
+        for (long seed : new long[] { 1, 2 }) {
+          int nbFloors = building.higherFloor - building.lowerFloor + 1;
+          score += new Simulator(new Elevator(Strategies.newStrategy(entry.getStrategy()), entry.getOptimization()),
+              new RandomTraffic(seed, 0.5, nbFloors * 2), building.lowerFloor, building.higherFloor,
+              building.cabinSize).run(2000).getScore();
+        }
+      }
+      assertThat(entry.getScore()).isEqualTo(score);
+    }
+  }
+}
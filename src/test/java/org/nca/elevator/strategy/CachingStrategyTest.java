@@ -0,0 +1,51 @@
+package org.nca.elevator.strategy;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.nca.elevator.Elevator;
+import org.nca.elevator.simulation.RandomTraffic;
+import org.nca.elevator.simulation.SimulationResult;
+import org.nca.elevator.simulation.Simulator;
+
+public class CachingStrategyTest {
+
+  @Test
+  public void sameCommandsAsClassicStrategy() throws Exception {
+    checkSameCommands(new ClassicStrategy(), new CachingStrategy(new ClassicStrategy(), CachingStrategy.DEFAULT_CAPACITY, false));
+  }
+
+  @Test
+  public void sameCommandsAsMostUsersStrategy() throws Exception {
+    checkSameCommands(new MostUsersStrategy(), new CachingStrategy(new MostUsersStrategy()));
+  }
+
+  private void checkSameCommands(ElevatorStrategy strategy, CachingStrategy cache) {
+    SimulationResult cached = new Simulator(new Elevator(cache, Elevator.Optimization.POINTS),
+        new RandomTraffic(42, 0.5, 40), 0, 19, 30).run(5000);
+    SimulationResult direct = new Simulator(new Elevator(strategy, Elevator.Optimization.POINTS),
+        new RandomTraffic(42, 0.5, 40), 0, 19, 30).run(5000);
+
+    assertThat(cached.getScore()).isEqualTo(direct.getScore());
+    assertThat(cached.getNbUsersDone()).isEqualTo(direct.getNbUsersDone());
+    assertThat(cache.getNbHits() + cache.getNbMisses()).isEqualTo(5000);
+    assertThat(cache.getNbHits()).isGreaterThan(cache.getNbMisses());
+    assertThat(cache.getNbEvictions()).isEqualTo(0);
+  }
+
+  @Test
+  public void leastRecentlyUsedDecisionIsEvicted() throws Exception {
+    CachingStrategy cache = new CachingStrategy(new ClassicStrategy(), 2);
+    Elevator elevator = new Elevator(cache).reset(0, 5, 10);
+    elevator.call(0, "UP");
+
+    elevator.nextCommand(); // open
+    elevator.userHasEntered().go(2);
+    elevator.nextCommand(); // close
+    elevator.nextCommand(); // up
+    elevator.nextCommand(); // up
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getNbEvictions()).isGreaterThan(0);
+  }
+}